@@ -0,0 +1,4 @@
+package io.github.rabobank.shadow_tool.benchmarks;
+
+public record Account(String iban, String currency, long balance) {
+}
@@ -0,0 +1,93 @@
+package io.github.rabobank.shadow_tool.benchmarks;
+
+import io.github.rabobank.shadow_tool.FastDiffEngine;
+import io.github.rabobank.shadow_tool.MerkleDiffEngine;
+import io.github.rabobank.shadow_tool.ShadowFlow;
+import io.github.rabobank.shadow_tool.ShadowFlow.ShadowFlowBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * What a sampled shadow comparison costs, for results of different sizes. The comparison runs on the thread of the
+ * benchmark and the differences are not reported, so only calling the new flow and comparing the results is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CompareBenchmark {
+    private static final int ACCOUNTS_PER_CUSTOMER = 3;
+
+    /**
+     * The number of accounts of a single customer, and the number of customers in a collection.
+     */
+    @Param({"1", "10", "100"})
+    public int size;
+
+    /**
+     * The default Javers engine, the {@link FastDiffEngine} or the {@link MerkleDiffEngine}.
+     */
+    @Param({"javers", "fast", "merkle"})
+    public String diffEngine;
+
+    @Param({"true", "false"})
+    public boolean equal;
+
+    private ShadowFlow<Customer> shadowFlow;
+    private Supplier<Customer> currentFlow;
+    private Supplier<Customer> newFlow;
+    private Supplier<List<Customer>> currentCollectionFlow;
+    private Supplier<List<Customer>> newCollectionFlow;
+
+    @Setup
+    public void setUp() {
+        final var builder = new ShadowFlowBuilder<Customer>(100)
+                .withExecutor(Runnable::run)
+                .withDifferenceReporter(report -> {
+                });
+        if ("fast".equals(diffEngine)) {
+            builder.withDiffEngine(new FastDiffEngine());
+        } else if ("merkle".equals(diffEngine)) {
+            builder.withDiffEngine(new MerkleDiffEngine());
+        }
+        shadowFlow = builder.build();
+
+        final var current = Models.customer(1, size);
+        final var next = equal ? Models.customer(1, size) : Models.withChangedBalance(current);
+        currentFlow = () -> current;
+        newFlow = () -> next;
+
+        final var currentCollection = Models.customers(size, ACCOUNTS_PER_CUSTOMER);
+        final var newCollection = equal
+                ? Models.customers(size, ACCOUNTS_PER_CUSTOMER)
+                : Models.withChangedBalance(currentCollection);
+        currentCollectionFlow = () -> currentCollection;
+        newCollectionFlow = () -> newCollection;
+    }
+
+    @Benchmark
+    public Customer compare() {
+        return shadowFlow.compare(currentFlow, newFlow);
+    }
+
+    @Benchmark
+    public List<Customer> compareCollections() {
+        return shadowFlow.compareCollections(currentCollectionFlow, newCollectionFlow, Customer.class);
+    }
+}
@@ -0,0 +1,6 @@
+package io.github.rabobank.shadow_tool.benchmarks;
+
+import java.util.List;
+
+public record Customer(String name, String address, long balance, List<Account> accounts) {
+}
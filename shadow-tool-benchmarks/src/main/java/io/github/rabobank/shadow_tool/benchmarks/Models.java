@@ -0,0 +1,51 @@
+package io.github.rabobank.shadow_tool.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the same models on every run, so results of different runs can be compared.
+ */
+final class Models {
+    private Models() {
+    }
+
+    static Customer customer(final int id, final int accounts) {
+        final List<Account> customerAccounts = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            customerAccounts.add(new Account(String.format("NL%02dRABO%010d", i % 100, (long) id * accounts + i), "EUR", 1_000L * i));
+        }
+        return new Customer("Customer " + id, "Croeselaan " + id + ", Utrecht", 1_000L * accounts, List.copyOf(customerAccounts));
+    }
+
+    static List<Customer> customers(final int size, final int accounts) {
+        final List<Customer> customers = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            customers.add(customer(i, accounts));
+        }
+        return List.copyOf(customers);
+    }
+
+    /**
+     * @return A copy of the customer where the balance of the last account differs.
+     */
+    static Customer withChangedBalance(final Customer customer) {
+        final List<Account> accounts = new ArrayList<>(customer.accounts());
+        if (!accounts.isEmpty()) {
+            final var last = accounts.get(accounts.size() - 1);
+            accounts.set(accounts.size() - 1, new Account(last.iban(), last.currency(), last.balance() + 1));
+        }
+        return new Customer(customer.name(), customer.address(), customer.balance(), List.copyOf(accounts));
+    }
+
+    /**
+     * @return A copy of the customers where the balance of the last account of the last customer differs.
+     */
+    static List<Customer> withChangedBalance(final List<Customer> customers) {
+        final List<Customer> changed = new ArrayList<>(customers);
+        if (!changed.isEmpty()) {
+            changed.set(changed.size() - 1, withChangedBalance(changed.get(changed.size() - 1)));
+        }
+        return List.copyOf(changed);
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.rabobank.shadow_tool.benchmarks;
+
+import io.github.rabobank.shadow_tool.FastDiffEngine;
+import io.github.rabobank.shadow_tool.ShadowFlow;
+import io.github.rabobank.shadow_tool.ShadowFlow.ShadowFlowBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * What the reactive shadow flow adds to the threads of the callers under contention. The shadow comparisons run on
+ * a {@link io.github.rabobank.shadow_tool.BoundedShadowExecutor}, which drops them when it is saturated, so the
+ * benchmark measures the callers and not the comparisons.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+public class ReactiveBenchmark {
+    private static final int ACCOUNTS = 10;
+
+    @Param({"0", "1", "100"})
+    public int percentage;
+
+    private final Customer customer = Models.customer(1, ACCOUNTS);
+    private final Mono<Customer> currentMono = Mono.just(customer);
+    private final Mono<Customer> newMono = Mono.just(Models.withChangedBalance(customer));
+    private final Mono<List<Customer>> currentCollectionMono = Mono.just(Models.customers(ACCOUNTS, 1));
+    private final Mono<List<Customer>> newCollectionMono = Mono.just(Models.customers(ACCOUNTS, 1));
+
+    private ShadowFlow<Customer> shadowFlow;
+
+    @Setup
+    public void setUp() {
+        shadowFlow = new ShadowFlowBuilder<Customer>(percentage)
+                .withBoundedExecutor(2, 1024)
+                .withDiffEngine(new FastDiffEngine())
+                .withDifferenceReporter(report -> {
+                })
+                .build();
+    }
+
+    @Benchmark
+    public Customer compareMono() {
+        return shadowFlow.compare(currentMono, newMono).block();
+    }
+
+    @Benchmark
+    public List<Customer> compareCollectionsMono() {
+        return shadowFlow.compareCollections(currentCollectionMono, newCollectionMono, Customer.class).block();
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.rabobank.shadow_tool.benchmarks;
+
+import io.github.rabobank.shadow_tool.DefaultEncryptionService;
+import io.github.rabobank.shadow_tool.DifferenceReport;
+import io.github.rabobank.shadow_tool.EncryptionService;
+import io.github.rabobank.shadow_tool.FastDiffEngine;
+import io.github.rabobank.shadow_tool.HybridEncryptionService;
+import io.github.rabobank.shadow_tool.LoggingDifferenceReporter;
+import io.github.rabobank.shadow_tool.NoopEncryptionService;
+import io.github.rabobank.shadow_tool.PublicKeyEncryptionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static javax.crypto.Cipher.ENCRYPT_MODE;
+
+/**
+ * What reporting the differences of a comparison costs with each {@link EncryptionService}, which is the work done
+ * by the shadow flow after the comparison. The log events are discarded by the appender, see {@code logback.xml},
+ * so the encryption is measured and not the I/O.
+ * <p>
+ * The benchmark runs with multiple threads, since the services differ in how they share their ciphers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+public class ReportingBenchmark {
+    private static final String RSA_ALGORITHM = "RSA/ECB/OAEPWITHSHA-256ANDMGF1PADDING";
+
+    @Param({"none", "noop", "cipher", "publicKey", "hybrid"})
+    public String encryption;
+
+    private LoggingDifferenceReporter reporter;
+    private DifferenceReport report;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        final var keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        final var publicKey = keyPairGenerator.generateKeyPair().getPublic();
+
+        final EncryptionService encryptionService = switch (encryption) {
+            case "none" -> null;
+            case "noop" -> NoopEncryptionService.INSTANCE;
+            case "cipher" -> new DefaultEncryptionService(() -> {
+                final var cipher = Cipher.getInstance(RSA_ALGORITHM);
+                cipher.init(ENCRYPT_MODE, publicKey);
+                return cipher;
+            });
+            case "publicKey" -> new PublicKeyEncryptionService(publicKey);
+            case "hybrid" -> new HybridEncryptionService(publicKey);
+            default -> throw new IllegalArgumentException("Unknown encryption " + encryption);
+        };
+        reporter = new LoggingDifferenceReporter(encryptionService);
+
+        final var current = Models.customer(1, 3);
+        final var differences = new FastDiffEngine().compare(current, Models.withChangedBalance(current));
+        report = new DifferenceReport("benchmark", differences, null);
+    }
+
+    @Benchmark
+    public void report() {
+        reporter.report(report);
+    }
+}
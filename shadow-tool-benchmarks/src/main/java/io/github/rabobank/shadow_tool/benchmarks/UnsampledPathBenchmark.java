@@ -0,0 +1,69 @@
+package io.github.rabobank.shadow_tool.benchmarks;
+
+import io.github.rabobank.shadow_tool.ShadowFlow;
+import io.github.rabobank.shadow_tool.ShadowFlow.ShadowFlowBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * What the shadow flow adds to the thread of the caller when the request is not sampled,
+ * compared to only calling the current flow.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UnsampledPathBenchmark {
+    private final Customer customer = Models.customer(1, 10);
+    private final Supplier<Customer> currentFlow = () -> customer;
+    private final Supplier<Customer> newFlow = () -> customer;
+    private final Mono<Customer> currentMono = Mono.just(customer);
+    private final Mono<Customer> newMono = Mono.just(customer);
+
+    private ShadowFlow<Customer> shadowFlow;
+
+    @Setup
+    public void setUp() {
+        shadowFlow = new ShadowFlowBuilder<Customer>(0).build();
+    }
+
+    @Benchmark
+    public Customer baseline() {
+        return currentFlow.get();
+    }
+
+    @Benchmark
+    public Customer compare() {
+        return shadowFlow.compare(currentFlow, newFlow);
+    }
+
+    @Benchmark
+    public Customer compareWithRequestKey() {
+        return shadowFlow.compare(customer.name(), currentFlow, newFlow);
+    }
+
+    @Benchmark
+    public Customer baselineMono() {
+        return currentMono.block();
+    }
+
+    @Benchmark
+    public Customer compareMono() {
+        return shadowFlow.compare(currentMono, newMono).block();
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.rabobank.shadow_tool.micrometer;
+
+import io.github.rabobank.shadow_tool.CircuitBreaker;
+import io.github.rabobank.shadow_tool.ShadowFlowMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the metrics of the shadow flow with Micrometer. All meters are tagged with the {@code instance} name of
+ * the shadow flow, so one instance of this class can be shared by all shadow flows of an application.
+ * <ul>
+ *     <li>{@code shadow.flow.requests}: counter of the requests, tagged with whether they were {@code sampled}.</li>
+ *     <li>{@code shadow.flow.comparisons}: counter of the comparisons, tagged with their {@code result},
+ *     {@code match}, {@code mismatch} or {@code timeout} when the new flow did not respond in time.</li>
+ *     <li>{@code shadow.flow.stage}: timer of every {@code stage}, tagged with its {@code outcome},
+ *     {@code success} or {@code failure}.</li>
+ *     <li>{@code shadow.flow.circuit.breaker.transitions}: counter of the changes of the circuit breaker, tagged with
+ *     the new {@code state}.</li>
+ * </ul>
+ * The meters are registered once per instance, so recording does not look them up in the registry.
+ *
+ * @see ShadowFlowMeterBinder
+ */
+public class MicrometerShadowFlowMetrics implements ShadowFlowMetrics {
+    static final String REQUESTS = "shadow.flow.requests";
+    static final String COMPARISONS = "shadow.flow.comparisons";
+    static final String STAGE = "shadow.flow.stage";
+    static final String CIRCUIT_BREAKER_TRANSITIONS = "shadow.flow.circuit.breaker.transitions";
+    static final String INSTANCE_TAG = "instance";
+
+    private final MeterRegistry registry;
+    private final ConcurrentMap<String, InstanceMeters> meters = new ConcurrentHashMap<>();
+
+    /**
+     * @param registry The registry to register the meters with.
+     */
+    public MicrometerShadowFlowMetrics(final MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void recordSampling(final String instanceName, final boolean sampled) {
+        meters(instanceName).requests[index(sampled)].increment();
+    }
+
+    @Override
+    public void recordStage(final String instanceName, final Stage stage, final long durationNanos, final boolean success) {
+        meters(instanceName).stages[stage.ordinal()][index(success)].record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordComparison(final String instanceName, final boolean differencesFound) {
+        meters(instanceName).comparisons[index(differencesFound)].increment();
+    }
+
+    @Override
+    public void recordTimeout(final String instanceName) {
+        meters(instanceName).timeouts.increment();
+    }
+
+    @Override
+    public void recordCircuitBreakerState(final String instanceName, final CircuitBreaker.State state) {
+        meters(instanceName).circuitBreakerTransitions[state.ordinal()].increment();
+    }
+
+    private InstanceMeters meters(final String instanceName) {
+        final var instanceMeters = meters.get(instanceName);
+        return instanceMeters != null
+                ? instanceMeters
+                : meters.computeIfAbsent(instanceName, name -> new InstanceMeters(registry, name));
+    }
+
+    private static int index(final boolean value) {
+        return value ? 1 : 0;
+    }
+
+    private static final class InstanceMeters {
+        private final Counter[] requests;
+        private final Counter[] comparisons;
+        private final Counter timeouts;
+        private final Counter[] circuitBreakerTransitions;
+        private final Timer[][] stages;
+
+        private InstanceMeters(final MeterRegistry registry, final String instanceName) {
+            requests = new Counter[]{
+                    counter(registry, REQUESTS, instanceName, "sampled", "false"),
+                    counter(registry, REQUESTS, instanceName, "sampled", "true")
+            };
+            comparisons = new Counter[]{
+                    counter(registry, COMPARISONS, instanceName, "result", "match"),
+                    counter(registry, COMPARISONS, instanceName, "result", "mismatch")
+            };
+            timeouts = counter(registry, COMPARISONS, instanceName, "result", "timeout");
+
+            final var states = CircuitBreaker.State.values();
+            circuitBreakerTransitions = new Counter[states.length];
+            for (final var state : states) {
+                circuitBreakerTransitions[state.ordinal()] = counter(registry, CIRCUIT_BREAKER_TRANSITIONS, instanceName,
+                        "state", state.name().toLowerCase(Locale.ROOT));
+            }
+
+            final var stageValues = Stage.values();
+            stages = new Timer[stageValues.length][];
+            for (final var stage : stageValues) {
+                stages[stage.ordinal()] = new Timer[]{
+                        timer(registry, instanceName, stage, "failure"),
+                        timer(registry, instanceName, stage, "success")
+                };
+            }
+        }
+
+        private static Counter counter(final MeterRegistry registry, final String name, final String instanceName, final String tag, final String value) {
+            return Counter.builder(name)
+                    .tags(INSTANCE_TAG, instanceName, tag, value)
+                    .register(registry);
+        }
+
+        private static Timer timer(final MeterRegistry registry, final String instanceName, final Stage stage, final String outcome) {
+            return Timer.builder(STAGE)
+                    .tags(INSTANCE_TAG, instanceName, "stage", stage.name().toLowerCase(Locale.ROOT), "outcome", outcome)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.rabobank.shadow_tool.micrometer;
+
+import io.github.rabobank.shadow_tool.ShadowFlow;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import static io.github.rabobank.shadow_tool.micrometer.MicrometerShadowFlowMetrics.INSTANCE_TAG;
+
+/**
+ * Registers the state of a shadow flow with Micrometer, tagged with its {@code instance} name.
+ * <ul>
+ *     <li>{@code shadow.flow.sampling.rate}: the current probability that a request is sampled.</li>
+ *     <li>{@code shadow.flow.comparisons.queued}: the comparisons waiting for a thread of the bounded executor.</li>
+ *     <li>{@code shadow.flow.comparisons.dropped}: the comparisons dropped because a concurrency limit was reached.</li>
+ *     <li>{@code shadow.flow.comparisons.short.circuited}: the comparisons decided by the equality fast path.</li>
+ *     <li>{@code shadow.flow.reports.dropped}: the reports dropped by the asynchronous reporting.</li>
+ *     <li>{@code shadow.flow.comparisons.timed.out}: the shadow calls cancelled by the timeout.</li>
+ *     <li>{@code shadow.flow.circuit.breaker.state}: the state of the circuit breaker, 0 when closed, 1 when open and
+ *     2 when half-open.</li>
+ * </ul>
+ * In a Spring Boot application, exposing this binder as a bean is enough to register it.
+ *
+ * @see MicrometerShadowFlowMetrics
+ */
+public class ShadowFlowMeterBinder implements MeterBinder {
+    private final ShadowFlow<?> shadowFlow;
+
+    /**
+     * @param shadowFlow The shadow flow to register the state of.
+     */
+    public ShadowFlowMeterBinder(final ShadowFlow<?> shadowFlow) {
+        this.shadowFlow = shadowFlow;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        final var tags = Tags.of(INSTANCE_TAG, shadowFlow.getInstanceName());
+        Gauge.builder("shadow.flow.sampling.rate", shadowFlow, ShadowFlow::getSamplingRate)
+                .tags(tags)
+                .description("The current probability that a request is also sent to the new flow")
+                .register(registry);
+        Gauge.builder("shadow.flow.comparisons.queued", shadowFlow, ShadowFlow::getQueuedComparisons)
+                .tags(tags)
+                .description("The comparisons waiting for a thread of the bounded executor")
+                .register(registry);
+        FunctionCounter.builder("shadow.flow.comparisons.dropped", shadowFlow, ShadowFlow::getDroppedComparisons)
+                .tags(tags)
+                .description("The comparisons dropped because a concurrency limit of the shadow flow was reached")
+                .register(registry);
+        FunctionCounter.builder("shadow.flow.comparisons.short.circuited", shadowFlow, ShadowFlow::getShortCircuitedComparisons)
+                .tags(tags)
+                .description("The comparisons decided equal by the equality fast path")
+                .register(registry);
+        FunctionCounter.builder("shadow.flow.reports.dropped", shadowFlow, ShadowFlow::getDroppedReports)
+                .tags(tags)
+                .description("The reports dropped because the buffer of the asynchronous reporting was full")
+                .register(registry);
+        FunctionCounter.builder("shadow.flow.comparisons.timed.out", shadowFlow, ShadowFlow::getTimedOutComparisons)
+                .tags(tags)
+                .description("The shadow calls cancelled because the new flow did not respond within the timeout")
+                .register(registry);
+        Gauge.builder("shadow.flow.circuit.breaker.state", shadowFlow, flow -> flow.getCircuitBreakerState().ordinal())
+                .tags(tags)
+                .description("The state of the circuit breaker: 0 when closed, 1 when open and 2 when half-open")
+                .register(registry);
+    }
+}
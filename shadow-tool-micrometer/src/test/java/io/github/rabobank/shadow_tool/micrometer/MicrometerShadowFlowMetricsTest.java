@@ -0,0 +1,60 @@
+package io.github.rabobank.shadow_tool.micrometer;
+
+import io.github.rabobank.shadow_tool.CircuitBreaker;
+import io.github.rabobank.shadow_tool.FastDiffEngine;
+import io.github.rabobank.shadow_tool.ShadowFlow.ShadowFlowBuilder;
+import io.github.rabobank.shadow_tool.ShadowFlowMetrics.Stage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MicrometerShadowFlowMetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MicrometerShadowFlowMetrics metrics = new MicrometerShadowFlowMetrics(registry);
+
+    @Test
+    void shouldRecordMetricsPerInstance() {
+        metrics.recordSampling("a", true);
+        metrics.recordSampling("a", false);
+        metrics.recordSampling("b", false);
+        metrics.recordComparison("a", true);
+        metrics.recordTimeout("a");
+        metrics.recordCircuitBreakerState("a", CircuitBreaker.State.OPEN);
+        metrics.recordStage("a", Stage.NEW_FLOW_CALL, 1_000, true);
+        metrics.recordStage("a", Stage.NEW_FLOW_CALL, 2_000, false);
+
+        assertEquals(1, registry.get("shadow.flow.requests").tags("instance", "a", "sampled", "true").counter().count());
+        assertEquals(1, registry.get("shadow.flow.requests").tags("instance", "a", "sampled", "false").counter().count());
+        assertEquals(1, registry.get("shadow.flow.requests").tags("instance", "b", "sampled", "false").counter().count());
+        assertEquals(1, registry.get("shadow.flow.comparisons").tags("instance", "a", "result", "mismatch").counter().count());
+        assertEquals(0, registry.get("shadow.flow.comparisons").tags("instance", "a", "result", "match").counter().count());
+        assertEquals(1, registry.get("shadow.flow.comparisons").tags("instance", "a", "result", "timeout").counter().count());
+        assertEquals(1, registry.get("shadow.flow.circuit.breaker.transitions").tags("instance", "a", "state", "open").counter().count());
+        assertEquals(1, registry.get("shadow.flow.stage").tags("instance", "a", "stage", "new_flow_call", "outcome", "success").timer().count());
+        assertEquals(1, registry.get("shadow.flow.stage").tags("instance", "a", "stage", "new_flow_call", "outcome", "failure").timer().count());
+    }
+
+    @Test
+    void shouldRecordShadowFlow() {
+        final var shadowFlow = new ShadowFlowBuilder<String>(100)
+                .withExecutor(Runnable::run)
+                .withDiffEngine(new FastDiffEngine())
+                .withEqualityFastPath()
+                .withInstanceName("metered")
+                .withMetrics(metrics)
+                .build();
+        new ShadowFlowMeterBinder(shadowFlow).bindTo(registry);
+
+        shadowFlow.compare(() -> "Bob", () -> "Bob");
+
+        assertEquals(1, registry.get("shadow.flow.requests").tags("instance", "metered", "sampled", "true").counter().count());
+        assertEquals(1, registry.get("shadow.flow.comparisons").tags("instance", "metered", "result", "match").counter().count());
+        assertEquals(1, registry.get("shadow.flow.stage").tags("instance", "metered", "stage", "diff", "outcome", "success").timer().count());
+        assertEquals(1.0, registry.get("shadow.flow.sampling.rate").tags("instance", "metered").gauge().value());
+        assertEquals(1, registry.get("shadow.flow.comparisons.short.circuited").tags("instance", "metered").functionCounter().count());
+        assertEquals(0, registry.get("shadow.flow.comparisons.dropped").tags("instance", "metered").functionCounter().count());
+        assertEquals(0, registry.get("shadow.flow.comparisons.timed.out").tags("instance", "metered").functionCounter().count());
+        assertEquals(0.0, registry.get("shadow.flow.circuit.breaker.state").tags("instance", "metered").gauge().value());
+    }
+}
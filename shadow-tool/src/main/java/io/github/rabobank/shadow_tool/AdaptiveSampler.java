@@ -0,0 +1,179 @@
+package io.github.rabobank.shadow_tool;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Sampler} that adjusts its sampling rate at runtime, so the new flow receives a steady number of shadow
+ * calls per second regardless of the traffic on the current flow.
+ * <p>
+ * Once per adjustment interval the rate is moved towards the rate that would have produced the target number of
+ * shadow calls in the last interval, but at most doubled. The rate is halved instead when the shadow calls of the last interval took
+ * longer than the latency budget on average, or when the executor is saturated. The executor is considered
+ * saturated when a sampled call was dropped, or when the backlog of sampled calls that did not complete yet grew for
+ * {@value #SATURATION_INTERVALS} intervals in a row, which happens when calls are queued. The backlog is carried over
+ * from one interval to the next, so calls that take longer than an interval do not look like saturation once the
+ * backlog is stable. It is also not considered saturated while the backlog is explained by the average duration of
+ * the calls that completed. While the backlog grows, the rate is not increased. Sampled calls that are skipped, for
+ * example because the circuit breaker is open, are left out. The rate never exceeds the configured maximum.
+ * <p>
+ * The adjustment is done by the request that finds the interval has passed, so no background thread is needed.
+ * Deciding whether a request is sampled only reads the current rate and increments counters, it does not allocate.
+ */
+public class AdaptiveSampler implements Sampler {
+    private static final Duration DEFAULT_ADJUSTMENT_INTERVAL = Duration.ofSeconds(1);
+    private static final double INITIAL_RATE = 0.01;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double INCREASE_FACTOR = 2;
+    private static final double MIN_INCREASE_RATE = 0.000_001;
+    private static final double SMOOTHING_FACTOR = 0.5;
+    private static final double SATURATION_THRESHOLD = 0.9;
+    private static final int SATURATION_INTERVALS = 3;
+    private static final long MIN_CALLS_FOR_SATURATION = 10;
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final double targetCallsPerSecond;
+    private final long latencyBudgetNanos;
+    private final double maxRate;
+    private final long adjustmentIntervalNanos;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder sampledCalls = new LongAdder();
+    private final LongAdder completedCalls = new LongAdder();
+    private final LongAdder completedCallsNanos = new LongAdder();
+    private final LongAdder droppedCalls = new LongAdder();
+    private final LongAdder skippedCalls = new LongAdder();
+    private final AtomicLong lastAdjustmentNanos;
+    private volatile double rate;
+    // Only used while adjusting
+    private long backlog;
+    private int growingIntervals;
+
+    /**
+     * Creates an adaptive sampler which adjusts its rate every second.
+     *
+     * @param targetCallsPerSecond The number of shadow calls per second the new flow should receive.
+     * @param latencyBudget        The average duration of a shadow call above which the rate is decreased.
+     * @param maxRate              The maximum rate, between 0 and 1.
+     */
+    public AdaptiveSampler(final double targetCallsPerSecond, final Duration latencyBudget, final double maxRate) {
+        this(targetCallsPerSecond, latencyBudget, maxRate, DEFAULT_ADJUSTMENT_INTERVAL);
+    }
+
+    /**
+     * @param targetCallsPerSecond The number of shadow calls per second the new flow should receive.
+     * @param latencyBudget        The average duration of a shadow call above which the rate is decreased.
+     * @param maxRate              The maximum rate, between 0 and 1.
+     * @param adjustmentInterval   How often the rate is adjusted.
+     */
+    public AdaptiveSampler(final double targetCallsPerSecond, final Duration latencyBudget, final double maxRate, final Duration adjustmentInterval) {
+        if (!(targetCallsPerSecond > 0)) {
+            throw new IllegalArgumentException("The target calls per second must be positive. Got " + targetCallsPerSecond);
+        }
+        if (!(maxRate >= 0 && maxRate <= 1)) {
+            throw new IllegalArgumentException("The maximum rate must be within the range of 0 and 1. Got " + maxRate);
+        }
+        if (latencyBudget.isNegative() || latencyBudget.isZero() || adjustmentInterval.isNegative() || adjustmentInterval.isZero()) {
+            throw new IllegalArgumentException("The latency budget and adjustment interval must be positive");
+        }
+        this.targetCallsPerSecond = targetCallsPerSecond;
+        this.latencyBudgetNanos = latencyBudget.toNanos();
+        this.maxRate = maxRate;
+        this.adjustmentIntervalNanos = adjustmentInterval.toNanos();
+        this.lastAdjustmentNanos = new AtomicLong(System.nanoTime());
+        this.rate = Math.min(INITIAL_RATE, maxRate);
+    }
+
+    @Override
+    public boolean shouldSample() {
+        return sample(ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * Samples the request when the hash of its key falls below the current rate. A key that is sampled stays sampled
+     * while the rate increases.
+     */
+    @Override
+    public boolean shouldSample(final Object requestKey) {
+        return sample(PercentageSampler.keyFraction(requestKey));
+    }
+
+    private boolean sample(final double value) {
+        requests.increment();
+        final var now = System.nanoTime();
+        final var lastAdjustment = lastAdjustmentNanos.get();
+        if (now - lastAdjustment >= adjustmentIntervalNanos && lastAdjustmentNanos.compareAndSet(lastAdjustment, now)) {
+            adjust(now - lastAdjustment);
+        }
+
+        if (value < rate) {
+            sampledCalls.increment();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void onShadowCallCompleted(final long durationNanos) {
+        completedCalls.increment();
+        completedCallsNanos.add(durationNanos);
+    }
+
+    @Override
+    public void onShadowCallDropped() {
+        droppedCalls.increment();
+    }
+
+    @Override
+    public void onShadowCallSkipped() {
+        skippedCalls.increment();
+    }
+
+    @Override
+    public double getSamplingRate() {
+        return rate;
+    }
+
+    private synchronized void adjust(final long elapsedNanos) {
+        final var requestCount = requests.sumThenReset();
+        final var sampledCount = sampledCalls.sumThenReset() - skippedCalls.sumThenReset();
+        final var completedCount = completedCalls.sumThenReset();
+        final var completedNanos = completedCallsNanos.sumThenReset();
+        final var droppedCount = droppedCalls.sumThenReset();
+        final var previousBacklog = backlog;
+        backlog = Math.max(0, backlog + sampledCount - completedCount - droppedCount);
+        growingIntervals = backlog > previousBacklog ? growingIntervals + 1 : 0;
+        if (requestCount == 0) {
+            return;
+        }
+
+        final var overBudget = completedCount > 0 && completedNanos / completedCount > latencyBudgetNanos;
+        final double newRate;
+        if (overBudget || droppedCount > 0 || isSaturated(sampledCount, completedCount, completedNanos, elapsedNanos)) {
+            newRate = rate * DECREASE_FACTOR;
+        } else if (growingIntervals > 0) {
+            return; // Wait for the backlog to settle before sending more calls
+        } else {
+            final var targetRate = targetCallsPerSecond * (elapsedNanos / NANOS_PER_SECOND) / requestCount;
+            final var maxIncreasedRate = Math.max(rate, MIN_INCREASE_RATE) * INCREASE_FACTOR;
+            newRate = Math.min(maxIncreasedRate, rate + (targetRate - rate) * SMOOTHING_FACTOR);
+        }
+        rate = Math.max(0, Math.min(maxRate, newRate));
+    }
+
+    /**
+     * By Little's law, the number of calls in progress is the rate at which they are sampled times their average
+     * duration. A backlog that keeps growing beyond that consists of calls that are waiting for the executor.
+     */
+    private boolean isSaturated(final long sampledCount, final long completedCount, final long completedNanos, final long elapsedNanos) {
+        if (growingIntervals < SATURATION_INTERVALS || backlog < MIN_CALLS_FOR_SATURATION) {
+            return false;
+        }
+        if (completedCount == 0) {
+            return true;
+        }
+        final var callsInProgress = (double) sampledCount / elapsedNanos * ((double) completedNanos / completedCount);
+        return backlog * SATURATION_THRESHOLD > callsInProgress;
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.rabobank.shadow_tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link DifferenceReporter} which groups the differences by fingerprint, and periodically logs a summary per
+ * fingerprint instead of a line per comparison. The fingerprint of a comparison is its instance name and the sorted
+ * names of the properties that differ, with the positions of collection elements left out. A systematic difference
+ * between both flows therefore results in a single line per window, no matter how many comparisons found it.
+ * <p>
+ * When an {@link EncryptionService} is configured, the values of only the first few comparisons of every fingerprint
+ * are encrypted and logged as samples, so the encryption is no longer paid for every comparison.
+ * The summaries are logged without the MDC context of the comparisons.
+ * <p>
+ * The summaries are logged by a single daemon thread shared by all reporters. Counting a comparison only increments
+ * a {@link LongAdder}, a comparison that races with a summary may be counted in the next window.
+ * Fingerprints that were not seen for a whole window are forgotten, unless a comparison is being counted for them.
+ */
+public class AggregatingDifferenceReporter implements DifferenceReporter, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AggregatingDifferenceReporter.class);
+    private static final String DIFFERENCES_SUMMARY = "{} The following differences were found in {} comparisons: {}";
+    private static final String DIFFERENCES_SUMMARY_ENCRYPTED = DIFFERENCES_SUMMARY + ". Encrypted values of {} samples: {}";
+    private static final Pattern ELEMENT_POSITION = Pattern.compile("\\[\\d+]");
+
+    private final EncryptionService encryptionService;
+    private final int samplesPerFingerprint;
+    private final Map<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+    private final PeriodicTask<AggregatingDifferenceReporter> task;
+
+    /**
+     * @param encryptionService     The service used to encrypt the values of the sampled differences.
+     *                              When null, only the names of the properties are logged.
+     * @param window                How often the summaries are logged.
+     * @param samplesPerFingerprint The maximum number of comparisons per fingerprint and window of which the values
+     *                              are encrypted and logged.
+     */
+    public AggregatingDifferenceReporter(final EncryptionService encryptionService, final Duration window, final int samplesPerFingerprint) {
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("The window must be positive. Got " + window);
+        }
+        if (samplesPerFingerprint < 0) {
+            throw new IllegalArgumentException("The samples per fingerprint must not be negative. Got " + samplesPerFingerprint);
+        }
+        this.encryptionService = encryptionService;
+        this.samplesPerFingerprint = samplesPerFingerprint;
+        task = PeriodicTask.schedule(this, AggregatingDifferenceReporter::flush, window);
+    }
+
+    @Override
+    public void report(final DifferenceReport report) {
+        if (!logger.isInfoEnabled()) { // This is mostly to ensure that we do not encrypt needlessly
+            return;
+        }
+
+        final var propertyNames = propertyNames(report);
+        final var key = report.instanceName() + '\n' + propertyNames;
+        Aggregate aggregate;
+        do {
+            aggregate = aggregates.computeIfAbsent(key, ignored -> new Aggregate(report.instanceName(), propertyNames));
+        } while (!aggregate.enter()); // A retired aggregate is (being) removed, the next attempt finds or creates its successor
+        try {
+            aggregate.occurrences.increment();
+            if (encryptionService != null && aggregate.claimSample(samplesPerFingerprint)) {
+                aggregate.samples.add(encryptionService.encrypt(DifferenceRenderer.render(report.differences(), true).values()));
+            }
+        } finally {
+            aggregate.exit();
+        }
+    }
+
+    /**
+     * Logs a summary of every fingerprint found since the last summary, and forgets the fingerprints that were not found.
+     */
+    public void flush() {
+        for (final var entry : aggregates.entrySet()) {
+            final var aggregate = entry.getValue();
+            // Once retired, no comparison can be counted anymore, so the counts read below are final
+            if (aggregate.occurrences.sum() == 0 && aggregate.retire()) {
+                aggregates.remove(entry.getKey(), aggregate);
+            }
+            final var occurrences = aggregate.occurrences.sumThenReset();
+            if (occurrences == 0) {
+                continue;
+            }
+
+            final var samples = new ArrayList<String>();
+            for (var sample = aggregate.samples.poll(); sample != null; sample = aggregate.samples.poll()) {
+                samples.add(sample);
+            }
+            aggregate.claimedSamples.set(0);
+            final var logPrefix = ShadowFlow.logPrefix(aggregate.instanceName);
+            if (samples.isEmpty()) {
+                logger.info(DIFFERENCES_SUMMARY, logPrefix, occurrences, aggregate.propertyNames);
+            } else {
+                logger.info(DIFFERENCES_SUMMARY_ENCRYPTED, logPrefix, occurrences, aggregate.propertyNames,
+                        samples.size(), String.join(", ", samples));
+            }
+        }
+    }
+
+    /**
+     * Stops the periodic logging, and logs the summaries of the differences that were not logged yet.
+     */
+    @Override
+    public void close() {
+        task.cancel();
+        flush();
+    }
+
+    private static String propertyNames(final DifferenceReport report) {
+        final var propertyNames = new TreeSet<String>();
+        for (final var difference : report.differences()) {
+            propertyNames.add(ELEMENT_POSITION.matcher(difference.getPropertyName()).replaceAll("[]"));
+        }
+        return String.join(", ", propertyNames);
+    }
+
+    private static final class Aggregate {
+        private static final int RETIRED = -1;
+
+        private final String instanceName;
+        private final String propertyNames;
+        private final LongAdder occurrences = new LongAdder();
+        private final AtomicInteger claimedSamples = new AtomicInteger();
+        private final Queue<String> samples = new ConcurrentLinkedQueue<>();
+        // The number of comparisons being counted, or RETIRED once the aggregate is removed
+        private final AtomicInteger reporters = new AtomicInteger();
+
+        private Aggregate(final String instanceName, final String propertyNames) {
+            this.instanceName = instanceName;
+            this.propertyNames = propertyNames;
+        }
+
+        private boolean claimSample(final int samplesPerFingerprint) {
+            // Reading first keeps the common case, when all samples are taken, free of contended writes
+            return claimedSamples.get() < samplesPerFingerprint && claimedSamples.getAndIncrement() < samplesPerFingerprint;
+        }
+
+        private boolean enter() {
+            for (var current = reporters.get(); current != RETIRED; current = reporters.get()) {
+                if (reporters.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void exit() {
+            reporters.decrementAndGet();
+        }
+
+        private boolean retire() {
+            return reporters.compareAndSet(0, RETIRED);
+        }
+    }
+}
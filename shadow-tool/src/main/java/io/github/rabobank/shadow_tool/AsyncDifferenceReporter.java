@@ -0,0 +1,154 @@
+package io.github.rabobank.shadow_tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link DifferenceReporter} that takes formatting, encryption and I/O off the comparison threads.
+ * Comparison threads only hand their reports to a bounded, lock-free ring buffer. A single drainer thread takes them
+ * out in batches and passes every batch to the delegate using {@link DifferenceReporter#reportBatch(List)}.
+ * <p>
+ * When the ring buffer is full, the report is dropped and counted instead of blocking the comparison thread.
+ */
+public class AsyncDifferenceReporter implements DifferenceReporter, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncDifferenceReporter.class);
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(100);
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final DifferenceReporter delegate;
+    private final MpscRingBuffer<DifferenceReport> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final LongAdder droppedReports = new LongAdder();
+    private final Thread drainer;
+    private volatile boolean running = true;
+
+    /**
+     * Creates an asynchronous reporter which flushes every 100 milliseconds.
+     *
+     * @param delegate       The reporter that does the actual reporting on the drainer thread.
+     * @param bufferCapacity The maximum number of reports waiting to be reported, rounded up to a power of two, at most 2<sup>30</sup>.
+     * @param batchSize      The maximum number of reports passed to the delegate at once.
+     */
+    public AsyncDifferenceReporter(final DifferenceReporter delegate, final int bufferCapacity, final int batchSize) {
+        this(delegate, bufferCapacity, batchSize, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * @param delegate       The reporter that does the actual reporting on the drainer thread.
+     * @param bufferCapacity The maximum number of reports waiting to be reported, rounded up to a power of two, at most 2<sup>30</sup>.
+     * @param batchSize      The maximum number of reports passed to the delegate at once.
+     * @param flushInterval  How long the drainer waits for new reports when the buffer is empty.
+     */
+    public AsyncDifferenceReporter(final DifferenceReporter delegate, final int bufferCapacity, final int batchSize, final Duration flushInterval) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be at least 1. Got " + batchSize);
+        }
+        this.delegate = delegate;
+        this.buffer = new MpscRingBuffer<>(bufferCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        drainer = new Thread(this::drain, "shadow-flow-reporter-" + THREAD_COUNTER.incrementAndGet());
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @Override
+    public void report(final DifferenceReport report) {
+        if (!running || !buffer.offer(report)) {
+            droppedReports.increment();
+        } else if (!running) {
+            // Closed while offering, the drainer may have checked the buffer for the last time already
+            dropLeftovers();
+        }
+    }
+
+    /**
+     * @return The number of reports that were dropped because the buffer was full or the reporter was closed.
+     */
+    public long getDroppedReports() {
+        return droppedReports.sum();
+    }
+
+    /**
+     * Stops accepting new reports and waits for the drainer to report everything still in the buffer. The reports
+     * that were offered while the drainer stopped are reported on the calling thread.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join(CLOSE_TIMEOUT.toMillis());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        reportLeftovers();
+    }
+
+    /**
+     * The buffer only supports a single consumer, so the leftovers are taken out under a lock, and only once the
+     * drainer has stopped.
+     */
+    private synchronized void reportLeftovers() {
+        if (drainer.isAlive()) {
+            return;
+        }
+        final List<DifferenceReport> leftovers = new ArrayList<>();
+        DifferenceReport report;
+        while ((report = buffer.poll()) != null) {
+            leftovers.add(report);
+        }
+        if (!leftovers.isEmpty()) {
+            try {
+                delegate.reportBatch(leftovers);
+            } catch (final Exception e) {
+                logger.warn("Failed to report {} differences", leftovers.size(), e);
+            }
+        }
+    }
+
+    /**
+     * Counts the reports that were offered after the reporter was closed as dropped, unless the drainer or
+     * {@link #close()} can still report them.
+     */
+    private synchronized void dropLeftovers() {
+        if (drainer.isAlive()) {
+            return;
+        }
+        while (buffer.poll() != null) {
+            droppedReports.increment();
+        }
+    }
+
+    private void drain() {
+        final List<DifferenceReport> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            DifferenceReport report;
+            while (batch.size() < batchSize && (report = buffer.poll()) != null) {
+                batch.add(report);
+            }
+
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+                continue;
+            }
+
+            try {
+                delegate.reportBatch(batch);
+            } catch (final Exception e) {
+                logger.warn("Failed to report {} differences", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
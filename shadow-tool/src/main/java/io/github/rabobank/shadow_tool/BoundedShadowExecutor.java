@@ -0,0 +1,99 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * An {@link Executor} with an upper bound on the number of concurrently running shadow comparisons and on the number
+ * of comparisons waiting to be picked up. When both are exhausted, the comparison is dropped and counted instead of
+ * blocking or rejecting the caller, so the current flow is never impacted by a saturated or slow new flow.
+ */
+public class BoundedShadowExecutor implements Executor {
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+    private static final String THREAD_NAME_PREFIX = "shadow-flow-";
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+    // Only seen by tryExecute, so a single instance avoids filling in a stack trace for every dropped task
+    private static final RejectedExecutionException DROPPED_TASK = new RejectedExecutionException("The shadow comparison was dropped");
+
+    private final ThreadPoolExecutor delegate;
+    private final LongAdder droppedTasks = new LongAdder();
+
+    /**
+     * @param maxConcurrency The maximum number of shadow comparisons running at the same time. Must be at least 1.
+     * @param queueCapacity  The maximum number of shadow comparisons waiting for a thread. Zero means no queueing,
+     *                       a comparison is only accepted when a thread is available.
+     */
+    public BoundedShadowExecutor(final int maxConcurrency, final int queueCapacity) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The maximum concurrency must be at least 1. Got " + maxConcurrency);
+        }
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("The queue capacity must not be negative. Got " + queueCapacity);
+        }
+
+        final BlockingQueue<Runnable> queue = queueCapacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueCapacity);
+        delegate = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, KEEP_ALIVE_SECONDS, SECONDS, queue,
+                threadFactory(), (task, executor) -> {
+                    throw DROPPED_TASK;
+                });
+        delegate.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        tryExecute(command);
+    }
+
+    /**
+     * @return Whether the task was accepted, or false when it was dropped.
+     */
+    boolean tryExecute(final Runnable command) {
+        try {
+            delegate.execute(command);
+            return true;
+        } catch (final RejectedExecutionException e) {
+            droppedTasks.increment();
+            return false;
+        }
+    }
+
+    /**
+     * @return The number of shadow comparisons that were dropped because the executor was saturated.
+     */
+    public long getDroppedTasks() {
+        return droppedTasks.sum();
+    }
+
+    /**
+     * @return The approximate number of shadow comparisons that are currently running.
+     */
+    public int getActiveCount() {
+        return delegate.getActiveCount();
+    }
+
+    /**
+     * @return The number of shadow comparisons waiting for a thread.
+     */
+    public int getQueueSize() {
+        return delegate.getQueue().size();
+    }
+
+    private static ThreadFactory threadFactory() {
+        final var poolNumber = POOL_COUNTER.incrementAndGet();
+        final var threadCounter = new AtomicInteger();
+        return runnable -> {
+            final var thread = new Thread(runnable, THREAD_NAME_PREFIX + poolNumber + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
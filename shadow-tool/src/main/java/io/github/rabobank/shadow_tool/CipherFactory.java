@@ -0,0 +1,19 @@
+package io.github.rabobank.shadow_tool;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+
+/**
+ * Creates initialized {@link Cipher} instances. Since a {@link Cipher} is not thread-safe, the
+ * {@link DefaultEncryptionService} uses this to create a cipher for every concurrent encryption.
+ * Created ciphers are reused for subsequent encryptions, so they should support multiple calls to
+ * {@link Cipher#doFinal(byte[])}.
+ */
+@FunctionalInterface
+public interface CipherFactory {
+    /**
+     * @return A new cipher, initialized in encryption mode
+     * @throws GeneralSecurityException when the cipher could not be created or initialized
+     */
+    Cipher createCipher() throws GeneralSecurityException;
+}
@@ -0,0 +1,140 @@
+package io.github.rabobank.shadow_tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stops calling the new flow of a shadow flow instance when it keeps failing or timing out.
+ * <p>
+ * The circuit breaker opens after a number of consecutive failures of the new flow. While it is open, requests are
+ * not sampled. Once the cool-down has passed, it is half-open: a single sampled request probes the new flow, and the
+ * circuit breaker closes when the probe succeeds, or opens again when it fails. A request only becomes the probe right
+ * before it calls the new flow, so a sampled request that is skipped or dropped on its way there does not leave the
+ * circuit breaker half-open. When the probe does not finish within the cool-down, another request probes the new flow. Only the outcome of a call that started after the last change of
+ * the state is recorded, so a call that was already in flight when the circuit breaker opened is not mistaken for the
+ * probe.
+ * <p>
+ * Deciding whether the new flow is called only reads the state when the circuit breaker is closed.
+ *
+ * @see ShadowFlow.ShadowFlowBuilder#withCircuitBreaker(int, Duration)
+ */
+public final class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * The states of a circuit breaker.
+     */
+    public enum State {
+        /**
+         * The new flow is called for the sampled requests.
+         */
+        CLOSED,
+        /**
+         * The new flow failed too often, it is not called until the cool-down has passed.
+         */
+        OPEN,
+        /**
+         * The cool-down has passed, a single request is probing whether the new flow has recovered.
+         */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final Duration coolDown;
+    private final long coolDownNanos;
+    private final String instanceName;
+    private final String instanceNameLogPrefix;
+    private final ShadowFlowMetrics metrics;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicReference<Status> status = new AtomicReference<>(new Status(State.CLOSED, System.nanoTime()));
+
+    CircuitBreaker(final int failureThreshold, final Duration coolDown, final String instanceName, final ShadowFlowMetrics metrics) {
+        this.failureThreshold = failureThreshold;
+        this.coolDown = coolDown;
+        this.coolDownNanos = coolDown.toNanos();
+        this.instanceName = instanceName;
+        this.instanceNameLogPrefix = ShadowFlow.logPrefix(instanceName);
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return The current state of the circuit breaker.
+     */
+    public State getState() {
+        return status.get().state();
+    }
+
+    /**
+     * @return Whether a sampled request may go on towards calling the new flow. Unlike {@link #tryAcquire()}, this does
+     * not make it the probe.
+     */
+    boolean allowsCalls() {
+        final var current = status.get();
+        return current.state() == State.CLOSED || System.nanoTime() - current.sinceNanos() >= coolDownNanos;
+    }
+
+    /**
+     * Called right before the new flow is called.
+     *
+     * @return Whether the new flow may be called. When it returns true for a half-open circuit breaker, the call is
+     * the probe.
+     */
+    boolean tryAcquire() {
+        final var current = status.get();
+        if (current.state() == State.CLOSED) {
+            return true;
+        }
+        final var now = System.nanoTime();
+        return now - current.sinceNanos() >= coolDownNanos && transition(current, new Status(State.HALF_OPEN, now));
+    }
+
+    /**
+     * Records whether a call to the new flow succeeded. Failures include timeouts.
+     *
+     * @param startNanos When the call started, according to {@link System#nanoTime()}. Calls that started before the
+     *                   last change of the state are ignored, so while half-open only the probe is recorded.
+     */
+    void record(final boolean success, final long startNanos) {
+        final var current = status.get();
+        if (startNanos - current.sinceNanos() < 0) {
+            return;
+        }
+        if (success) {
+            if (consecutiveFailures.get() != 0) {
+                consecutiveFailures.set(0);
+            }
+            if (current.state() == State.HALF_OPEN) {
+                transition(current, new Status(State.CLOSED, System.nanoTime()));
+            }
+        } else if (current.state() == State.HALF_OPEN
+                   || current.state() == State.CLOSED && consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            if (transition(current, new Status(State.OPEN, System.nanoTime()))) {
+                consecutiveFailures.set(0);
+            }
+        }
+    }
+
+    private boolean transition(final Status from, final Status to) {
+        if (!status.compareAndSet(from, to)) {
+            return false;
+        }
+
+        if (to.state() == State.OPEN) {
+            logger.warn("{} The circuit breaker opened, the new flow is not called for {}", instanceNameLogPrefix, coolDown);
+        } else if (to.state() == State.CLOSED) {
+            logger.info("{} The circuit breaker closed, the new flow is called again", instanceNameLogPrefix);
+        }
+        metrics.recordCircuitBreakerState(instanceName, to.state());
+        return true;
+    }
+
+    /**
+     * @param sinceNanos When the state was entered, which also tells apart the probes of consecutive half-open states
+     */
+    private record Status(State state, long sinceNanos) {
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.rabobank.shadow_tool;
+
+import org.bouncycastle.util.encoders.Base64;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The default Encryption Service used by Shadow Tool. It uses a {@link Cipher} to encrypt values.
+ * <p>
+ * A {@link Cipher} is not thread-safe. When this service is created with a single cipher, encryptions are serialized on
+ * that cipher. When it is created with a {@link CipherFactory}, every concurrent encryption borrows its own cipher from
+ * a pool, so encryption scales with the number of shadow flow threads without sharing mutable state.
+ *
+ * @see Cipher
+ * @see CipherFactory
+ */
+public class DefaultEncryptionService implements EncryptionService {
+    private final Cipher sharedCipher;
+    private final CipherFactory cipherFactory;
+    private final Queue<Cipher> cipherPool;
+
+    /**
+     * @param cipher The initialized cipher, on which all encryptions are serialized
+     * @deprecated A single cipher makes concurrent shadow flows wait for each other's encryption. Use
+     * {@link #DefaultEncryptionService(CipherFactory)} instead, which gives every concurrent encryption its own cipher.
+     */
+    @Deprecated(since = "1.11.2")
+    public DefaultEncryptionService(final Cipher cipher) {
+        this.sharedCipher = cipher;
+        this.cipherFactory = null;
+        this.cipherPool = null;
+    }
+
+    /**
+     * @param cipherFactory Creates the pooled ciphers. It is invoked once on construction to validate the setup.
+     * @throws IllegalArgumentException when the factory is unable to create a cipher
+     */
+    public DefaultEncryptionService(final CipherFactory cipherFactory) {
+        this.sharedCipher = null;
+        this.cipherFactory = cipherFactory;
+        this.cipherPool = new ConcurrentLinkedQueue<>();
+        try {
+            cipherPool.offer(cipherFactory.createCipher());
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public String encrypt(final String value) {
+        try {
+            return Base64.toBase64String(encrypt(value.getBytes(UTF_8)));
+        } catch (final GeneralSecurityException e) {
+            throw new SecurityException(e);
+        }
+    }
+
+    private byte[] encrypt(final byte[] value) throws GeneralSecurityException {
+        if (sharedCipher != null) {
+            synchronized (sharedCipher) {
+                return sharedCipher.doFinal(value);
+            }
+        }
+
+        final var pooledCipher = cipherPool.poll();
+        final var cipher = pooledCipher != null ? pooledCipher : cipherFactory.createCipher();
+        final var encrypted = cipher.doFinal(value);
+        // A cipher of which doFinal failed may be left in an unusable state, so it is only pooled again on success
+        cipherPool.offer(cipher);
+        return encrypted;
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compares the result of the current flow with the result of the new flow.
+ * Implementations must be thread-safe, since comparisons run concurrently on the shadow flow threads.
+ *
+ * @see JaversDiffEngine
+ * @see FastDiffEngine
+ * @see MerkleDiffEngine
+ */
+public interface DiffEngine {
+    /**
+     * @param currentFlowResult The result of the current flow
+     * @param newFlowResult     The result of the new flow
+     * @return The differences found, or an empty list when both results are equal
+     */
+    List<Difference> compare(final Object currentFlowResult, final Object newFlowResult);
+
+    /**
+     * @param currentFlowResult The result of the current flow
+     * @param newFlowResult     The result of the new flow
+     * @param clazz             The type of the elements in the collections
+     * @param <T>               The type of the elements in the collections
+     * @return The differences found, or an empty list when both results are equal
+     */
+    <T> List<Difference> compareCollections(final Collection<T> currentFlowResult, final Collection<T> newFlowResult, final Class<T> clazz);
+
+    /**
+     * Prepares the comparison of results of the given type, so the first sampled comparisons do not pay for
+     * introspecting it. It is called once when the shadow flow is built. By default, nothing is prepared.
+     *
+     * @param type The type of the results
+     * @see ShadowFlow.ShadowFlowBuilder#withDomainType(Class)
+     */
+    default void warmUp(final Class<?> type) {
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.rabobank.shadow_tool;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers which requests were verified recently, so the shadow flow can skip calling the new flow and comparing
+ * when the same request was already verified within the time to live. A request is verified when the results of both
+ * flows were equal, so requests with differences are compared again.
+ * <p>
+ * The entries are kept in the order they were verified, so the oldest entry is evicted when the cache is full,
+ * and expired entries are evicted from the head of that order when a new entry is added.
+ * Only sampled requests use the cache, unsampled requests never touch it.
+ * <p>
+ * Without a request key, a request is identified by a {@link ResultDigest} of the result of the current flow, so the
+ * cache never retains the results themselves. The digest is computed on the shadow executor, right before the new flow
+ * would be called.
+ */
+final class DiffResultCache {
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LinkedHashMap<Object, Long> verifiedAt;
+
+    DiffResultCache(final int maximumSize, final Duration timeToLive) {
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.verifiedAt = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Object, Long> eldest) {
+                return size() > DiffResultCache.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * @return Whether the request with this key was verified within the time to live.
+     */
+    boolean isRecentlyVerified(final Object key) {
+        final Long verified;
+        synchronized (this) {
+            verified = verifiedAt.get(key);
+        }
+        if (verified != null && System.nanoTime() - verified < timeToLiveNanos) {
+            hits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remembers that the request with this key was verified, and evicts the expired entries.
+     */
+    void markVerified(final Object key) {
+        final var now = System.nanoTime();
+        synchronized (this) {
+            verifiedAt.remove(key);
+            final Iterator<Long> oldest = verifiedAt.values().iterator();
+            while (oldest.hasNext() && now - oldest.next() >= timeToLiveNanos) {
+                oldest.remove();
+            }
+            verifiedAt.put(key, now);
+        }
+    }
+
+    synchronized int size() {
+        return verifiedAt.size();
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * The 64-bit hash of the values in a result, see {@link MerkleDiffEngine#digest(Object, PropertyProjection)}, or
+     * in the snapshot of a result, see {@link ResultSnapshot#digest()}.
+     */
+    record ResultDigest(long hash) {
+    }
+}
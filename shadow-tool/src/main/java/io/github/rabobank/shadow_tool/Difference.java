@@ -0,0 +1,54 @@
+package io.github.rabobank.shadow_tool;
+
+/**
+ * A single difference found between the result of the current flow and the result of the new flow.
+ */
+public interface Difference {
+    /**
+     * @return The name of the property that differs. This never contains any values and is always safe to log.
+     */
+    String getPropertyName();
+
+    /**
+     * Renders the difference, including the values of both flows. Since the values are potentially sensitive,
+     * the result should only be logged after encryption. Rendering is done lazily, so it is only paid for when needed.
+     *
+     * @return A human-readable description of the difference
+     */
+    String prettyPrint();
+
+    /**
+     * Writes the name of the property to the buffer, see {@link #getPropertyName()}. Implementations can override it
+     * to avoid creating an intermediate string.
+     *
+     * @param buffer The buffer to write to
+     */
+    default void appendPropertyName(final StringBuilder buffer) {
+        buffer.append(getPropertyName());
+    }
+
+    /**
+     * Writes the difference including the values of both flows to the buffer, see {@link #prettyPrint()}.
+     * Implementations can override it to avoid creating an intermediate string.
+     *
+     * @param buffer The buffer to write to
+     */
+    default void prettyPrint(final StringBuilder buffer) {
+        buffer.append(prettyPrint());
+    }
+
+    /**
+     * Writes the difference like {@link #prettyPrint(StringBuilder)}, but stops once {@code maxLength} characters were
+     * written. Implementations can override it, so a huge value is not rendered in full only to be cut off.
+     *
+     * @param buffer    The buffer to write to
+     * @param maxLength The number of characters that can still be written
+     * @return The length of the complete difference, which is more than {@code maxLength} when it was cut off. The
+     * default implementation writes the complete difference, the caller cuts off what exceeds {@code maxLength}.
+     */
+    default int prettyPrint(final StringBuilder buffer, final int maxLength) {
+        final var start = buffer.length();
+        prettyPrint(buffer);
+        return buffer.length() - start;
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.List;
+
+/**
+ * Renders the differences of a report for logging. The names of the properties and, when needed, the values are
+ * written in a single pass over the differences, straight into buffers that every platform thread reuses.
+ * <p>
+ * The output is capped, so a comparison of two huge results cannot flood the logs or the encryption: a difference
+ * that renders too long is cut off, without copying more of its values than fits, and the differences that do not
+ * fit anymore are only counted.
+ */
+final class DifferenceRenderer {
+    static final int MAX_PROPERTY_NAMES_LENGTH = 4_096;
+    static final int MAX_DIFFERENCE_LENGTH = 2_048;
+    static final int MAX_VALUES_LENGTH = 32_768;
+    // A buffer that grew larger than this while rendering a single difference is not kept for the next report
+    private static final int MAX_RETAINED_CAPACITY = 2 * MAX_VALUES_LENGTH;
+    private static final ThreadLocal<DifferenceRenderer> RENDERERS = ThreadLocal.withInitial(DifferenceRenderer::new);
+
+    private final StringBuilder propertyNames = new StringBuilder(256);
+    private final StringBuilder values = new StringBuilder(1_024);
+
+    private DifferenceRenderer() {
+    }
+
+    /**
+     * @param differences The differences to render
+     * @param withValues  Whether to render the values, which is only needed when they are encrypted and logged.
+     * @return The names of the properties separated by commas, and the values separated by new lines, or null when
+     * they were not rendered.
+     */
+    static RenderedDifferences render(final List<Difference> differences, final boolean withValues) {
+        // A renderer kept for a virtual thread would never be reused, and only adds a thread local to it
+        final var renderer = VirtualThreadShadowExecutor.isCurrentThreadVirtual() ? new DifferenceRenderer() : RENDERERS.get();
+        try {
+            return renderer.renderDifferences(differences, withValues);
+        } finally {
+            renderer.reset();
+        }
+    }
+
+    private RenderedDifferences renderDifferences(final List<Difference> differences, final boolean withValues) {
+        final var size = differences.size();
+        var renderNames = true;
+        var renderValues = withValues;
+        for (int i = 0; i < size && (renderNames || renderValues); i++) {
+            final var difference = differences.get(i);
+            if (renderNames) {
+                renderNames = appendPropertyName(difference, i, size);
+            }
+            if (renderValues) {
+                renderValues = appendValues(difference, i, size);
+            }
+        }
+        return new RenderedDifferences(propertyNames.toString(), withValues ? values.toString() : null);
+    }
+
+    private boolean appendPropertyName(final Difference difference, final int index, final int size) {
+        if (index > 0) {
+            propertyNames.append(", ");
+        }
+        if (propertyNames.length() >= MAX_PROPERTY_NAMES_LENGTH) {
+            propertyNames.append("... (").append(size - index).append(" more)");
+            return false;
+        }
+        difference.appendPropertyName(propertyNames);
+        return true;
+    }
+
+    private boolean appendValues(final Difference difference, final int index, final int size) {
+        if (index > 0) {
+            values.append('\n');
+        }
+        if (values.length() >= MAX_VALUES_LENGTH) {
+            values.append("... (").append(size - index).append(" more differences)");
+            return false;
+        }
+        final var start = values.length();
+        final var length = difference.prettyPrint(values, MAX_DIFFERENCE_LENGTH);
+        if (length > MAX_DIFFERENCE_LENGTH) {
+            values.setLength(start + MAX_DIFFERENCE_LENGTH);
+            values.append("... (truncated ").append(length - MAX_DIFFERENCE_LENGTH).append(" characters)");
+        }
+        return true;
+    }
+
+    private void reset() {
+        reset(propertyNames);
+        reset(values);
+    }
+
+    private static void reset(final StringBuilder buffer) {
+        buffer.setLength(0);
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer.trimToSize();
+        }
+    }
+
+    /**
+     * @param propertyNames The names of the properties that differ, separated by commas.
+     * @param values        The rendered differences including their values, separated by new lines, or null when
+     *                      the values were not rendered.
+     */
+    record RenderedDifferences(String propertyNames, String values) {
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The differences found by a single shadow comparison.
+ *
+ * @param instanceName The name of the {@link ShadowFlow} instance that found the differences.
+ * @param differences  The differences, never empty.
+ * @param contextMap   A copy of the MDC context of the comparison, or null if there was none.
+ */
+public record DifferenceReport(String instanceName, List<Difference> differences, Map<String, String> contextMap) {
+}
@@ -0,0 +1,30 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.List;
+
+/**
+ * Reports the differences found by the shadow flow. By default, the differences are logged using Slf4j by the
+ * {@link LoggingDifferenceReporter}.
+ *
+ * @see AsyncDifferenceReporter
+ */
+@FunctionalInterface
+public interface DifferenceReporter {
+    /**
+     * Reports the differences of a single comparison.
+     * This is called on the thread that did the comparison, so it should not block.
+     *
+     * @param report The differences found
+     */
+    void report(final DifferenceReport report);
+
+    /**
+     * Reports the differences of multiple comparisons at once. Implementations can override this to amortize
+     * costs, like encryption, over the whole batch.
+     *
+     * @param reports The differences found, in the order they were reported
+     */
+    default void reportBatch(final List<DifferenceReport> reports) {
+        reports.forEach(this::report);
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.rabobank.shadow_tool;
+
+/**
+ * A {@link Difference} within an element of a collection or stream, prefixed with the position of that element.
+ *
+ * @param position   The position of the element
+ * @param difference The difference within the element
+ */
+record ElementDifference(long position, Difference difference) implements Difference {
+
+    @Override
+    public String getPropertyName() {
+        return "[" + position + "]." + difference.getPropertyName();
+    }
+
+    @Override
+    public String prettyPrint() {
+        return "[" + position + "] " + difference.prettyPrint();
+    }
+
+    @Override
+    public void appendPropertyName(final StringBuilder buffer) {
+        buffer.append('[').append(position).append("].");
+        difference.appendPropertyName(buffer);
+    }
+
+    @Override
+    public void prettyPrint(final StringBuilder buffer) {
+        buffer.append('[').append(position).append("] ");
+        difference.prettyPrint(buffer);
+    }
+
+    @Override
+    public int prettyPrint(final StringBuilder buffer, final int maxLength) {
+        final var start = buffer.length();
+        buffer.append('[').append(position).append("] ");
+        final var prefixLength = buffer.length() - start;
+        return prefixLength + difference.prettyPrint(buffer, Math.max(0, maxLength - prefixLength));
+    }
+}
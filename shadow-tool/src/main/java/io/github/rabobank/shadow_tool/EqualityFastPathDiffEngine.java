@@ -0,0 +1,109 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * A {@link DiffEngine} stage that first decides whether both results are equal, and only invokes the delegate for
+ * the full comparison when they are not. Since most comparisons find no differences, this avoids building a full
+ * diff in the common case.
+ * <p>
+ * Equality is decided with {@link Object#equals(Object)}, or with a structural hash when one is configured.
+ * A structural hash is useful when the model does not implement {@code equals}. Be aware that a hash collision
+ * hides the differences of that comparison. Collections are equal when their elements have the same hashes in
+ * iteration order.
+ *
+ * @param <T> The model that the current and new flow should be mapped to for comparison.
+ */
+public class EqualityFastPathDiffEngine<T> implements DiffEngine {
+    private final DiffEngine delegate;
+    private final ToLongFunction<? super T> structuralHash;
+    private final LongAdder shortCircuitedComparisons = new LongAdder();
+
+    /**
+     * Creates a fast path that uses {@link Object#equals(Object)}.
+     *
+     * @param delegate The engine used when the results are not equal.
+     */
+    public EqualityFastPathDiffEngine(final DiffEngine delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * @param delegate       The engine used when the results are not equal.
+     * @param structuralHash Computes a hash over the properties of the model that should be compared.
+     *                       When null, {@link Object#equals(Object)} is used instead.
+     */
+    public EqualityFastPathDiffEngine(final DiffEngine delegate, final ToLongFunction<? super T> structuralHash) {
+        this.delegate = delegate;
+        this.structuralHash = structuralHash;
+    }
+
+    @Override
+    public List<Difference> compare(final Object currentFlowResult, final Object newFlowResult) {
+        if (isEqual(currentFlowResult, newFlowResult)) {
+            shortCircuitedComparisons.increment();
+            return List.of();
+        }
+        return delegate.compare(currentFlowResult, newFlowResult);
+    }
+
+    @Override
+    public <C> List<Difference> compareCollections(final Collection<C> currentFlowResult, final Collection<C> newFlowResult, final Class<C> clazz) {
+        if (isEqualCollection(currentFlowResult, newFlowResult)) {
+            shortCircuitedComparisons.increment();
+            return List.of();
+        }
+        return delegate.compareCollections(currentFlowResult, newFlowResult, clazz);
+    }
+
+    @Override
+    public void warmUp(final Class<?> type) {
+        delegate.warmUp(type);
+    }
+
+    /**
+     * @return The number of comparisons that were decided equal without invoking the delegate.
+     */
+    public long getShortCircuitedComparisons() {
+        return shortCircuitedComparisons.sum();
+    }
+
+    private boolean isEqual(final Object current, final Object next) {
+        if (structuralHash == null || current == null || next == null) {
+            return Objects.equals(current, next);
+        }
+        return hash(current) == hash(next);
+    }
+
+    private <C> boolean isEqualCollection(final Collection<C> current, final Collection<C> next) {
+        if (structuralHash == null || current == null || next == null) {
+            return Objects.equals(current, next);
+        }
+        if (current.size() != next.size()) {
+            return false;
+        }
+
+        final Iterator<C> currentIterator = current.iterator();
+        final Iterator<C> nextIterator = next.iterator();
+        while (currentIterator.hasNext()) {
+            final var currentElement = currentIterator.next();
+            final var nextElement = nextIterator.next();
+            if (currentElement == null || nextElement == null
+                ? currentElement != nextElement
+                : hash(currentElement) != hash(nextElement)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private long hash(final Object value) {
+        return structuralHash.applyAsLong((T) value);
+    }
+}
@@ -0,0 +1,196 @@
+package io.github.rabobank.shadow_tool;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A high-throughput {@link DiffEngine} for the common case where both results are equal.
+ * <p>
+ * It first checks both results with {@link Object#equals(Object)}, which is cheap for records and other value-based
+ * classes. Only when they are not equal, it walks the fields of both results to find the properties that differ.
+ * The fields are read through {@link MethodHandle}s that are created once per class and cached, so no reflection is
+ * done on the comparison path.
+ * <p>
+ * Types from the JDK, like strings, numbers, dates and maps, are compared as a whole.
+ * Lists are compared element by element when they contain objects, unless their sizes differ.
+ * The property names of nested differences are reported as a path, for example {@code address.street} or
+ * {@code accounts[2].balance}.
+ * <p>
+ * When only part of the results is compared, the properties that are left out are never read.
+ */
+public class FastDiffEngine implements DiffEngine {
+    private static final String ROOT = "root";
+    static final int MAX_DEPTH = 32;
+    private static final PropertyAccessor[] NO_ACCESSORS = new PropertyAccessor[0];
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final ClassValue<PropertyAccessor[]> ACCESSORS = new ClassValue<>() {
+        @Override
+        protected PropertyAccessor[] computeValue(final Class<?> type) {
+            return createAccessors(type);
+        }
+    };
+
+    private final PropertyProjection projection;
+
+    /**
+     * Creates an engine which compares all properties of the results.
+     */
+    public FastDiffEngine() {
+        this(PropertyProjection.ALL);
+    }
+
+    FastDiffEngine(final PropertyProjection projection) {
+        this.projection = projection;
+    }
+
+    @Override
+    public List<Difference> compare(final Object currentFlowResult, final Object newFlowResult) {
+        if (Objects.equals(currentFlowResult, newFlowResult)) {
+            return List.of();
+        }
+        final List<Difference> differences = new ArrayList<>();
+        compare("", projection.root(), currentFlowResult, newFlowResult, 0, differences);
+        return differences;
+    }
+
+    @Override
+    public <T> List<Difference> compareCollections(final Collection<T> currentFlowResult, final Collection<T> newFlowResult, final Class<T> clazz) {
+        return compare(currentFlowResult, newFlowResult);
+    }
+
+    @Override
+    public void warmUp(final Class<?> type) {
+        ACCESSORS.get(type);
+    }
+
+    private static void compare(final String path, final PropertyProjection.Node node, final Object current, final Object next,
+                                final int depth, final List<Difference> differences) {
+        if (current == next) {
+            return;
+        }
+        if (current == null || next == null || current.getClass() != next.getClass()) {
+            differences.add(new ValueDifference(propertyName(path), current, next));
+            return;
+        }
+
+        final var type = current.getClass();
+        if (type.isArray()) {
+            if (!Objects.deepEquals(current, next)) {
+                differences.add(new ValueDifference(propertyName(path), current, next));
+            }
+            return;
+        }
+        if (current.equals(next)) {
+            return;
+        }
+        if (depth >= MAX_DEPTH) {
+            differences.add(new ValueDifference(propertyName(path), current, next));
+            return;
+        }
+        if (current instanceof List<?> currentList && next instanceof List<?> newList) {
+            compareLists(path, node, currentList, newList, depth, differences);
+            return;
+        }
+
+        final var accessors = accessors(type);
+        if (accessors.length == 0) {
+            differences.add(new ValueDifference(propertyName(path), current, next));
+            return;
+        }
+        for (final var accessor : accessors) {
+            final var childNode = node.child(accessor.name());
+            if (childNode != null) {
+                compare(child(path, accessor.name()), childNode, accessor.get(current), accessor.get(next), depth + 1, differences);
+            }
+        }
+    }
+
+    private static void compareLists(final String path, final PropertyProjection.Node node, final List<?> current, final List<?> next,
+                                     final int depth, final List<Difference> differences) {
+        if (current.size() != next.size() || containsValues(current)) {
+            differences.add(new ValueDifference(propertyName(path), current, next));
+            return;
+        }
+        for (int i = 0; i < current.size(); i++) {
+            compare(path + "[" + i + "]", node, current.get(i), next.get(i), depth + 1, differences);
+        }
+    }
+
+    static boolean containsValues(final List<?> list) {
+        for (final var element : list) {
+            if (element != null) {
+                return isValue(element.getClass());
+            }
+        }
+        return true;
+    }
+
+    private static String propertyName(final String path) {
+        return path.isEmpty() ? ROOT : path;
+    }
+
+    private static String child(final String path, final String name) {
+        return path.isEmpty() ? name : path + "." + name;
+    }
+
+    /**
+     * @return The accessors of the fields of the type, or none when it is compared as a whole
+     */
+    static PropertyAccessor[] accessors(final Class<?> type) {
+        return ACCESSORS.get(type);
+    }
+
+    static boolean isValue(final Class<?> type) {
+        return type.isPrimitive()
+               || Enum.class.isAssignableFrom(type)
+               || type.getName().startsWith("java.");
+    }
+
+    private static PropertyAccessor[] createAccessors(final Class<?> type) {
+        if (isValue(type) || type.isArray()) {
+            return NO_ACCESSORS;
+        }
+
+        final List<PropertyAccessor> accessors = new ArrayList<>();
+        for (var declaringClass = type; declaringClass != null && !isValue(declaringClass); declaringClass = declaringClass.getSuperclass()) {
+            final MethodHandles.Lookup lookup;
+            try {
+                lookup = MethodHandles.privateLookupIn(declaringClass, MethodHandles.lookup());
+            } catch (final IllegalAccessException | SecurityException e) {
+                return NO_ACCESSORS; // Not accessible, so it will be compared as a whole
+            }
+
+            for (final Field field : declaringClass.getDeclaredFields()) {
+                final var modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                try {
+                    accessors.add(new PropertyAccessor(field.getName(), lookup.unreflectGetter(field).asType(GETTER_TYPE)));
+                } catch (final IllegalAccessException e) {
+                    return NO_ACCESSORS;
+                }
+            }
+        }
+        return accessors.toArray(NO_ACCESSORS);
+    }
+
+    record PropertyAccessor(String name, MethodHandle getter) {
+        Object get(final Object target) {
+            try {
+                return (Object) getter.invokeExact(target);
+            } catch (final RuntimeException | Error e) {
+                throw e;
+            } catch (final Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
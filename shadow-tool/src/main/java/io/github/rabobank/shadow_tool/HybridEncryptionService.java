@@ -0,0 +1,141 @@
+package io.github.rabobank.shadow_tool;
+
+import org.bouncycastle.util.encoders.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.crypto.Cipher.ENCRYPT_MODE;
+import static javax.crypto.Cipher.WRAP_MODE;
+
+/**
+ * A version of the Encryption Service that uses envelope encryption. Values are encrypted with an {@code AES/GCM}
+ * data key, which in turn is wrapped with a {@link PublicKey} using {@code RSA/ECB/OAEPWITHSHA-256ANDMGF1PADDING}.
+ * <p>
+ * Unlike {@link PublicKeyEncryptionService}, the size of the values is not limited by the RSA key size, and the
+ * expensive RSA operation is only done when a new data key is generated. A data key is reused until it expires or
+ * until it has encrypted the configured maximum number of values, every value gets its own random IV.
+ * <p>
+ * The encrypted value has the format {@code <wrapped data key>:<IV + cipher text>}, both parts Base64 encoded.
+ * To decrypt, unwrap the data key with the private key and decrypt the cipher text with {@code AES/GCM/NoPadding},
+ * using the first 12 bytes as IV.
+ */
+public class HybridEncryptionService implements EncryptionService {
+    private static final String KEY_WRAP_ALGORITHM_MODE_PADDING = "RSA/ECB/OAEPWITHSHA-256ANDMGF1PADDING";
+    private static final String DATA_ALGORITHM_MODE_PADDING = "AES/GCM/NoPadding";
+    private static final int IV_SIZE_IN_BYTES = 12;
+    private static final int TAG_SIZE_IN_BITS = 128;
+    private static final char SEPARATOR = ':';
+
+    private static final String DATA_KEY_ALGORITHM = "AES";
+    private static final int DATA_KEY_SIZE_IN_BITS = 256;
+    private static final Duration DEFAULT_KEY_TIME_TO_LIVE = Duration.ofHours(1);
+    private static final long DEFAULT_MAX_VALUES_PER_KEY = 1L << 20;
+
+    private final PublicKey publicKey;
+    private final long keyTimeToLiveNanos;
+    private final long maxValuesPerKey;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final Queue<Cipher> cipherPool = new ConcurrentLinkedQueue<>();
+    private volatile DataKey dataKey;
+
+    /**
+     * Creates an envelope encryption service that rotates its data key every hour or after 2^20 values,
+     * whichever comes first.
+     *
+     * @param publicKey The public RSA key used to wrap the data keys, should be at least 2048 bits.
+     */
+    public HybridEncryptionService(final PublicKey publicKey) {
+        this(publicKey, DEFAULT_KEY_TIME_TO_LIVE, DEFAULT_MAX_VALUES_PER_KEY);
+    }
+
+    /**
+     * @param publicKey       The public RSA key used to wrap the data keys, should be at least 2048 bits.
+     * @param keyTimeToLive   How long a wrapped data key is reused.
+     * @param maxValuesPerKey How many values a wrapped data key may encrypt before a new one is generated.
+     */
+    public HybridEncryptionService(final PublicKey publicKey, final Duration keyTimeToLive, final long maxValuesPerKey) {
+        if (keyTimeToLive.isNegative() || keyTimeToLive.isZero()) {
+            throw new IllegalArgumentException("The key time to live must be positive. Got " + keyTimeToLive);
+        }
+        if (maxValuesPerKey < 1) {
+            throw new IllegalArgumentException("The maximum number of values per key must be at least 1. Got " + maxValuesPerKey);
+        }
+        this.publicKey = publicKey;
+        this.keyTimeToLiveNanos = keyTimeToLive.toNanos();
+        this.maxValuesPerKey = maxValuesPerKey;
+        try {
+            dataKey = createDataKey();
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public String encrypt(final String value) {
+        try {
+            final var key = currentDataKey();
+            final var iv = new byte[IV_SIZE_IN_BYTES];
+            secureRandom.nextBytes(iv);
+
+            final var cipherText = encrypt(key.secretKey(), iv, value.getBytes(UTF_8));
+            final var payload = ByteBuffer.allocate(iv.length + cipherText.length).put(iv).put(cipherText).array();
+            return key.wrappedKey() + SEPARATOR + Base64.toBase64String(payload);
+        } catch (final GeneralSecurityException e) {
+            throw new SecurityException(e);
+        }
+    }
+
+    private byte[] encrypt(final SecretKey secretKey, final byte[] iv, final byte[] value) throws GeneralSecurityException {
+        final var pooledCipher = cipherPool.poll();
+        final var cipher = pooledCipher != null ? pooledCipher : Cipher.getInstance(DATA_ALGORITHM_MODE_PADDING);
+        cipher.init(ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_SIZE_IN_BITS, iv));
+        final var cipherText = cipher.doFinal(value);
+        cipherPool.offer(cipher);
+        return cipherText;
+    }
+
+    private DataKey currentDataKey() throws GeneralSecurityException {
+        final var key = dataKey;
+        if (key.tryAcquire(System.nanoTime())) {
+            return key;
+        }
+
+        synchronized (this) {
+            if (dataKey == key || !dataKey.tryAcquire(System.nanoTime())) {
+                dataKey = createDataKey();
+                dataKey.usages().incrementAndGet();
+            }
+            return dataKey;
+        }
+    }
+
+    private DataKey createDataKey() throws GeneralSecurityException {
+        final var keyGenerator = KeyGenerator.getInstance(DATA_KEY_ALGORITHM);
+        keyGenerator.init(DATA_KEY_SIZE_IN_BITS, secureRandom);
+        final var secretKey = keyGenerator.generateKey();
+
+        final var wrapCipher = Cipher.getInstance(KEY_WRAP_ALGORITHM_MODE_PADDING);
+        wrapCipher.init(WRAP_MODE, publicKey);
+        final var wrappedKey = Base64.toBase64String(wrapCipher.wrap(secretKey));
+
+        return new DataKey(secretKey, wrappedKey, System.nanoTime() + keyTimeToLiveNanos, maxValuesPerKey, new AtomicLong());
+    }
+
+    private record DataKey(SecretKey secretKey, String wrappedKey, long expiresAtNanos, long maxUsages, AtomicLong usages) {
+        boolean tryAcquire(final long nowNanos) {
+            return nowNanos - expiresAtNanos < 0 && usages.incrementAndGet() <= maxUsages;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.rabobank.shadow_tool;
+
+import org.javers.core.Javers;
+import org.javers.core.JaversBuilder;
+import org.javers.core.diff.Diff;
+import org.javers.core.metamodel.clazz.ValueObjectDefinition;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.javers.core.diff.ListCompareAlgorithm.LEVENSHTEIN_DISTANCE;
+
+/**
+ * The default {@link DiffEngine}, which uses {@link Javers} to compare the object graphs of both results.
+ * <p>
+ * Javers caches the mapping of every type it compares. Unless a shadow flow configures its own Javers, the same
+ * instance is shared by all shadow flows of the application.
+ */
+public class JaversDiffEngine implements DiffEngine {
+    static final JaversDiffEngine DEFAULT = configured(javers -> {
+    });
+
+    private static final Set<String> ENTITY_ANNOTATIONS = Set.of("Entity");
+    private static final Set<String> ID_ANNOTATIONS = Set.of("Id", "EmbeddedId");
+
+    private final Javers javers;
+
+    /**
+     * @param javers The configured {@link Javers} instance used for the comparisons
+     */
+    public JaversDiffEngine(final Javers javers) {
+        this.javers = javers;
+    }
+
+    /**
+     * @param configuration Changes the default configuration, which compares lists with the Levenshtein distance.
+     * @return An engine with its own {@link Javers} instance
+     */
+    static JaversDiffEngine configured(final Consumer<JaversBuilder> configuration) {
+        final var javersBuilder = JaversBuilder.javers().withListCompareAlgorithm(LEVENSHTEIN_DISTANCE);
+        configuration.accept(javersBuilder);
+        return new JaversDiffEngine(javersBuilder.build());
+    }
+
+    /**
+     * Leaves the properties that are not compared out of the comparison, by registering the classes that have any as
+     * value objects that ignore those properties. Entities are left as they are, since registering them as value
+     * objects changes how Javers matches them, so their properties are still compared.
+     *
+     * @param projection The properties to compare
+     * @param type       The type of the results, or of the elements when collections are compared
+     * @return The configuration that ignores the properties
+     */
+    static Consumer<JaversBuilder> ignoring(final PropertyProjection projection, final Class<?> type) {
+        final var uncompared = projection.uncomparedProperties(type);
+        return javers -> uncompared.forEach((clazz, names) -> {
+            if (!isEntity(clazz)) {
+                javers.registerValueObject(new ValueObjectDefinition(clazz, names.stream().sorted().toList()));
+            }
+        });
+    }
+
+    private static boolean isEntity(final Class<?> type) {
+        for (var clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            if (hasAnnotation(clazz, ENTITY_ANNOTATIONS)
+                || Stream.of(clazz.getDeclaredFields()).anyMatch(field -> hasAnnotation(field, ID_ANNOTATIONS))
+                || Stream.of(clazz.getDeclaredMethods()).anyMatch(method -> hasAnnotation(method, ID_ANNOTATIONS))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Javers recognizes the annotations by their simple name, so they can come from JPA as well
+    private static boolean hasAnnotation(final AnnotatedElement element, final Set<String> names) {
+        for (final Annotation annotation : element.getAnnotations()) {
+            if (names.contains(annotation.annotationType().getSimpleName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public List<Difference> compare(final Object currentFlowResult, final Object newFlowResult) {
+        return toDifferences(javers.compare(currentFlowResult, newFlowResult));
+    }
+
+    @Override
+    public <T> List<Difference> compareCollections(final Collection<T> currentFlowResult, final Collection<T> newFlowResult, final Class<T> clazz) {
+        return toDifferences(javers.compareCollections(currentFlowResult, newFlowResult, clazz));
+    }
+
+    @Override
+    public void warmUp(final Class<?> type) {
+        javers.getTypeMapping(type);
+    }
+
+    private static List<Difference> toDifferences(final Diff diff) {
+        if (!diff.hasChanges()) {
+            return List.of();
+        }
+        return diff.getChanges().stream()
+                .<Difference>map(JaversDifference::new)
+                .toList();
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.rabobank.shadow_tool;
+
+import org.javers.common.string.PrettyValuePrinter;
+import org.javers.core.diff.Change;
+import org.javers.core.diff.changetype.NewObject;
+import org.javers.core.diff.changetype.ObjectRemoved;
+import org.javers.core.diff.changetype.PropertyChange;
+import org.javers.core.diff.changetype.ValueChange;
+import org.javers.core.metamodel.object.ValueObjectId;
+
+/**
+ * A {@link Difference} backed by a Javers {@link Change}.
+ * <p>
+ * Besides the changes of a property, Javers reports objects that were added to or removed from the result. Those are
+ * named after their location in the result, or their type when they are an entity, since the id of an entity is a
+ * value itself.
+ */
+class JaversDifference implements Difference {
+    private final Change change;
+
+    JaversDifference(final Change change) {
+        this.change = change;
+    }
+
+    @Override
+    public String getPropertyName() {
+        final var buffer = new StringBuilder();
+        appendPropertyName(buffer);
+        return buffer.toString();
+    }
+
+    @Override
+    public void appendPropertyName(final StringBuilder buffer) {
+        if (change instanceof PropertyChange<?> propertyChange) {
+            buffer.append(propertyChange.getPropertyName());
+            return;
+        }
+
+        final var globalId = change.getAffectedGlobalId();
+        if (globalId instanceof ValueObjectId valueObjectId) {
+            buffer.append(valueObjectId.getFragment());
+        } else if (globalId != null) {
+            final var typeName = globalId.getTypeName();
+            buffer.append(typeName, typeName.lastIndexOf('.') + 1, typeName.length());
+        }
+        if (change instanceof NewObject) {
+            buffer.append(" (new object)");
+        } else if (change instanceof ObjectRemoved) {
+            buffer.append(" (removed object)");
+        }
+    }
+
+    /**
+     * @return The path of the property, starting with the location of the object that changed, for example
+     * {@code address/street}. For an added or removed object, it is only its location.
+     */
+    String getPath() {
+        final var fragment = change.getAffectedGlobalId() instanceof ValueObjectId valueObjectId ? valueObjectId.getFragment() : "";
+        if (change instanceof PropertyChange<?> propertyChange) {
+            return fragment.isEmpty() ? propertyChange.getPropertyName() : fragment + "/" + propertyChange.getPropertyName();
+        }
+        return fragment;
+    }
+
+    /**
+     * @return The value in the result of the current flow when a value changed, otherwise null
+     */
+    Object getCurrentValue() {
+        return change instanceof ValueChange valueChange ? valueChange.getLeft() : null;
+    }
+
+    /**
+     * @return The value in the result of the new flow when a value changed, otherwise null
+     */
+    Object getNewValue() {
+        return change instanceof ValueChange valueChange ? valueChange.getRight() : null;
+    }
+
+    @Override
+    public String prettyPrint() {
+        if (change instanceof ValueChange) {
+            final var buffer = new StringBuilder();
+            prettyPrint(buffer);
+            return buffer.toString();
+        }
+        return change.prettyPrint(PrettyValuePrinter.getDefault());
+    }
+
+    @Override
+    public void prettyPrint(final StringBuilder buffer) {
+        prettyPrint(buffer, Integer.MAX_VALUE);
+    }
+
+    /**
+     * A changed value is written straight from the path and both values, so only what fits is copied. Other changes
+     * are rendered by Javers and cut off afterwards, they describe the structure of the result rather than its values.
+     */
+    @Override
+    public int prettyPrint(final StringBuilder buffer, final int maxLength) {
+        if (change instanceof ValueChange valueChange) {
+            return ValueDifference.prettyPrint(buffer, maxLength, getPath(), valueChange.getLeft(), valueChange.getRight());
+        }
+        final var rendered = change.prettyPrint(PrettyValuePrinter.getDefault());
+        buffer.append(rendered, 0, Math.min(maxLength, rendered.length()));
+        return rendered.length();
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A {@link DiffEngine} stage that compares collections by matching their elements on an identity key, instead of
+ * by their position. The elements of the current flow are put in a hash index by key, after which every element of
+ * the new flow is looked up. This makes the comparison linear in the size of the collections, and the order of the
+ * elements irrelevant.
+ * <p>
+ * Matched elements are compared with the delegate, and their differences are prefixed with the position of the
+ * element in the current flow, for example {@code [3].balance}. Unmatched elements are reported as {@code added[i]}
+ * or {@code removed[i]}, with their position in the new and current flow respectively.
+ * Keys are never part of the property names, since they may contain sensitive data.
+ *
+ * @param <T> The model that the current and new flow should be mapped to for comparison.
+ */
+public class KeyedCollectionDiffEngine<T> implements DiffEngine {
+    private final DiffEngine delegate;
+    private final Function<? super T, ?> keyExtractor;
+
+    /**
+     * @param delegate     The engine used to compare single results and matched elements.
+     * @param keyExtractor Extracts the identity key of an element. Keys are compared with {@code equals} and {@code hashCode}.
+     */
+    public KeyedCollectionDiffEngine(final DiffEngine delegate, final Function<? super T, ?> keyExtractor) {
+        this.delegate = delegate;
+        this.keyExtractor = keyExtractor;
+    }
+
+    @Override
+    public List<Difference> compare(final Object currentFlowResult, final Object newFlowResult) {
+        return delegate.compare(currentFlowResult, newFlowResult);
+    }
+
+    @Override
+    public <C> List<Difference> compareCollections(final Collection<C> currentFlowResult, final Collection<C> newFlowResult, final Class<C> clazz) {
+        final List<C> currentElements = new ArrayList<>(currentFlowResult);
+        final Map<Object, ArrayDeque<Integer>> index = new HashMap<>(currentElements.size() * 4 / 3 + 1);
+        for (int i = 0; i < currentElements.size(); i++) {
+            index.computeIfAbsent(key(currentElements.get(i)), ignored -> new ArrayDeque<>(1)).add(i);
+        }
+
+        final List<Difference> differences = new ArrayList<>();
+        final var matched = new boolean[currentElements.size()];
+        int newPosition = 0;
+        for (final C newElement : newFlowResult) {
+            final var positions = index.get(key(newElement));
+            final var currentPosition = positions == null ? null : positions.poll();
+            if (currentPosition == null) {
+                differences.add(new ValueDifference("added[" + newPosition + "]", null, newElement));
+            } else {
+                matched[currentPosition] = true;
+                for (final var difference : delegate.compare(currentElements.get(currentPosition), newElement)) {
+                    differences.add(new ElementDifference(currentPosition, difference));
+                }
+            }
+            newPosition++;
+        }
+
+        for (int i = 0; i < matched.length; i++) {
+            if (!matched[i]) {
+                differences.add(new ValueDifference("removed[" + i + "]", currentElements.get(i), null));
+            }
+        }
+        return differences;
+    }
+
+    @Override
+    public void warmUp(final Class<?> type) {
+        delegate.warmUp(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object key(final Object element) {
+        return element == null ? null : keyExtractor.apply((T) element);
+    }
+}
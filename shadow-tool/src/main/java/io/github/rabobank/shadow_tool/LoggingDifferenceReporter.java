@@ -0,0 +1,150 @@
+package io.github.rabobank.shadow_tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The default {@link DifferenceReporter}, which logs the differences using Slf4j.
+ * It always logs the names of the properties that differ, and when an {@link EncryptionService} is configured also the
+ * encrypted values.
+ * <p>
+ * By default, the values of every report are encrypted on their own, also when a batch of reports is logged. When the
+ * {@link EncryptionService} encrypts values of any size, like the {@link HybridEncryptionService}, the values of a batch
+ * can be encrypted at once instead and logged in a single line per instance. Every report then refers to its position in
+ * that batch.
+ * <p>
+ * The differences are rendered by {@link DifferenceRenderer}, which caps the length of the logged names and values.
+ */
+public class LoggingDifferenceReporter implements DifferenceReporter {
+    private static final Logger logger = LoggerFactory.getLogger(LoggingDifferenceReporter.class);
+    private static final String DIFFERENCES_FOUND = "{} The following differences were found: {}";
+    private static final String DIFFERENCES_FOUND_ENCRYPTED = DIFFERENCES_FOUND + ". Encrypted values: {}";
+    private static final String DIFFERENCES_FOUND_IN_BATCH = DIFFERENCES_FOUND + ". Encrypted values: batch {}#{}";
+    private static final String ENCRYPTED_BATCH = "{} Encrypted values of batch {}: {}";
+
+    private final EncryptionService encryptionService;
+    private final boolean encryptBatchesAtOnce;
+    private final AtomicLong batchCounter = new AtomicLong();
+
+    /**
+     * Creates a reporter which encrypts the values of every report on their own.
+     *
+     * @param encryptionService The service used to encrypt the values of the differences.
+     *                          When null, only the names of the properties are logged.
+     */
+    public LoggingDifferenceReporter(final EncryptionService encryptionService) {
+        this(encryptionService, false);
+    }
+
+    /**
+     * @param encryptionService    The service used to encrypt the values of the differences.
+     *                             When null, only the names of the properties are logged.
+     * @param encryptBatchesAtOnce Whether the values of a batch of reports are encrypted at once. Only enable this when
+     *                             the service encrypts values of any size, a {@link PublicKeyEncryptionService} for
+     *                             example fails on anything larger than a few hundred bytes.
+     */
+    public LoggingDifferenceReporter(final EncryptionService encryptionService, final boolean encryptBatchesAtOnce) {
+        this.encryptionService = encryptionService;
+        this.encryptBatchesAtOnce = encryptBatchesAtOnce;
+    }
+
+    @Override
+    public void report(final DifferenceReport report) {
+        if (!logger.isInfoEnabled()) { // This is mostly to ensure that we do not encrypt needlessly
+            return;
+        }
+
+        final var logPrefix = ShadowFlow.logPrefix(report.instanceName());
+        final var rendered = DifferenceRenderer.render(report.differences(), encryptionService != null);
+        if (encryptionService != null) {
+            final var encryptedValues = encryptionService.encrypt(rendered.values());
+            logger.info(DIFFERENCES_FOUND_ENCRYPTED, logPrefix, rendered.propertyNames(), encryptedValues);
+        } else {
+            logger.info(DIFFERENCES_FOUND, logPrefix, rendered.propertyNames());
+        }
+    }
+
+    @Override
+    public void reportBatch(final List<DifferenceReport> reports) {
+        if (!logger.isInfoEnabled() || reports.isEmpty()) {
+            return;
+        }
+
+        if (encryptionService == null || !encryptBatchesAtOnce) {
+            reports.forEach(this::reportWithContext);
+            return;
+        }
+
+        final Map<String, List<DifferenceReport>> reportsPerInstance = new LinkedHashMap<>();
+        for (final var report : reports) {
+            reportsPerInstance.computeIfAbsent(report.instanceName(), instanceName -> new ArrayList<>()).add(report);
+        }
+        reportsPerInstance.values().forEach(this::reportEncryptedAtOnce);
+    }
+
+    private void reportWithContext(final DifferenceReport report) {
+        withContext(report.contextMap(), () -> report(report));
+    }
+
+    private void reportEncryptedAtOnce(final List<DifferenceReport> reports) {
+        if (reports.size() == 1) {
+            reportWithContext(reports.get(0));
+            return;
+        }
+
+        final List<String> propertyNames = new ArrayList<>(reports.size());
+        final var values = new StringBuilder();
+        for (int i = 0; i < reports.size(); i++) {
+            final var rendered = DifferenceRenderer.render(reports.get(i).differences(), true);
+            propertyNames.add(rendered.propertyNames());
+            values.append('#').append(i).append('\n').append(rendered.values()).append('\n');
+        }
+        // Encrypted before anything is logged, so no report refers to a batch that is never logged
+        final var encryptedValues = encryptionService.encrypt(values.toString());
+
+        final var batchId = batchCounter.incrementAndGet();
+        final var logPrefix = ShadowFlow.logPrefix(reports.get(0).instanceName());
+        for (int i = 0; i < reports.size(); i++) {
+            final var index = i;
+            withContext(reports.get(i).contextMap(), () -> logger.info(DIFFERENCES_FOUND_IN_BATCH, logPrefix, propertyNames.get(index), batchId, index));
+        }
+        withContext(commonContext(reports), () -> logger.info(ENCRYPTED_BATCH, logPrefix, batchId, encryptedValues));
+    }
+
+    /**
+     * @return The MDC entries that all reports have in common, since the batch line belongs to all of them
+     */
+    private static Map<String, String> commonContext(final List<DifferenceReport> reports) {
+        final var first = reports.get(0).contextMap();
+        if (first == null) {
+            return null;
+        }
+        final Map<String, String> common = new HashMap<>(first);
+        for (final var report : reports) {
+            final var contextMap = report.contextMap();
+            if (contextMap == null) {
+                return null;
+            }
+            common.entrySet().removeIf(entry -> !Objects.equals(entry.getValue(), contextMap.get(entry.getKey())));
+        }
+        return common;
+    }
+
+    private static void withContext(final Map<String, String> contextMap, final Runnable runnable) {
+        if (contextMap != null) MDC.setContextMap(contextMap);
+        try {
+            runnable.run();
+        } finally {
+            MDC.clear();
+        }
+    }
+}
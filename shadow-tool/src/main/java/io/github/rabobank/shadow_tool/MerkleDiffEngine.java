@@ -0,0 +1,321 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A {@link DiffEngine} for results of which the classes do not implement {@code equals()}, or only compare an id in it,
+ * which compares hashes of the subtrees of both results instead of the subtrees themselves, like a Merkle tree.
+ * <p>
+ * Unlike the {@link FastDiffEngine}, it does not rely on {@code equals()} of your classes. The {@link FastDiffEngine}
+ * reports no differences for two objects of which {@code equals()} only compares the same id, and walks every object
+ * that does not implement {@code equals()}. This engine finds the differences in their properties in both cases, and
+ * is the alternative to the {@link JaversDiffEngine} for those models, since no object graph is built like Javers does.
+ * <p>
+ * Both results are always walked in full to compute a 64-bit hash for every object, list and value in them, from the
+ * hashes of their properties or elements. When the hashes of both results are equal, the comparison is done.
+ * Otherwise, it only descends into the properties of which the hashes differ. The cost of a comparison is therefore
+ * proportional to the size of both results, even when they are equal, so for results that implement {@code equals()},
+ * like records, the {@link FastDiffEngine} is faster.
+ * <p>
+ * The results are walked and the differences are reported like the {@link FastDiffEngine} does, for example
+ * {@code accounts[2].balance}. Be aware that, as with any hash, the differences of two results are not reported when
+ * their hashes collide. Values that are compared as a whole, like sets, maps, optionals, arrays and lists of values,
+ * are hashed from the hashes of their elements as well, so they are equal when their elements have equal properties.
+ * Sets and maps are hashed regardless of the order of their elements and entries, lists regardless of their class.
+ * Numbers are hashed on their value, other types of the JDK on their {@code hashCode()}, which strings cache.
+ * <p>
+ * When only part of the results is compared, the properties that are left out are never read.
+ */
+public class MerkleDiffEngine implements DiffEngine {
+    private static final String ROOT = "root";
+    private static final int LEAF = -1;
+    private static final long NULL_HASH = 0x9e3779b97f4a7c15L;
+    private static final long PRIME = 0x100000001b3L;
+    private static final long LIST_HASH = hashOf(List.class);
+    private static final long SET_HASH = hashOf(Set.class);
+    private static final long MAP_HASH = hashOf(Map.class);
+    private static final long OPTIONAL_HASH = hashOf(Optional.class);
+    private static final ThreadLocal<HashTree[]> TREES = ThreadLocal.withInitial(() -> new HashTree[]{new HashTree(), new HashTree()});
+
+    private final PropertyProjection projection;
+
+    /**
+     * Creates an engine which compares all properties of the results.
+     */
+    public MerkleDiffEngine() {
+        this(PropertyProjection.ALL);
+    }
+
+    MerkleDiffEngine(final PropertyProjection projection) {
+        this.projection = projection;
+    }
+
+    @Override
+    public List<Difference> compare(final Object currentFlowResult, final Object newFlowResult) {
+        final var trees = trees();
+        final var current = trees[0];
+        final var next = trees[1];
+        try {
+            current.add(projection.root(), currentFlowResult, 0);
+            next.add(projection.root(), newFlowResult, 0);
+            if (current.hashes[0] == next.hashes[0]) {
+                return List.of();
+            }
+            final List<Difference> differences = new ArrayList<>();
+            compare("", projection.root(), current, 0, next, 0, differences);
+            return differences;
+        } finally {
+            current.clear();
+            next.clear();
+        }
+    }
+
+    @Override
+    public <T> List<Difference> compareCollections(final Collection<T> currentFlowResult, final Collection<T> newFlowResult, final Class<T> clazz) {
+        return compare(currentFlowResult, newFlowResult);
+    }
+
+    /**
+     * @return The hash of the result that the engine compares, which is the same for results with the same values,
+     * regardless of their {@code equals()}
+     */
+    static long digest(final Object result, final PropertyProjection projection) {
+        return digest(result, projection.root());
+    }
+
+    static long digest(final Object value, final PropertyProjection.Node node) {
+        final var tree = trees()[0];
+        try {
+            return tree.add(node, value, 0);
+        } finally {
+            tree.clear();
+        }
+    }
+
+    /**
+     * @return The trees of the current thread, or new ones on a virtual thread, for which they would never be reused
+     */
+    private static HashTree[] trees() {
+        return VirtualThreadShadowExecutor.isCurrentThreadVirtual() ? new HashTree[]{new HashTree(), new HashTree()} : TREES.get();
+    }
+
+    @Override
+    public void warmUp(final Class<?> type) {
+        FastDiffEngine.accessors(type);
+    }
+
+    private static void compare(final String path, final PropertyProjection.Node node, final HashTree current, final int currentIndex,
+                                final HashTree next, final int nextIndex, final List<Difference> differences) {
+        if (current.hashes[currentIndex] == next.hashes[nextIndex]) {
+            return;
+        }
+        final var currentValue = current.values[currentIndex];
+        final var newValue = next.values[nextIndex];
+        if (current.spans[currentIndex] == LEAF || next.spans[nextIndex] == LEAF
+            || currentValue.getClass() != newValue.getClass() && !(currentValue instanceof List && newValue instanceof List)) {
+            differences.add(new ValueDifference(propertyName(path), currentValue, newValue));
+            return;
+        }
+
+        var currentChild = currentIndex + 1;
+        var nextChild = nextIndex + 1;
+        if (currentValue instanceof List<?> currentList) {
+            if (currentList.size() != ((List<?>) newValue).size()) {
+                differences.add(new ValueDifference(propertyName(path), currentValue, newValue));
+                return;
+            }
+            for (int i = 0; i < currentList.size(); i++) {
+                compare(path + "[" + i + "]", node, current, currentChild, next, nextChild, differences);
+                currentChild = current.nextSibling(currentChild);
+                nextChild = next.nextSibling(nextChild);
+            }
+            return;
+        }
+        for (final var accessor : FastDiffEngine.accessors(currentValue.getClass())) {
+            final var childNode = node.child(accessor.name());
+            if (childNode != null) {
+                compare(child(path, accessor.name()), childNode, current, currentChild, next, nextChild, differences);
+                currentChild = current.nextSibling(currentChild);
+                nextChild = next.nextSibling(nextChild);
+            }
+        }
+    }
+
+    private static String propertyName(final String path) {
+        return path.isEmpty() ? ROOT : path;
+    }
+
+    private static String child(final String path, final String name) {
+        return path.isEmpty() ? name : path + "." + name;
+    }
+
+    private static long combine(final long hash, final long other) {
+        return mix(hash * PRIME + other);
+    }
+
+    /**
+     * The finalizer of SplitMix64, which spreads every bit of the input over the output.
+     */
+    private static long mix(final long value) {
+        var z = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long hashOf(final Class<?> type) {
+        return type.getName().hashCode(); // The name of a class and its hash code are cached
+    }
+
+    /**
+     * @return A hash of the value and everything in it, which is the same as the hash the tree computes for it, so
+     * objects are hashed on their properties instead of their {@code hashCode()}
+     */
+    private static long hashOfValue(final PropertyProjection.Node node, final Object value, final int depth) {
+        if (value == null) {
+            return NULL_HASH;
+        }
+        if (depth < FastDiffEngine.MAX_DEPTH) {
+            if (value instanceof List<?> list) {
+                var elementsHash = mix(list.size());
+                for (final var element : list) {
+                    elementsHash = combine(elementsHash, hashOfValue(node, element, depth + 1));
+                }
+                return combine(LIST_HASH, elementsHash);
+            } else if (value instanceof Set<?> set) {
+                var elementsHash = mix(set.size());
+                for (final var element : set) {
+                    elementsHash += hashOfValue(node, element, depth + 1);
+                }
+                return combine(SET_HASH, elementsHash);
+            } else if (value instanceof Map<?, ?> map) {
+                var entriesHash = mix(map.size());
+                for (final var entry : map.entrySet()) {
+                    entriesHash += combine(hashOfValue(node, entry.getKey(), depth + 1), hashOfValue(node, entry.getValue(), depth + 1));
+                }
+                return combine(MAP_HASH, entriesHash);
+            } else if (value instanceof Optional<?> optional) {
+                return combine(OPTIONAL_HASH, hashOfValue(node, optional.orElse(null), depth + 1));
+            } else if (value instanceof Object[] || value instanceof Collection) {
+                final Collection<?> elements = value instanceof Object[] array ? Arrays.asList(array) : (Collection<?>) value;
+                var elementsHash = mix(elements.size());
+                for (final var element : elements) {
+                    elementsHash = combine(elementsHash, hashOfValue(node, element, depth + 1));
+                }
+                return combine(hashOf(value.getClass()), elementsHash);
+            }
+
+            final var accessors = FastDiffEngine.accessors(value.getClass());
+            if (accessors.length > 0) {
+                var hash = hashOf(value.getClass());
+                for (final var accessor : accessors) {
+                    final var childNode = node.child(accessor.name());
+                    if (childNode != null) {
+                        hash = combine(hash, hashOfValue(childNode, accessor.get(value), depth + 1));
+                    }
+                }
+                return hash;
+            }
+        }
+
+        final long hash;
+        if (value instanceof String string) {
+            hash = mix((long) string.length() << 32 | string.hashCode() & 0xffffffffL); // The hash code of a string is cached
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            hash = mix(((Number) value).longValue());
+        } else if (value instanceof Double number) {
+            hash = mix(Double.doubleToLongBits(number));
+        } else if (value.getClass().isArray()) {
+            hash = mix(Arrays.deepHashCode(new Object[]{value}));
+        } else {
+            hash = mix(value.hashCode());
+        }
+        return combine(hashOf(value.getClass()), hash);
+    }
+
+    /**
+     * The objects, lists and values of a result in the order they are walked, each followed by its properties or
+     * elements, together with their hashes and the number of slots they span. A tree is reused by the comparisons on
+     * the same platform thread, unless it grew beyond {@value #MAX_RETAINED_CAPACITY} slots.
+     */
+    private static final class HashTree {
+        private static final int INITIAL_CAPACITY = 64;
+        private static final int MAX_RETAINED_CAPACITY = 1 << 14;
+        private long[] hashes = new long[INITIAL_CAPACITY];
+        private int[] spans = new int[INITIAL_CAPACITY];
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        private int size;
+
+        void clear() {
+            if (hashes.length > MAX_RETAINED_CAPACITY) {
+                hashes = new long[INITIAL_CAPACITY];
+                spans = new int[INITIAL_CAPACITY];
+                values = new Object[INITIAL_CAPACITY];
+            } else {
+                Arrays.fill(values, 0, size, null);
+            }
+            size = 0;
+        }
+
+        int nextSibling(final int index) {
+            return index + 1 + Math.max(spans[index], 0);
+        }
+
+        long add(final PropertyProjection.Node node, final Object value, final int depth) {
+            final var index = slot(value);
+            if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value.getClass().isArray() || depth >= FastDiffEngine.MAX_DEPTH) {
+                return leaf(index, node, value, depth);
+            }
+
+            if (value instanceof List<?> list) {
+                if (FastDiffEngine.containsValues(list)) {
+                    return leaf(index, node, value, depth);
+                }
+                var elementsHash = mix(list.size());
+                for (final var element : list) {
+                    elementsHash = combine(elementsHash, add(node, element, depth + 1));
+                }
+                return composite(index, combine(LIST_HASH, elementsHash));
+            }
+
+            final var accessors = FastDiffEngine.accessors(value.getClass());
+            if (accessors.length == 0) {
+                return leaf(index, node, value, depth);
+            }
+            var hash = hashOf(value.getClass());
+            for (final var accessor : accessors) {
+                final var childNode = node.child(accessor.name());
+                if (childNode != null) {
+                    hash = combine(hash, add(childNode, accessor.get(value), depth + 1));
+                }
+            }
+            return composite(index, hash);
+        }
+
+        private int slot(final Object value) {
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                spans = Arrays.copyOf(spans, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            return size++;
+        }
+
+        private long leaf(final int index, final PropertyProjection.Node node, final Object value, final int depth) {
+            spans[index] = LEAF;
+            return hashes[index] = hashOfValue(node, value, depth);
+        }
+
+        private long composite(final int index, final long hash) {
+            spans[index] = size - index - 1;
+            return hashes[index] = hash;
+        }
+    }
+}
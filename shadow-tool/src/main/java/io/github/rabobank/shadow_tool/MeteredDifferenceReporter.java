@@ -0,0 +1,44 @@
+package io.github.rabobank.shadow_tool;
+
+import io.github.rabobank.shadow_tool.ShadowFlowMetrics.Stage;
+
+import java.util.List;
+
+/**
+ * Records the duration of reporting to the delegate as the {@link Stage#REPORT} stage.
+ */
+final class MeteredDifferenceReporter implements DifferenceReporter {
+    private final DifferenceReporter delegate;
+    private final ShadowFlowMetrics metrics;
+    private final String instanceName;
+
+    MeteredDifferenceReporter(final DifferenceReporter delegate, final ShadowFlowMetrics metrics, final String instanceName) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.instanceName = instanceName;
+    }
+
+    @Override
+    public void report(final DifferenceReport report) {
+        final var start = System.nanoTime();
+        var success = false;
+        try {
+            delegate.report(report);
+            success = true;
+        } finally {
+            metrics.recordStage(instanceName, Stage.REPORT, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public void reportBatch(final List<DifferenceReport> reports) {
+        final var start = System.nanoTime();
+        var success = false;
+        try {
+            delegate.reportBatch(reports);
+            success = true;
+        } finally {
+            metrics.recordStage(instanceName, Stage.REPORT, System.nanoTime() - start, success);
+        }
+    }
+}
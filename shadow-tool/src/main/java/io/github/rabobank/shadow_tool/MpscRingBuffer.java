@@ -0,0 +1,89 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring buffer for many producers and a single consumer. Every slot has a sequence number that
+ * tells producers whether the slot is free and the consumer whether it has been published.
+ * Offering to a full buffer fails immediately instead of blocking.
+ *
+ * @param <E> The type of the elements
+ */
+final class MpscRingBuffer<E> {
+    // The largest power of two that fits in an int
+    static final int MAX_CAPACITY = 1 << 30;
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    MpscRingBuffer(final int requestedCapacity) {
+        if (requestedCapacity < 1) {
+            throw new IllegalArgumentException("The capacity must be at least 1. Got " + requestedCapacity);
+        }
+        if (requestedCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("The capacity must be at most " + MAX_CAPACITY + ". Got " + requestedCapacity);
+        }
+        capacity = requestedCapacity == 1 ? 1 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+        mask = capacity - 1;
+        elements = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Can be called by any thread.
+     *
+     * @return false when the buffer is full
+     */
+    boolean offer(final E element) {
+        for (; ; ) {
+            final var position = tail.get();
+            final var index = (int) position & mask;
+            final var difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * May only be called by the single consumer thread.
+     *
+     * @return The oldest published element, or null when there is none
+     */
+    E poll() {
+        final var index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        final var element = elements.get(index);
+        elements.lazySet(index, null);
+        sequences.set(index, head + capacity);
+        head++;
+        return element;
+    }
+
+    /**
+     * May only be called by the single consumer thread.
+     */
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples a fixed percentage of the requests, at random or on the hash of their request key.
+ */
+final class PercentageSampler implements Sampler {
+    private static final double HUNDRED = 100;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private final double rate;
+
+    PercentageSampler(final double percentage) {
+        this.rate = percentage / HUNDRED;
+    }
+
+    @Override
+    public boolean shouldSample() {
+        return ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    @Override
+    public boolean shouldSample(final Object requestKey) {
+        return keyFraction(requestKey) < rate;
+    }
+
+    @Override
+    public double getSamplingRate() {
+        return rate;
+    }
+
+    /**
+     * Maps the request key to a uniformly distributed value between 0 (inclusive) and 1 (exclusive), which is the
+     * same for equal keys. Keys are sampled when this value is below the sampling rate, so a key that is sampled
+     * stays sampled when the rate increases. Without a key, a random value is returned.
+     */
+    static double keyFraction(final Object requestKey) {
+        if (requestKey == null) {
+            return ThreadLocalRandom.current().nextDouble();
+        }
+        // The finalizer of SplitMix64 spreads the bits of the hash code over the whole long
+        var hash = requestKey.hashCode() + GOLDEN_GAMMA;
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        hash = hash ^ (hash >>> 31);
+        return (hash >>> 11) * DOUBLE_UNIT;
+    }
+}
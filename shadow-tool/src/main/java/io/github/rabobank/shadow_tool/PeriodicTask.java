@@ -0,0 +1,60 @@
+package io.github.rabobank.shadow_tool;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Runs an action on a target at a fixed rate, for as long as the target is reachable. The actions of all targets are
+ * run by a single daemon thread, so they should be short. The target is only weakly referenced, once it is garbage
+ * collected the task cancels itself.
+ *
+ * @param <T> The type of the target
+ */
+final class PeriodicTask<T> implements Runnable {
+    private final WeakReference<T> target;
+    private final Consumer<? super T> action;
+    private volatile ScheduledFuture<?> future;
+
+    private PeriodicTask(final T target, final Consumer<? super T> action) {
+        this.target = new WeakReference<>(target);
+        this.action = action;
+    }
+
+    static <T> PeriodicTask<T> schedule(final T target, final Consumer<? super T> action, final Duration interval) {
+        final var task = new PeriodicTask<>(target, action);
+        final var intervalNanos = interval.toNanos();
+        task.future = Scheduler.INSTANCE.scheduleAtFixedRate(task, intervalNanos, intervalNanos, NANOSECONDS);
+        return task;
+    }
+
+    /**
+     * Stops running the action, without waiting for a run that already started.
+     */
+    void cancel() {
+        future.cancel(false);
+    }
+
+    @Override
+    public void run() {
+        final var reachableTarget = target.get();
+        if (reachableTarget != null) {
+            action.accept(reachableTarget);
+        } else if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private static final class Scheduler {
+        private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(task -> {
+            final var thread = new Thread(task, "shadow-flow-summary");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
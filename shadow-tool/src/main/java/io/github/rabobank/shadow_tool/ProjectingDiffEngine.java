@@ -0,0 +1,49 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A {@link DiffEngine} stage that drops the differences of the properties that are not compared, for engines that
+ * cannot leave those properties out while comparing. The {@link FastDiffEngine} and {@link MerkleDiffEngine} do not
+ * need it, since they never read them. Javers skips most of them when the domain type is known, but it can still report
+ * the properties of classes that could not be found from the domain type, which are dropped here.
+ */
+final class ProjectingDiffEngine implements DiffEngine {
+    private final DiffEngine delegate;
+    private final PropertyProjection projection;
+
+    ProjectingDiffEngine(final DiffEngine delegate, final PropertyProjection projection) {
+        this.delegate = delegate;
+        this.projection = projection;
+    }
+
+    @Override
+    public List<Difference> compare(final Object currentFlowResult, final Object newFlowResult) {
+        return project(delegate.compare(currentFlowResult, newFlowResult), false);
+    }
+
+    @Override
+    public <T> List<Difference> compareCollections(final Collection<T> currentFlowResult, final Collection<T> newFlowResult, final Class<T> clazz) {
+        return project(delegate.compareCollections(currentFlowResult, newFlowResult, clazz), true);
+    }
+
+    @Override
+    public void warmUp(final Class<?> type) {
+        delegate.warmUp(type);
+    }
+
+    private List<Difference> project(final List<Difference> differences, final boolean elements) {
+        if (differences.isEmpty()) {
+            return differences;
+        }
+        final List<Difference> compared = new ArrayList<>(differences.size());
+        for (final var difference : differences) {
+            if (projection.isCompared(PropertyProjection.pathOf(difference, elements))) {
+                compared.add(difference);
+            }
+        }
+        return compared;
+    }
+}
@@ -0,0 +1,228 @@
+package io.github.rabobank.shadow_tool;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which properties of the results are compared, based on paths like {@code address.street}.
+ * <p>
+ * A path includes or excludes the property and everything below it. A segment can be {@code *} to match any property,
+ * and the positions of collection elements are left out, so {@code accounts.balance} matches the balance of every
+ * account. When paths are included, only those properties and the properties leading to them are compared.
+ * Excluded paths win over included paths.
+ * <p>
+ * The paths are compiled once into a tree, so deciding whether a property is compared while walking a result is a
+ * single lookup per property.
+ *
+ * @see ShadowFlow.ShadowFlowBuilder#withIncludedPaths(String...)
+ * @see ShadowFlow.ShadowFlowBuilder#withExcludedPaths(String...)
+ */
+final class PropertyProjection {
+    private static final String WILDCARD = "*";
+    // The separators of FastDiffEngine and Javers paths, for example accounts[2].balance and accounts/2/balance
+    private static final Pattern SEGMENT_SEPARATOR = Pattern.compile("[./]|\\[\\d*]");
+    private static final Pattern ELEMENT_POSITION = Pattern.compile("\\d+");
+    private static final Node INCLUDED = new Node(true);
+    static final PropertyProjection ALL = new PropertyProjection(List.of(), List.of());
+
+    private final Node root = new Node(false);
+
+    PropertyProjection(final Collection<String> includedPaths, final Collection<String> excludedPaths) {
+        root.included = includedPaths.isEmpty();
+        includedPaths.forEach(path -> add(path).included = true);
+        excludedPaths.forEach(path -> add(path).excluded = true);
+        root.compile(false);
+    }
+
+    Node root() {
+        return root;
+    }
+
+    /**
+     * @return Whether the property with this path is compared. The path may contain element positions.
+     */
+    boolean isCompared(final String path) {
+        var node = root;
+        for (final var segment : SEGMENT_SEPARATOR.split(path)) {
+            if (segment.isEmpty() || ELEMENT_POSITION.matcher(segment).matches()) {
+                continue;
+            }
+            node = node.child(segment);
+            if (node == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The path without element positions and with dots as separators, for example {@code accounts.balance}
+     */
+    static String normalize(final String path) {
+        final var normalized = new StringBuilder(path.length());
+        for (final var segment : SEGMENT_SEPARATOR.split(path)) {
+            if (!segment.isEmpty() && !ELEMENT_POSITION.matcher(segment).matches()) {
+                if (!normalized.isEmpty()) {
+                    normalized.append('.');
+                }
+                normalized.append(segment);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * @param difference A difference found by one of the engines of the shadow tool
+     * @param elements   Whether the difference was found by comparing collections
+     * @return The path of the property that differs, relative to the result or the elements of the result
+     */
+    static String pathOf(final Difference difference, final boolean elements) {
+        if (difference instanceof ElementDifference elementDifference) {
+            return pathOf(elementDifference.difference(), false);
+        } else if (difference instanceof JaversDifference javersDifference) {
+            final var path = javersDifference.getPath();
+            if (!elements) {
+                return path;
+            }
+            // Javers wraps the elements of a collection in a property of its own, which is not part of the paths
+            final var elementPath = path.indexOf('/');
+            return elementPath < 0 ? "" : path.substring(elementPath + 1);
+        }
+        return difference.getPropertyName();
+    }
+
+    /**
+     * Finds the properties that are never compared, per class reachable from the fields of the given type, so an
+     * engine that compares them anyway can be told to skip them. A class that is reached through several paths only
+     * gets the properties that none of those paths compare. Since the classes are found from the declared types of
+     * the fields, properties of subclasses or values of maps are not found, so those are still compared.
+     *
+     * @param type The type of the results, or of the elements when collections are compared
+     * @return The names of the fields that are not compared, per class that has any
+     */
+    Map<Class<?>, Set<String>> uncomparedProperties(final Class<?> type) {
+        final Map<Class<?>, Set<String>> uncompared = new HashMap<>();
+        collectUncomparedProperties(type, root, uncompared, new HashSet<>());
+        uncompared.values().removeIf(Set::isEmpty);
+        return uncompared;
+    }
+
+    private static void collectUncomparedProperties(final Class<?> type, final Node node, final Map<Class<?>, Set<String>> uncompared,
+                                                    final Set<Map.Entry<Class<?>, Node>> visited) {
+        if (type == null || FastDiffEngine.isValue(type) || !visited.add(Map.entry(type, node))) {
+            return;
+        }
+        final Set<String> names = new HashSet<>();
+        for (var declaringClass = type; declaringClass != null && !FastDiffEngine.isValue(declaringClass); declaringClass = declaringClass.getSuperclass()) {
+            for (final Field field : declaringClass.getDeclaredFields()) {
+                final var modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                final var child = node.child(field.getName());
+                if (child == null) {
+                    names.add(field.getName());
+                } else {
+                    // The values of a map are not known to the paths, so everything below them is compared
+                    final var childNode = Map.class.isAssignableFrom(field.getType()) ? INCLUDED : child;
+                    collectUncomparedProperties(valueType(field.getGenericType()), childNode, uncompared, visited);
+                }
+            }
+        }
+        uncompared.merge(type, names, (known, found) -> {
+            known.retainAll(found);
+            return known;
+        });
+    }
+
+    /**
+     * @return The class of the value, or of its elements when it is a collection, an array or an optional. Null when
+     * it cannot be told from the declaration.
+     */
+    private static Class<?> valueType(final Type type) {
+        if (type instanceof Class<?> clazz) {
+            return clazz.isArray() ? valueType(clazz.getComponentType()) : clazz;
+        }
+        if (type instanceof ParameterizedType parameterizedType && parameterizedType.getRawType() instanceof Class<?> rawType) {
+            final var arguments = parameterizedType.getActualTypeArguments();
+            if (Iterable.class.isAssignableFrom(rawType) || Optional.class == rawType || Map.class.isAssignableFrom(rawType)) {
+                return valueType(arguments[arguments.length - 1]);
+            }
+            return rawType;
+        }
+        return null;
+    }
+
+    private Node add(final String path) {
+        var node = root;
+        for (final var segment : SEGMENT_SEPARATOR.split(path.trim())) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("The path must not contain empty segments. Got " + path);
+            }
+            node = node.children.computeIfAbsent(segment, ignored -> new Node(false));
+        }
+        if (node == root) {
+            throw new IllegalArgumentException("The path must not be empty. Got " + path);
+        }
+        return node;
+    }
+
+    /**
+     * A property of the results, of which the children are the properties of its value.
+     */
+    static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean included;
+        private boolean excluded;
+
+        private Node(final boolean included) {
+            this.included = included;
+        }
+
+        /**
+         * @return The child property when it is compared, or null when it is not.
+         */
+        Node child(final String name) {
+            var child = children.get(name);
+            if (child == null) {
+                child = children.get(WILDCARD);
+            }
+            if (child == null) {
+                return included ? INCLUDED : null;
+            }
+            return child.excluded ? null : child;
+        }
+
+        /**
+         * Applies the paths matched by a wildcard to its siblings, and includes everything below an included path.
+         */
+        private void compile(final boolean parentIncluded) {
+            included |= parentIncluded;
+            final var wildcard = children.get(WILDCARD);
+            if (wildcard != null) {
+                children.forEach((name, child) -> {
+                    if (child != wildcard) {
+                        child.merge(wildcard);
+                    }
+                });
+            }
+            children.values().forEach(child -> child.compile(included));
+        }
+
+        private void merge(final Node other) {
+            included |= other.included;
+            excluded |= other.excluded;
+            other.children.forEach((name, otherChild) -> children.computeIfAbsent(name, ignored -> new Node(false)).merge(otherChild));
+        }
+    }
+}
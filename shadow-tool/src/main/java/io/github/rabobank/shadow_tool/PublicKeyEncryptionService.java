@@ -15,16 +15,12 @@ public class PublicKeyEncryptionService extends DefaultEncryptionService {
             DEFAULT_ALGORITHM + "/ECB/OAEPWITHSHA-256ANDMGF1PADDING";
 
     public PublicKeyEncryptionService(final PublicKey publicKey) {
-        super(createCipher(publicKey));
+        super(() -> createCipher(publicKey));
     }
 
-    private static Cipher createCipher(final PublicKey publicKey) {
-        try {
-            final var cipher = Cipher.getInstance(DEFAULT_ALGORITHM_MODE_PADDING);
-            cipher.init(ENCRYPT_MODE, publicKey);
-            return cipher;
-        } catch (final GeneralSecurityException e) {
-            throw new IllegalArgumentException(e);
-        }
+    private static Cipher createCipher(final PublicKey publicKey) throws GeneralSecurityException {
+        final var cipher = Cipher.getInstance(DEFAULT_ALGORITHM_MODE_PADDING);
+        cipher.init(ENCRYPT_MODE, publicKey);
+        return cipher;
     }
 }
@@ -0,0 +1,314 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A compact copy of the result of the current flow, so the result itself does not have to be retained while the new
+ * flow is running.
+ * <p>
+ * The result is flattened into an array with the values of its properties, in the order the {@link FastDiffEngine}
+ * walks them, together with a small marker per object and list to describe the structure. The objects and lists
+ * themselves are released. Strings and byte arrays longer than {@value #MAX_VALUE_LENGTH} are kept as a digest of
+ * their content, so large payloads are released as well. Types from the JDK, like numbers, dates, and sets, maps and
+ * lists of values, are kept as they are, since they are compared as a whole.
+ * <p>
+ * Sets, maps, other collections and arrays that contain objects are kept as a digest of the values in those objects,
+ * computed like the {@link MerkleDiffEngine} does, so the objects are released too. The digest of a set or map does
+ * not depend on the order of its elements or entries.
+ * <p>
+ * The result of the new flow is compared with the snapshot like the {@link FastDiffEngine} compares two results, and
+ * the differences carry the values of the snapshot. Objects, lists and digests are described by their type or size
+ * when they differ as a whole. Unlike the {@link FastDiffEngine}, which compares sets and maps with {@code equals()},
+ * the digest of a set or map of objects also differs when only properties outside of {@code equals()} differ.
+ *
+ * @see ShadowFlow.ShadowFlowBuilder#withCurrentResultSnapshots()
+ */
+final class ResultSnapshot {
+    static final int MAX_VALUE_LENGTH = 1024;
+    private static final String ROOT = "root";
+
+    /**
+     * Compares the snapshot of the result of the current flow, passed as the current result, with the result of the
+     * new flow. It is a {@link DiffEngine}, so the tolerances can be applied to the differences it finds.
+     */
+    static final DiffEngine ENGINE = new DiffEngine() {
+        @Override
+        public List<Difference> compare(final Object currentFlowResult, final Object newFlowResult) {
+            return ((ResultSnapshot) currentFlowResult).compareWith(newFlowResult);
+        }
+
+        @Override
+        public <T> List<Difference> compareCollections(final Collection<T> currentFlowResult, final Collection<T> newFlowResult, final Class<T> clazz) {
+            return compare(currentFlowResult, newFlowResult);
+        }
+    };
+
+    private final PropertyProjection.Node root;
+    private final Object[] slots;
+
+    private ResultSnapshot(final PropertyProjection.Node root, final Object[] slots) {
+        this.root = root;
+        this.slots = slots;
+    }
+
+    /**
+     * @param result     The result of the current flow
+     * @param projection The properties to keep, the other properties are left out of the snapshot
+     */
+    static ResultSnapshot of(final Object result, final PropertyProjection projection) {
+        final List<Object> slots = new ArrayList<>();
+        add(slots, projection.root(), result, 0);
+        return new ResultSnapshot(projection.root(), slots.toArray());
+    }
+
+    /**
+     * @return A hash of the values in the snapshot, which is the same for the snapshots of results with the same values
+     */
+    long digest() {
+        return MerkleDiffEngine.digest(slots, PropertyProjection.ALL);
+    }
+
+    /**
+     * @return The differences between the snapshot and the result of the new flow
+     */
+    List<Difference> compareWith(final Object newFlowResult) {
+        final List<Difference> differences = new ArrayList<>();
+        compare(0, "", root, newFlowResult, differences);
+        return differences;
+    }
+
+    private static void add(final List<Object> slots, final PropertyProjection.Node node, final Object value, final int depth) {
+        if (value == null) {
+            slots.add(null);
+            return;
+        }
+        if (value instanceof String string && string.length() > MAX_VALUE_LENGTH) {
+            slots.add(Digest.of(string));
+            return;
+        }
+        if (value instanceof byte[] bytes && bytes.length > MAX_VALUE_LENGTH) {
+            slots.add(Digest.of(bytes));
+            return;
+        }
+        if (depth >= FastDiffEngine.MAX_DEPTH) {
+            slots.add(value);
+            return;
+        }
+        if (ObjectsDigest.isContainerOfObjects(value)) {
+            slots.add(ObjectsDigest.of(value, node));
+            return;
+        }
+
+        if (value instanceof List<?> list) {
+            if (FastDiffEngine.containsValues(list)) {
+                slots.add(value);
+                return;
+            }
+            final var index = slots.size();
+            slots.add(null);
+            for (final var element : list) {
+                add(slots, node, element, depth + 1);
+            }
+            slots.set(index, new ListMarker(list.size(), slots.size() - index - 1));
+            return;
+        }
+
+        final var type = value.getClass();
+        final var accessors = FastDiffEngine.accessors(type);
+        if (accessors.length == 0) {
+            slots.add(value);
+            return;
+        }
+        final var index = slots.size();
+        slots.add(null);
+        for (final var accessor : accessors) {
+            final var childNode = node.child(accessor.name());
+            if (childNode != null) {
+                add(slots, childNode, accessor.get(value), depth + 1);
+            }
+        }
+        slots.set(index, new ObjectMarker(type, slots.size() - index - 1));
+    }
+
+    /**
+     * @return The index of the slot after the compared value and everything below it
+     */
+    private int compare(final int index, final String path, final PropertyProjection.Node node, final Object next,
+                        final List<Difference> differences) {
+        final var slot = slots[index];
+        if (slot instanceof ObjectMarker object) {
+            final var end = index + 1 + object.slots();
+            if (next == null || next.getClass() != object.type()) {
+                differences.add(new ValueDifference(propertyName(path), object, next));
+                return end;
+            }
+            var childIndex = index + 1;
+            for (final var accessor : FastDiffEngine.accessors(object.type())) {
+                final var childNode = node.child(accessor.name());
+                if (childNode != null) {
+                    childIndex = compare(childIndex, child(path, accessor.name()), childNode, accessor.get(next), differences);
+                }
+            }
+            return end;
+        }
+        if (slot instanceof ListMarker list) {
+            final var end = index + 1 + list.slots();
+            if (!(next instanceof List<?> nextList) || nextList.size() != list.size()) {
+                differences.add(new ValueDifference(propertyName(path), list, next));
+                return end;
+            }
+            var elementIndex = index + 1;
+            for (int i = 0; i < list.size(); i++) {
+                elementIndex = compare(elementIndex, path + "[" + i + "]", node, nextList.get(i), differences);
+            }
+            return end;
+        }
+        if (slot instanceof Digest digest) {
+            if (!digest.matches(next)) {
+                differences.add(new ValueDifference(propertyName(path), digest, next));
+            }
+            return index + 1;
+        }
+        if (slot instanceof ObjectsDigest digest) {
+            if (!digest.matches(next, node)) {
+                differences.add(new ValueDifference(propertyName(path), digest, next));
+            }
+            return index + 1;
+        }
+        if (!Objects.deepEquals(slot, next)) {
+            differences.add(new ValueDifference(propertyName(path), slot, next));
+        }
+        return index + 1;
+    }
+
+    private static String propertyName(final String path) {
+        return path.isEmpty() ? ROOT : path;
+    }
+
+    private static String child(final String path, final String name) {
+        return path.isEmpty() ? name : path + "." + name;
+    }
+
+    /**
+     * An object, followed by the slots of its properties.
+     */
+    private record ObjectMarker(Class<?> type, int slots) {
+        @Override
+        public String toString() {
+            return type.getSimpleName();
+        }
+    }
+
+    /**
+     * A list of objects, followed by the slots of its elements.
+     */
+    private record ListMarker(int size, int slots) {
+        @Override
+        public String toString() {
+            return "[" + size + " elements]";
+        }
+    }
+
+    /**
+     * The length and a 64-bit FNV-1a hash of a large string or byte array.
+     */
+    private record Digest(boolean string, int length, long hash) {
+        private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+        private static final long PRIME = 0x100000001b3L;
+
+        static Digest of(final String value) {
+            var hash = OFFSET_BASIS;
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * PRIME;
+            }
+            return new Digest(true, value.length(), hash);
+        }
+
+        static Digest of(final byte[] value) {
+            var hash = OFFSET_BASIS;
+            for (final var b : value) {
+                hash = (hash ^ (b & 0xff)) * PRIME;
+            }
+            return new Digest(false, value.length, hash);
+        }
+
+        boolean matches(final Object value) {
+            if (value instanceof String other) {
+                return string && other.length() == length && equals(of(other));
+            } else if (value instanceof byte[] other) {
+                return !string && other.length == length && equals(of(other));
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "<" + length + (string ? " characters" : " bytes") + " with hash " + Long.toHexString(hash) + ">";
+        }
+    }
+
+    /**
+     * The type, size and hash of a set, map, other collection or array that contains objects. The elements are hashed
+     * with {@link MerkleDiffEngine#digest(Object, PropertyProjection.Node)}. The hashes of the elements of a set and
+     * the entries of a map are added up, so their order does not matter, other collections and arrays are hashed in
+     * order.
+     */
+    private record ObjectsDigest(Class<?> type, int size, long hash) {
+        private static final long PRIME = 0x100000001b3L;
+
+        static boolean isContainerOfObjects(final Object value) {
+            if (value instanceof Map<?, ?> map) {
+                return !map.isEmpty() && (isObject(map.keySet()) || isObject(map.values()));
+            } else if (value instanceof Collection<?> collection) {
+                return !(value instanceof List) && isObject(collection);
+            } else if (value instanceof Object[] array) {
+                return isObject(Arrays.asList(array));
+            }
+            return false;
+        }
+
+        /**
+         * @return Whether the first element that is not null is an object, and not a value like the {@link FastDiffEngine} compares as a whole
+         */
+        private static boolean isObject(final Collection<?> elements) {
+            for (final var element : elements) {
+                if (element != null) {
+                    return !FastDiffEngine.isValue(element.getClass());
+                }
+            }
+            return false;
+        }
+
+        static ObjectsDigest of(final Object value, final PropertyProjection.Node node) {
+            long hash = 0;
+            if (value instanceof Map<?, ?> map) {
+                for (final var entry : map.entrySet()) {
+                    hash += MerkleDiffEngine.digest(entry.getKey(), node) * PRIME ^ MerkleDiffEngine.digest(entry.getValue(), node);
+                }
+                return new ObjectsDigest(value.getClass(), map.size(), hash);
+            }
+            final Collection<?> elements = value instanceof Object[] array ? Arrays.asList(array) : (Collection<?>) value;
+            final var ordered = !(value instanceof Set);
+            for (final var element : elements) {
+                final var elementHash = MerkleDiffEngine.digest(element, node);
+                hash = ordered ? hash * PRIME + elementHash : hash + elementHash;
+            }
+            return new ObjectsDigest(value.getClass(), elements.size(), hash);
+        }
+
+        boolean matches(final Object value, final PropertyProjection.Node node) {
+            return value != null && value.getClass() == type && equals(of(value, node));
+        }
+
+        @Override
+        public String toString() {
+            return "<" + type.getSimpleName() + " of " + size + " elements with hash " + Long.toHexString(hash) + ">";
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.rabobank.shadow_tool;
+
+/**
+ * Decides which requests are also sent to the new flow.
+ *
+ * @see AdaptiveSampler
+ */
+public interface Sampler {
+    /**
+     * Called for every request once the current flow produced its result, on the thread that produced it, so it
+     * should be cheap and should not allocate.
+     *
+     * @return true when the new flow should be called for this request
+     */
+    boolean shouldSample();
+
+    /**
+     * Called instead of {@link #shouldSample()} when the caller supplied a key for the request. Implementations
+     * should consistently make the same decision for the same key, as long as the sampling rate does not change.
+     * By default, the key is ignored.
+     *
+     * @param requestKey The key of the request, for example a customer number. Never null.
+     * @return true when the new flow should be called for this request
+     */
+    default boolean shouldSample(final Object requestKey) {
+        return shouldSample();
+    }
+
+    /**
+     * Called when a sampled shadow call has finished, successfully or not. This can be used to adjust the sampling.
+     *
+     * @param durationNanos How long calling the new flow and comparing the results took
+     */
+    default void onShadowCallCompleted(final long durationNanos) {
+    }
+
+    /**
+     * Called instead of {@link #onShadowCallCompleted(long)} when a sampled shadow call is dropped, because the
+     * executor or the maximum number of concurrent subscriptions is saturated. This can be used to lower the sampling.
+     */
+    default void onShadowCallDropped() {
+    }
+
+    /**
+     * Called instead of {@link #onShadowCallCompleted(long)} when a sampled shadow call is not made, because the
+     * result was recently verified or the circuit breaker is open. Such a call says nothing about the load of the new
+     * flow or the executor.
+     */
+    default void onShadowCallSkipped() {
+    }
+
+    /**
+     * @return The current probability that a request is sampled, between 0 and 1
+     */
+    double getSamplingRate();
+}
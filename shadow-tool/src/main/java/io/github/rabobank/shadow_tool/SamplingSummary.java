@@ -0,0 +1,52 @@
+package io.github.rabobank.shadow_tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the sampling decisions of a shadow flow instance, and periodically logs how many requests called the new flow.
+ * Counting only increments a {@link LongAdder}, the logging is done by a single daemon thread shared by all instances.
+ * The summary stops logging once its shadow flow is closed or garbage collected.
+ */
+final class SamplingSummary {
+    private static final Logger logger = LoggerFactory.getLogger(ShadowFlow.class);
+    private static final String SAMPLING_SUMMARY = "{} Sampling summary: {} of {} requests called the new flow";
+
+    private final String instanceNameLogPrefix;
+    private final LongAdder sampledRequests = new LongAdder();
+    private final LongAdder unsampledRequests = new LongAdder();
+    private PeriodicTask<SamplingSummary> task;
+
+    private SamplingSummary(final String instanceNameLogPrefix) {
+        this.instanceNameLogPrefix = instanceNameLogPrefix;
+    }
+
+    static SamplingSummary start(final String instanceNameLogPrefix, final Duration interval) {
+        final var summary = new SamplingSummary(instanceNameLogPrefix);
+        summary.task = PeriodicTask.schedule(summary, SamplingSummary::flush, interval);
+        return summary;
+    }
+
+    void record(final boolean sampled) {
+        (sampled ? sampledRequests : unsampledRequests).increment();
+    }
+
+    void flush() {
+        final var sampled = sampledRequests.sumThenReset();
+        final var total = sampled + unsampledRequests.sumThenReset();
+        if (total > 0) {
+            logger.info(SAMPLING_SUMMARY, instanceNameLogPrefix, sampled, total);
+        }
+    }
+
+    /**
+     * Stops the periodic logging, and logs the requests counted since the last summary.
+     */
+    void close() {
+        task.cancel();
+        flush();
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.rabobank.shadow_tool;
+
+import java.time.Duration;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Interrupts the thread that calls the new flow when the call takes longer than the timeout. The interrupts are
+ * scheduled on a single daemon thread shared by all instances, and are removed from it when the call finishes in time.
+ * <p>
+ * The interrupt and {@link #finish()} are mutually exclusive, so the interrupt never hits the thread after the call
+ * finished, when it might already be running another task.
+ */
+final class ShadowCallTimeout implements Runnable {
+    private final Thread thread;
+    private Future<?> interrupt;
+    private boolean finished;
+    private boolean timedOut;
+
+    private ShadowCallTimeout(final Thread thread) {
+        this.thread = thread;
+    }
+
+    /**
+     * Starts the timeout of a call by the current thread.
+     */
+    static ShadowCallTimeout start(final Duration timeout) {
+        final var callTimeout = new ShadowCallTimeout(Thread.currentThread());
+        final var interrupt = Scheduler.INSTANCE.schedule(callTimeout, timeout.toNanos(), NANOSECONDS);
+        synchronized (callTimeout) {
+            callTimeout.interrupt = interrupt;
+        }
+        return callTimeout;
+    }
+
+    @Override
+    public synchronized void run() {
+        if (!finished) {
+            timedOut = true;
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Stops the timeout, and clears the interrupt of the current thread when the call timed out.
+     *
+     * @return Whether the call timed out.
+     */
+    synchronized boolean finish() {
+        finished = true;
+        if (interrupt != null) {
+            interrupt.cancel(false);
+        }
+        if (timedOut) {
+            Thread.interrupted();
+        }
+        return timedOut;
+    }
+
+    private static final class Scheduler {
+        private static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, task -> {
+            final var thread = new Thread(task, "shadow-flow-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static {
+            INSTANCE.setRemoveOnCancelPolicy(true);
+        }
+    }
+}
@@ -0,0 +1,1722 @@
+package io.github.rabobank.shadow_tool;
+
+import io.github.rabobank.shadow_tool.ShadowFlowMetrics.Stage;
+import org.javers.core.JaversBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+
+import javax.crypto.Cipher;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * @param <T> The model that the current and new flow should be mapped to for comparison.
+ */
+public class ShadowFlow<T> implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ShadowFlow.class);
+
+    private static final int ZERO = 0;
+    private static final int HUNDRED = 100;
+    private static final int DEFAULT_STREAM_WINDOW_SIZE = 256;
+    private static final Duration DEFAULT_SAMPLING_SUMMARY_INTERVAL = Duration.ofMinutes(1);
+    private static final String INSTANCE_PREFIX_FORMAT = "[instance=%s]";
+    private static final String DEFAULT_INSTANCE_NAME = "default";
+    private static final String FAILED_TO_COMPARE = "{} Failed to run the shadow flow";
+    private static final String TIMED_OUT = "{} The new flow did not respond within {}, the shadow call is cancelled";
+    private final Sampler sampler;
+    private final ShadowFlowMetrics metrics;
+    private final SamplingSummary samplingSummary;
+    private final Executor executor;
+    private final DiffEngine diffEngine;
+    private final DiffEngine snapshotEngine;
+    private final PropertyProjection projection;
+    private final DifferenceReporter differenceReporter;
+    private final AggregatingDifferenceReporter aggregatingReporter;
+    private final DiffResultCache diffCache;
+    private final Scheduler scheduler;
+    private final Scheduler streamScheduler;
+    private final String instanceNameLogPrefix;
+    private final String instanceName;
+    private final int streamWindowSize;
+    private final Duration timeout;
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore subscriptionPermits;
+    private final LongAdder droppedSubscriptions = new LongAdder();
+    private final LongAdder timedOutComparisons = new LongAdder();
+
+    ShadowFlow(final int percentage,
+               final Executor executor,
+               final EncryptionService encryptionService,
+               final String instanceName) {
+        this(new ShadowFlowBuilder<T>(percentage)
+                .withExecutor(executor)
+                .withEncryptionService(encryptionService)
+                .withInstanceName(instanceName));
+    }
+
+    private ShadowFlow(final ShadowFlowBuilder<T> builder) {
+        this.instanceName = builder.instanceName == null ? DEFAULT_INSTANCE_NAME : builder.instanceName;
+        instanceNameLogPrefix = logPrefix(this.instanceName);
+        streamWindowSize = builder.streamWindowSize;
+        timeout = builder.timeout;
+        sampler = builder.sampler != null ? builder.sampler : new PercentageSampler(builder.percentage);
+        metrics = builder.metrics;
+        circuitBreaker = builder.circuitBreakerFailureThreshold > ZERO
+                ? new CircuitBreaker(builder.circuitBreakerFailureThreshold, builder.circuitBreakerCoolDown, instanceName, metrics)
+                : null;
+        subscriptionPermits = builder.maxConcurrentSubscriptions > ZERO ? new Semaphore(builder.maxConcurrentSubscriptions) : null;
+        samplingSummary = SamplingSummary.start(instanceNameLogPrefix, builder.samplingSummaryInterval);
+
+        if (builder.executor != null) {
+            this.executor = builder.executor;
+            scheduler = Schedulers.fromExecutor(builder.executor);
+            // A dropped task of an admitted stream comparison would stall it, so those are not run on a dropping executor
+            streamScheduler = dropsTasks(builder.executor) ? Schedulers.boundedElastic() : scheduler;
+        } else {
+            this.executor = Executors.newCachedThreadPool();
+            scheduler = Schedulers.boundedElastic();
+            streamScheduler = scheduler;
+        }
+
+        DiffEngine engine;
+        if (builder.diffEngine != null) {
+            engine = builder.diffEngine;
+        } else if (builder.projection != null && builder.domainType != null) {
+            final var ignoring = JaversDiffEngine.ignoring(builder.projection, builder.domainType);
+            engine = JaversDiffEngine.configured(builder.javersConfiguration != null ? ignoring.andThen(builder.javersConfiguration) : ignoring);
+        } else if (builder.javersConfiguration != null) {
+            engine = JaversDiffEngine.configured(builder.javersConfiguration);
+        } else {
+            engine = JaversDiffEngine.DEFAULT;
+        }
+        if (builder.projection != null) {
+            if (engine.getClass() == FastDiffEngine.class) {
+                engine = new FastDiffEngine(builder.projection);
+            } else if (engine.getClass() == MerkleDiffEngine.class) {
+                engine = new MerkleDiffEngine(builder.projection);
+            } else {
+                engine = new ProjectingDiffEngine(engine, builder.projection);
+            }
+        }
+        if (!builder.tolerancesByPath.isEmpty() || !builder.tolerancesByType.isEmpty()) {
+            engine = new TolerantDiffEngine(engine, builder.tolerancesByPath, builder.tolerancesByType);
+        }
+        if (builder.collectionKeyExtractor != null) {
+            engine = new KeyedCollectionDiffEngine<>(engine, builder.collectionKeyExtractor);
+        }
+        diffEngine = builder.equalityFastPath ? new EqualityFastPathDiffEngine<>(engine, builder.structuralHash) : engine;
+        if (builder.domainType != null) {
+            diffEngine.warmUp(builder.domainType);
+        }
+        projection = builder.projection != null ? builder.projection : PropertyProjection.ALL;
+        if (builder.currentResultSnapshots) {
+            snapshotEngine = !builder.tolerancesByPath.isEmpty() || !builder.tolerancesByType.isEmpty()
+                    ? new TolerantDiffEngine(ResultSnapshot.ENGINE, builder.tolerancesByPath, builder.tolerancesByType)
+                    : ResultSnapshot.ENGINE;
+        } else {
+            snapshotEngine = null;
+        }
+        diffCache = builder.diffCacheSize > ZERO ? new DiffResultCache(builder.diffCacheSize, builder.diffCacheTimeToLive) : null;
+
+        var encryptionService = builder.encryptionService;
+        if (encryptionService != null && metrics != ShadowFlowMetrics.NOOP) {
+            final var delegate = encryptionService;
+            encryptionService = value -> timed(Stage.ENCRYPT, () -> delegate.encrypt(value));
+        }
+        DifferenceReporter reporter;
+        if (builder.differenceReporter != null) {
+            reporter = builder.differenceReporter;
+            aggregatingReporter = null;
+        } else if (builder.aggregationWindow != null) {
+            aggregatingReporter = new AggregatingDifferenceReporter(encryptionService, builder.aggregationWindow, builder.samplesPerFingerprint);
+            reporter = aggregatingReporter;
+        } else {
+            aggregatingReporter = null;
+            reporter = new LoggingDifferenceReporter(encryptionService, encryptsValuesOfAnySize(builder.encryptionService));
+        }
+        if (metrics != ShadowFlowMetrics.NOOP) {
+            reporter = new MeteredDifferenceReporter(reporter, metrics, instanceName);
+        }
+        differenceReporter = builder.asyncBufferCapacity > ZERO
+                ? new AsyncDifferenceReporter(reporter, builder.asyncBufferCapacity, builder.asyncBatchSize)
+                : reporter;
+    }
+
+    private static boolean encryptsValuesOfAnySize(final EncryptionService encryptionService) {
+        return encryptionService instanceof HybridEncryptionService || encryptionService instanceof NoopEncryptionService;
+    }
+
+    /**
+     * @return Whether the executor accepted the task, the executors of the shadow tool drop tasks instead of throwing
+     */
+    private boolean tryExecute(final Runnable task) {
+        if (executor instanceof BoundedShadowExecutor boundedExecutor) {
+            return boundedExecutor.tryExecute(task);
+        } else if (executor instanceof VirtualThreadShadowExecutor virtualExecutor) {
+            return virtualExecutor.tryExecute(task);
+        }
+        executor.execute(task);
+        return true;
+    }
+
+    private static boolean dropsTasks(final Executor executor) {
+        return executor instanceof BoundedShadowExecutor || executor instanceof VirtualThreadShadowExecutor;
+    }
+
+    static String logPrefix(final String instanceName) {
+        return String.format(INSTANCE_PREFIX_FORMAT, instanceName);
+    }
+
+
+    /**
+     * @return Name of the Shadow Flow instance or "default" if not configured
+     */
+    public String getInstanceName() {
+        return instanceName;
+    }
+
+    /**
+     * @return The number of shadow comparisons that were dropped because the {@link BoundedShadowExecutor} or
+     * {@link VirtualThreadShadowExecutor} was saturated, or because the maximum number of concurrent reactive
+     * shadow subscriptions was reached.
+     * @see ShadowFlowBuilder#withMaxConcurrentSubscriptions(int)
+     */
+    public long getDroppedComparisons() {
+        return droppedSubscriptions.sum() + getDroppedTasks();
+    }
+
+    private long getDroppedTasks() {
+        if (executor instanceof BoundedShadowExecutor boundedExecutor) {
+            return boundedExecutor.getDroppedTasks();
+        }
+        return executor instanceof VirtualThreadShadowExecutor virtualExecutor ? virtualExecutor.getDroppedTasks() : ZERO;
+    }
+
+    /**
+     * @return The number of shadow comparisons waiting for a thread of the {@link BoundedShadowExecutor},
+     * or zero when another executor is used.
+     */
+    public int getQueuedComparisons() {
+        return executor instanceof BoundedShadowExecutor boundedExecutor ? boundedExecutor.getQueueSize() : ZERO;
+    }
+
+    /**
+     * @return The number of differences that were dropped because the buffer of the asynchronous reporting was full,
+     * or zero when asynchronous reporting is not configured.
+     * @see ShadowFlowBuilder#withAsyncReporting(int, int)
+     */
+    public long getDroppedReports() {
+        return differenceReporter instanceof AsyncDifferenceReporter asyncReporter ? asyncReporter.getDroppedReports() : ZERO;
+    }
+
+    /**
+     * Stops the sampling summary and logs the requests counted since the last one. Reports the differences that are
+     * still waiting in the buffer of the asynchronous reporting and stops its background thread, and logs the
+     * summaries of the aggregated reporting that were not logged yet. Differences found after closing are dropped by
+     * the asynchronous reporting. The executor and a {@link DifferenceReporter} that was passed to the builder are not
+     * closed.
+     *
+     * @see ShadowFlowBuilder#withAsyncReporting(int, int)
+     * @see ShadowFlowBuilder#withAggregatedReporting(Duration, int)
+     */
+    @Override
+    public void close() {
+        samplingSummary.close();
+        if (differenceReporter instanceof AsyncDifferenceReporter asyncReporter) {
+            asyncReporter.close();
+        }
+        if (aggregatingReporter != null) {
+            aggregatingReporter.close();
+        }
+    }
+
+    /**
+     * @return The current probability that a request is also sent to the new flow, between 0 and 1.
+     * @see ShadowFlowBuilder#withAdaptiveSampling(double, Duration)
+     */
+    public double getSamplingRate() {
+        return sampler.getSamplingRate();
+    }
+
+    /**
+     * @return The number of comparisons that were decided equal by the equality fast path without a full diff,
+     * or zero when the fast path is not configured.
+     * @see ShadowFlowBuilder#withEqualityFastPath()
+     */
+    public long getShortCircuitedComparisons() {
+        return diffEngine instanceof EqualityFastPathDiffEngine<?> fastPath ? fastPath.getShortCircuitedComparisons() : ZERO;
+    }
+
+    /**
+     * @return The state of the circuit breaker, or {@link CircuitBreaker.State#CLOSED CLOSED} when it is not configured.
+     * @see ShadowFlowBuilder#withCircuitBreaker(int, Duration)
+     */
+    public CircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker != null ? circuitBreaker.getState() : CircuitBreaker.State.CLOSED;
+    }
+
+    /**
+     * @return The number of shadow calls that were cancelled because the new flow did not respond within the timeout.
+     * @see ShadowFlowBuilder#withTimeout(Duration)
+     */
+    public long getTimedOutComparisons() {
+        return timedOutComparisons.sum();
+    }
+
+    /**
+     * @return The number of sampled requests that skipped calling the new flow, because the same request was
+     * already found equal within the time to live of the diff cache, or zero when the cache is not configured.
+     * @see ShadowFlowBuilder#withDiffCache(int, Duration)
+     */
+    public long getCachedComparisons() {
+        return diffCache != null ? diffCache.getHits() : ZERO;
+    }
+
+    /**
+     * This will always call currentFlow, and based on the percentage also call the
+     * newFlow. Ex: if percentage is 40%, it will always call currentFlow, and newFlow
+     * will be called for 40% of the total requests. It will compare the results and
+     * the differences will be logged using Slf4j.
+     * <p>
+     * The shadow flow minimizes the impact on the production flow by doing the comparison
+     * asynchronously. Calling the newFlow, comparing the results and logging it to Slf4j
+     * is all done on a separate thread.
+     *
+     * @param currentFlow A supplier that returns the result of the service call
+     *                    that you currently have.
+     * @param newFlow     A supplier that return the result of the new service call
+     *                    that you want to start using.
+     * @return This will always return the value of currentFlow supplier.
+     */
+    public T compare(final Supplier<T> currentFlow, final Supplier<T> newFlow) {
+        return compare(null, currentFlow, newFlow);
+    }
+
+    /**
+     * This will always call currentFlow, and based on the percentage also call the
+     * newFlow. It will compare the results and the differences will be logged using Slf4j.
+     * <p>
+     * Unlike {@link #compare(Supplier, Supplier) compare}, the newFlow is called based on the hash of the
+     * request key instead of at random. The same key is therefore consistently compared, or not,
+     * which allows the results to be correlated per key. Use a key with a stable hash code, like a
+     * {@link String} or a {@link Long}; a null key is sampled at random.
+     *
+     * @param requestKey  The key of the request, for example a customer number. It is not logged.
+     * @param currentFlow A supplier that returns the result of the service call
+     *                    that you currently have.
+     * @param newFlow     A supplier that return the result of the new service call
+     *                    that you want to start using.
+     * @return This will always return the value of currentFlow supplier.
+     */
+    public T compare(final Object requestKey, final Supplier<T> currentFlow, final Supplier<T> newFlow) {
+        final var currentFlowResponse = currentFlow.get();
+        if (!shouldCallNewFlow(requestKey)) {
+            return currentFlowResponse;
+        }
+        if (snapshotEngine != null) {
+            compareSnapshot(requestKey, currentFlowResponse, newFlow);
+            return currentFlowResponse;
+        }
+        doShadowFlow(requestKey, currentFlowResponse, () -> {
+            final var newFlowResponse = timed(Stage.NEW_FLOW_CALL, () -> callWithTimeout(newFlow));
+            return diff(() -> diffEngine.compare(currentFlowResponse, newFlowResponse));
+        });
+
+        return currentFlowResponse;
+    }
+
+    /**
+     * This will always call currentFlow, and based on the percentage also call the
+     * newFlow. Ex: if percentage is 40%, it will always call currentFlow, and newFlow
+     * will be called for 40% of the total requests. It will compare the results and
+     * the differences will be logged using Slf4j.
+     * <p>
+     * The shadow flow minimizes the impact on the production flow by doing the comparison
+     * asynchronously. Calling the newFlow, comparing the results and logging it to Slf4j
+     * is all done on a separate thread.
+     * <p>
+     * When you are comparing a collection of objects, you have to use this method
+     *
+     * @param currentFlow A supplier that returns the result of the service call
+     *                    that you currently have.
+     * @param newFlow     A supplier that return the result of the new service call
+     *                    that you want to start using.
+     * @param clazz       The model that the current and new flow should be mapped to for comparison.
+     * @param <C>         The type of collection to compare, for example a List
+     * @return This will always return the value of currentFlow supplier.
+     */
+    public <C extends Collection<T>> C compareCollections(final Supplier<C> currentFlow, final Supplier<C> newFlow, final Class<T> clazz) {
+        return compareCollections(null, currentFlow, newFlow, clazz);
+    }
+
+    /**
+     * This will always call currentFlow, and based on the percentage also call the
+     * newFlow. It will compare the results and the differences will be logged using Slf4j.
+     * <p>
+     * Unlike {@link #compareCollections(Supplier, Supplier, Class) compareCollections}, the newFlow is called based on the hash of the
+     * request key instead of at random. The same key is therefore consistently compared, or not,
+     * which allows the results to be correlated per key. Use a key with a stable hash code, like a
+     * {@link String} or a {@link Long}; a null key is sampled at random.
+     *
+     * @param requestKey  The key of the request, for example a customer number. It is not logged.
+     * @param currentFlow A supplier that returns the result of the service call
+     *                    that you currently have.
+     * @param newFlow     A supplier that return the result of the new service call
+     *                    that you want to start using.
+     * @param clazz       The model that the current and new flow should be mapped to for comparison.
+     * @param <C>         The type of collection to compare, for example a List
+     * @return This will always return the value of currentFlow supplier.
+     */
+    public <C extends Collection<T>> C compareCollections(final Object requestKey, final Supplier<C> currentFlow, final Supplier<C> newFlow, final Class<T> clazz) {
+        final var currentFlowResponse = currentFlow.get();
+        if (!shouldCallNewFlow(requestKey)) {
+            return currentFlowResponse;
+        }
+        if (snapshotEngine != null) {
+            compareSnapshot(requestKey, currentFlowResponse, newFlow);
+            return currentFlowResponse;
+        }
+        doShadowFlow(requestKey, currentFlowResponse, () -> {
+            final var newFlowResponse = timed(Stage.NEW_FLOW_CALL, () -> callWithTimeout(newFlow));
+            return diff(() -> diffEngine.compareCollections(currentFlowResponse, newFlowResponse, clazz));
+        });
+
+        return currentFlowResponse;
+    }
+
+    /**
+     * Takes the snapshot on the calling thread, so only the snapshot is retained while the new flow is running.
+     */
+    private void compareSnapshot(final Object requestKey, final Object currentFlowResponse, final Supplier<?> newFlow) {
+        final ResultSnapshot snapshot;
+        try {
+            snapshot = ResultSnapshot.of(currentFlowResponse, projection);
+        } catch (final Exception e) {
+            sampler.onShadowCallDropped();
+            logger.warn(FAILED_TO_COMPARE, instanceNameLogPrefix, e);
+            return;
+        }
+        doShadowFlow(requestKey, snapshot, () -> {
+            final Object newFlowResponse = timed(Stage.NEW_FLOW_CALL, () -> callWithTimeout(newFlow));
+            return diff(() -> snapshotEngine.compare(snapshot, newFlowResponse));
+        });
+    }
+
+    /**
+     * Reactive API for shadow flow. This will always return currentFlow, and based
+     * on the percentage also call the newFlow. Ex: if percentage is 40%, it will always
+     * call currentFlow, and newFlow will be called for 40% of the total requests.
+     * It will compare the results and the differences will be logged using Slf4j.
+     *
+     * @param currentFlow A mono that returns the result of the service call
+     *                    that you currently have.
+     * @param newFlow     A mono that returns the result of the new service call
+     *                    that you want to start using.
+     * @return This will always return the mono of currentFlow.
+     */
+    public Mono<T> compare(final Mono<T> currentFlow, final Mono<T> newFlow) {
+        return compare(null, currentFlow, newFlow);
+    }
+
+    /**
+     * Reactive API for shadow flow. This will always return currentFlow, and based
+     * on the percentage also call the newFlow. It will compare the results and the
+     * differences will be logged using Slf4j.
+     * <p>
+     * Unlike {@link #compare(Mono, Mono) compare}, the newFlow is called based on the hash of the
+     * request key instead of at random. The same key is therefore consistently compared, or not,
+     * which allows the results to be correlated per key. Use a key with a stable hash code, like a
+     * {@link String} or a {@link Long}; a null key is sampled at random.
+     *
+     * @param requestKey  The key of the request, for example a customer number. It is not logged.
+     * @param currentFlow A mono that returns the result of the service call
+     *                    that you currently have.
+     * @param newFlow     A mono that returns the result of the new service call
+     *                    that you want to start using.
+     * @return This will always return the mono of currentFlow.
+     */
+    public Mono<T> compare(final Object requestKey, final Mono<T> currentFlow, final Mono<T> newFlow) {
+        return Mono.deferContextual(contextView ->
+                currentFlow.doOnNext(currentResponse -> {
+                    if (!shouldCallNewFlow(requestKey)) {
+                        return;
+                    }
+                    final var subscription = tryAcquireSubscription();
+                    if (subscription != null) {
+                        subscription.withSamplerFeedback(requestKey, currentResponse, timedNewFlow(withTimeout(newFlow)))
+                                .doOnNext(newResponse -> logDifferences(verified(subscription.cacheKey(), diff(() -> diffEngine.compare(currentResponse, newResponse)))))
+                                .onErrorStop()
+                                .contextWrite(contextView)
+                                .subscribeOn(subscription.scheduler())
+                                .doFinally(subscription::release)
+                                .subscribe(null, this::logFailure);
+                    }
+                }));
+    }
+
+    /**
+     * Reactive API for shadow flow. This will always return currentFlow, and based
+     * on the percentage also call the newFlow. Ex: if percentage is 40%, it will always
+     * call currentFlow, and newFlow will be called for 40% of the total requests.
+     * It will compare the results and the differences will be logged using Slf4j.
+     * <p>
+     * When you are comparing a collection of objects, you have to use this method
+     *
+     * @param currentFlow A mono that returns the result of the service call
+     *                    that you currently have.
+     * @param newFlow     A mono that returns the result of the new service call
+     *                    that you want to start using.
+     * @param clazz       The model that the current and new flow should be mapped to for comparison.
+     * @param <C>         The type of collection to compare, for example a List
+     * @return This will always return the mono of currentFlow.
+     */
+    public <C extends Collection<T>> Mono<C> compareCollections(final Mono<? extends C> currentFlow, final Mono<? extends C> newFlow, final Class<T> clazz) {
+        return compareCollections(null, currentFlow, newFlow, clazz);
+    }
+
+    /**
+     * Reactive API for shadow flow. This will always return currentFlow, and based
+     * on the percentage also call the newFlow. It will compare the results and the
+     * differences will be logged using Slf4j.
+     * <p>
+     * Unlike {@link #compareCollections(Mono, Mono, Class) compareCollections}, the newFlow is called based on the hash of the
+     * request key instead of at random. The same key is therefore consistently compared, or not,
+     * which allows the results to be correlated per key. Use a key with a stable hash code, like a
+     * {@link String} or a {@link Long}; a null key is sampled at random.
+     *
+     * @param requestKey  The key of the request, for example a customer number. It is not logged.
+     * @param currentFlow A mono that returns the result of the service call
+     *                    that you currently have.
+     * @param newFlow     A mono that returns the result of the new service call
+     *                    that you want to start using.
+     * @param clazz       The model that the current and new flow should be mapped to for comparison.
+     * @param <C>         The type of collection to compare, for example a List
+     * @return This will always return the mono of currentFlow.
+     */
+    public <C extends Collection<T>> Mono<C> compareCollections(final Object requestKey, final Mono<? extends C> currentFlow, final Mono<? extends C> newFlow, final Class<T> clazz) {
+        return Mono.deferContextual(contextView ->
+                currentFlow.doOnNext(currentResponse -> {
+                    if (!shouldCallNewFlow(requestKey)) {
+                        return;
+                    }
+                    final var subscription = tryAcquireSubscription();
+                    if (subscription != null) {
+                        subscription.withSamplerFeedback(requestKey, currentResponse, timedNewFlow(withTimeout(newFlow)))
+                                .doOnNext(newResponse -> logDifferences(verified(subscription.cacheKey(), diff(() -> diffEngine.compareCollections(currentResponse, newResponse, clazz)))))
+                                .onErrorStop()
+                                .contextWrite(contextView)
+                                .subscribeOn(subscription.scheduler())
+                                .doFinally(subscription::release)
+                                .subscribe(null, this::logFailure);
+                    }
+                }));
+    }
+
+    /**
+     * Reactive streaming API for shadow flow. This will always return currentFlow, and based
+     * on the percentage also call the newFlow. Ex: if percentage is 40%, it will always
+     * call currentFlow, and newFlow will be called for 40% of the total requests.
+     * The elements of both streams are compared one by one, in order, and the differences will be logged using Slf4j.
+     * <p>
+     * The elements of currentFlow are passed to the caller untouched. To compare them, the shadow flow keeps at most
+     * a window of elements of currentFlow that newFlow has not caught up with yet, and requests the elements of
+     * newFlow with back-pressure. When newFlow falls more than a window behind, the comparison is cancelled instead
+     * of buffering more elements.
+     *
+     * @param currentFlow A flux that returns the results of the service call
+     *                    that you currently have.
+     * @param newFlow     A flux that returns the results of the new service call
+     *                    that you want to start using.
+     * @return This will always return the flux of currentFlow.
+     * @see ShadowFlowBuilder#withStreamWindow(int)
+     */
+    public Flux<T> compare(final Flux<T> currentFlow, final Flux<T> newFlow) {
+        return compare(null, currentFlow, newFlow);
+    }
+
+    /**
+     * Reactive streaming API for shadow flow. This will always return currentFlow, and based
+     * on the percentage also call the newFlow. The elements of both streams are compared one by one,
+     * in order, and the differences will be logged using Slf4j.
+     * <p>
+     * Unlike {@link #compare(Flux, Flux) compare}, the newFlow is called based on the hash of the
+     * request key instead of at random. The same key is therefore consistently compared, or not,
+     * which allows the results to be correlated per key. Use a key with a stable hash code, like a
+     * {@link String} or a {@link Long}; a null key is sampled at random.
+     *
+     * @param requestKey  The key of the request, for example a customer number. It is not logged.
+     * @param currentFlow A flux that returns the results of the service call
+     *                    that you currently have.
+     * @param newFlow     A flux that returns the results of the new service call
+     *                    that you want to start using.
+     * @return This will always return the flux of currentFlow.
+     */
+    public Flux<T> compare(final Object requestKey, final Flux<T> currentFlow, final Flux<T> newFlow) {
+        return Flux.deferContextual(contextView -> {
+            if (!shouldCallNewFlow(requestKey)) {
+                return currentFlow;
+            }
+            final var subscription = tryAcquireSubscription();
+            if (subscription == null) {
+                return currentFlow;
+            }
+
+            // The queue holds exactly the window, the other operators only hold the element being compared
+            final Sinks.Many<T> currentElements = Sinks.many().unicast().onBackpressureBuffer(new ArrayBlockingQueue<>(streamWindowSize));
+            final var streamDifferences = new StreamDifferences();
+            final var cancelled = new AtomicBoolean();
+            final var comparison = paddedWithEmpty(currentElements.asFlux())
+                    .zipWith(paddedWithEmpty(timedNewFlow(withTimeout(newFlow))), 1)
+                    .takeWhile(elements -> elements.getT1().isPresent() || elements.getT2().isPresent())
+                    .publishOn(streamScheduler, 1)
+                    .index(this::compareStreamElements)
+                    .doOnNext(streamDifferences::add)
+                    .onErrorStop()
+                    .transform(subscription::withSamplerFeedback)
+                    .contextWrite(contextView)
+                    .subscribeOn(subscription.scheduler())
+                    .doFinally(signal -> {
+                        streamDifferences.flush();
+                        subscription.release(signal);
+                    })
+                    .subscribe(null, this::logFailure);
+
+            return currentFlow
+                    .doOnNext(element -> {
+                        // A comparison that ended, for example because the circuit breaker skipped it, is not fed
+                        if (!cancelled.get() && !comparison.isDisposed() && isOverflow(currentElements.tryEmitNext(element)) && cancelled.compareAndSet(false, true)) {
+                            logger.warn("{} The new flow fell more than {} elements behind, the comparison is cancelled",
+                                    instanceNameLogPrefix, streamWindowSize);
+                            comparison.dispose();
+                        }
+                    })
+                    .doOnComplete(currentElements::tryEmitComplete)
+                    .doOnError(ex -> comparison.dispose())
+                    .doOnCancel(comparison::dispose);
+        });
+    }
+
+    /**
+     * @return Whether the window is full, also when the comparison did not subscribe to the current elements yet
+     */
+    private static boolean isOverflow(final Sinks.EmitResult result) {
+        return result == Sinks.EmitResult.FAIL_OVERFLOW || result == Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER;
+    }
+
+    private <R> Mono<R> timedNewFlow(final Mono<R> newFlow) {
+        return Mono.defer(() -> {
+            final var start = System.nanoTime();
+            return newFlow.doOnSuccess(ignored -> recordStage(Stage.NEW_FLOW_CALL, start, true))
+                    .doOnError(ignored -> recordStage(Stage.NEW_FLOW_CALL, start, false));
+        });
+    }
+
+    private <R> Flux<R> timedNewFlow(final Flux<R> newFlow) {
+        return Flux.defer(() -> {
+            final var start = System.nanoTime();
+            return newFlow.doOnComplete(() -> recordStage(Stage.NEW_FLOW_CALL, start, true))
+                    .doOnError(ignored -> recordStage(Stage.NEW_FLOW_CALL, start, false));
+        });
+    }
+
+    private <R> R callWithTimeout(final Supplier<R> newFlow) {
+        if (timeout == null) {
+            return newFlow.get();
+        }
+
+        final var callTimeout = ShadowCallTimeout.start(timeout);
+        try {
+            return newFlow.get();
+        } finally {
+            if (callTimeout.finish()) {
+                // Also replaces the exception the new flow may have thrown because it was interrupted
+                throw new ShadowFlowTimeoutException(timeout);
+            }
+        }
+    }
+
+    private <R> Mono<R> withTimeout(final Mono<R> newFlow) {
+        return timeout == null ? newFlow : newFlow.timeout(timeout, Mono.error(() -> new ShadowFlowTimeoutException(timeout)));
+    }
+
+    private <R> Flux<R> withTimeout(final Flux<R> newFlow) {
+        return timeout == null ? newFlow : newFlow.timeout(timeout, Flux.error(() -> new ShadowFlowTimeoutException(timeout)));
+    }
+
+    private <R> R timed(final Stage stage, final Supplier<R> supplier) {
+        final var start = System.nanoTime();
+        var success = false;
+        try {
+            final var result = supplier.get();
+            success = true;
+            return result;
+        } finally {
+            recordStage(stage, start, success);
+        }
+    }
+
+    private List<Difference> diff(final Supplier<List<Difference>> diffSupplier) {
+        final var differences = timed(Stage.DIFF, diffSupplier);
+        metrics.recordComparison(instanceName, !differences.isEmpty());
+        return differences;
+    }
+
+    private void recordStage(final Stage stage, final long start, final boolean success) {
+        metrics.recordStage(instanceName, stage, System.nanoTime() - start, success);
+        if (stage == Stage.NEW_FLOW_CALL && circuitBreaker != null) {
+            circuitBreaker.record(success, start);
+        }
+    }
+
+    /**
+     * Called on the shadow executor, since digesting a large result takes as long as comparing it.
+     *
+     * @return The request key, or otherwise a digest of the result of the current flow or of its snapshot, so the
+     * cache does not retain the result. Null when there is no cache, or when the result could not be read.
+     */
+    private Object cacheKey(final Object requestKey, final Object currentResponse) {
+        if (diffCache == null) {
+            return null;
+        }
+        if (requestKey != null) {
+            return requestKey;
+        }
+        try {
+            return new DiffResultCache.ResultDigest(currentResponse instanceof ResultSnapshot snapshot
+                    ? snapshot.digest()
+                    : MerkleDiffEngine.digest(currentResponse, projection));
+        } catch (final Exception e) {
+            logger.warn(FAILED_TO_COMPARE, instanceNameLogPrefix, e);
+            return null;
+        }
+    }
+
+    private boolean isRecentlyVerified(final Object cacheKey) {
+        return cacheKey != null && diffCache.isRecentlyVerified(cacheKey);
+    }
+
+    /**
+     * @return The admitted shadow subscription, or null when the maximum number of concurrent subscriptions is reached
+     */
+    private ShadowSubscription tryAcquireSubscription() {
+        if (subscriptionPermits == null || subscriptionPermits.tryAcquire()) {
+            return new ShadowSubscription();
+        }
+        droppedSubscriptions.increment();
+        sampler.onShadowCallDropped();
+        return null;
+    }
+
+    /**
+     * Only a request of which the results were equal is remembered, a request with differences is compared again.
+     */
+    private List<Difference> verified(final Object cacheKey, final List<Difference> differences) {
+        if (cacheKey != null && differences.isEmpty()) {
+            diffCache.markVerified(cacheKey);
+        }
+        return differences;
+    }
+
+    /**
+     * Once the stream completes, it keeps emitting empty elements on request, so every surplus element of the longer
+     * stream is paired with an empty one. The comparison ends when both streams emit an empty element.
+     */
+    private static <E> Flux<Optional<E>> paddedWithEmpty(final Flux<E> flux) {
+        return flux.map(Optional::of).concatWith(Mono.just(Optional.<E>empty()).repeat());
+    }
+
+    private List<Difference> compareStreamElements(final long position, final Tuple2<Optional<T>, Optional<T>> elements) {
+        final var current = elements.getT1();
+        final var next = elements.getT2();
+        if (current.isEmpty()) {
+            return List.of(new ValueDifference("added[" + position + "]", null, next.get()));
+        } else if (next.isEmpty()) {
+            return List.of(new ValueDifference("removed[" + position + "]", current.get(), null));
+        }
+
+        return diff(() -> diffEngine.compare(current.get(), next.get())).stream()
+                .<Difference>map(difference -> new ElementDifference(position, difference))
+                .toList();
+    }
+
+    private void doShadowFlow(final Object requestKey, final Object currentResponse, final Supplier<List<Difference>> diffSupplier) {
+        final var contextMap = MDC.getCopyOfContextMap();
+        try {
+            if (!tryExecute(() -> logDifferenceWithMdc(requestKey, currentResponse, diffSupplier, contextMap))) {
+                sampler.onShadowCallDropped();
+            }
+        } catch (final Exception e) {
+            sampler.onShadowCallDropped();
+            logger.warn(FAILED_TO_COMPARE, instanceNameLogPrefix, e);
+        }
+    }
+
+    private void logDifferenceWithMdc(final Object requestKey, final Object currentResponse,
+                                      final Supplier<List<Difference>> diffSupplier, final Map<String, String> contextMap) {
+        final var cacheKey = cacheKey(requestKey, currentResponse);
+        if (isRecentlyVerified(cacheKey) || !tryAcquireCircuitBreaker()) {
+            sampler.onShadowCallSkipped();
+            return;
+        }
+        if (contextMap != null) MDC.setContextMap(contextMap);
+        final var start = System.nanoTime();
+        try {
+            logDifferences(verified(cacheKey, diffSupplier.get()));
+        } catch (final Exception e) {
+            logFailure(e);
+        } finally {
+            sampler.onShadowCallCompleted(System.nanoTime() - start);
+            MDC.clear();
+        }
+    }
+
+    private void logFailure(final Throwable e) {
+        if (e instanceof ShadowFlowTimeoutException) {
+            timedOutComparisons.increment();
+            metrics.recordTimeout(instanceName);
+            logger.warn(TIMED_OUT, instanceNameLogPrefix, timeout);
+        } else {
+            logger.warn(FAILED_TO_COMPARE, instanceNameLogPrefix, e);
+        }
+    }
+
+    private void logDifferences(final List<Difference> differences) {
+        if (!differences.isEmpty()) {
+            differenceReporter.report(new DifferenceReport(instanceName, differences, MDC.getCopyOfContextMap()));
+        }
+    }
+
+    /**
+     * Only called once the current flow produced its result, or once a stream is subscribed to, so the sampler hears
+     * back from every sampled request. A request of which the current flow fails or is empty is not sampled at all.
+     */
+    private boolean shouldCallNewFlow(final Object requestKey) {
+        final var callNewFlow = isPermitted(requestKey == null ? sampler.shouldSample() : sampler.shouldSample(requestKey));
+        record(callNewFlow);
+        return callNewFlow;
+    }
+
+    private boolean isPermitted(final boolean sampled) {
+        if (!sampled || circuitBreaker == null || circuitBreaker.allowsCalls()) {
+            return sampled;
+        }
+        sampler.onShadowCallSkipped();
+        return false;
+    }
+
+    /**
+     * Called right before the new flow is called, so only a call that is actually made probes a half-open circuit
+     * breaker.
+     */
+    private boolean tryAcquireCircuitBreaker() {
+        return circuitBreaker == null || circuitBreaker.tryAcquire();
+    }
+
+    private void record(final boolean callNewFlow) {
+        samplingSummary.record(callNewFlow);
+        metrics.recordSampling(instanceName, callNewFlow);
+    }
+
+    /**
+     * Collects the differences of the elements of a stream, so they are logged per window instead of per element.
+     * The differences collected when the comparison ends or is cancelled are logged by {@link #flush()}.
+     */
+    private final class StreamDifferences {
+        private List<Difference> differences = new ArrayList<>();
+        private int elements;
+        private boolean flushed;
+
+        void add(final List<Difference> elementDifferences) {
+            if (elementDifferences.isEmpty()) {
+                return;
+            }
+            final List<Difference> window;
+            synchronized (this) {
+                differences.addAll(elementDifferences);
+                if (++elements < streamWindowSize && !flushed) { // An element compared while cancelling is logged right away
+                    return;
+                }
+                window = take();
+            }
+            logDifferences(window);
+        }
+
+        void flush() {
+            final List<Difference> window;
+            synchronized (this) {
+                flushed = true;
+                window = take();
+            }
+            logDifferences(window);
+        }
+
+        private List<Difference> take() {
+            final var window = differences;
+            differences = new ArrayList<>();
+            elements = 0;
+            return window;
+        }
+    }
+
+    /**
+     * A reactive shadow subscription, which holds one of the permits of the maximum number of concurrent
+     * subscriptions. The permit is released once, either when the subscription terminates or when the executor drops
+     * the task that subscribes it, since such a subscription never terminates on its own. A dropped subscription can
+     * still be cancelled later, for example when the current flow completes.
+     * <p>
+     * The sampler is told once how the shadow call ended: completed, dropped, or skipped when the subscription was
+     * cancelled before it called the new flow.
+     */
+    private final class ShadowSubscription {
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final AtomicBoolean reported = new AtomicBoolean();
+        private volatile boolean started;
+        private Object cacheKey;
+
+        Scheduler scheduler() {
+            if (subscriptionPermits == null || !dropsTasks(executor)) {
+                return scheduler;
+            }
+            return Schedulers.fromExecutor(task -> {
+                if (!tryExecute(task) && releasePermit() && reported.compareAndSet(false, true)) {
+                    sampler.onShadowCallDropped();
+                }
+            });
+        }
+
+        /**
+         * Also skips the shadow call of a request that was recently verified. That is looked up when the shadow call
+         * is subscribed, so the digest of the result is computed on the shadow executor.
+         */
+        <R> Mono<R> withSamplerFeedback(final Object requestKey, final Object currentResponse, final Mono<R> shadowCall) {
+            return Mono.defer(() -> {
+                cacheKey = cacheKey(requestKey, currentResponse);
+                if (!tryStart(isRecentlyVerified(cacheKey))) {
+                    return Mono.empty();
+                }
+                final var start = System.nanoTime();
+                return shadowCall.doFinally(signal -> completed(start));
+            });
+        }
+
+        <R> Flux<R> withSamplerFeedback(final Flux<R> shadowCall) {
+            return Flux.defer(() -> {
+                if (!tryStart(false)) {
+                    return Flux.empty();
+                }
+                final var start = System.nanoTime();
+                return shadowCall.doFinally(signal -> completed(start));
+            });
+        }
+
+        Object cacheKey() {
+            return cacheKey;
+        }
+
+        void release(final SignalType ignored) {
+            releasePermit();
+            if (!started) {
+                skipped();
+            }
+        }
+
+        /**
+         * @return Whether the new flow is called, the call of a recently verified request or a call that is not
+         * permitted by the circuit breaker is skipped
+         */
+        private boolean tryStart(final boolean recentlyVerified) {
+            started = true;
+            if (!recentlyVerified && tryAcquireCircuitBreaker()) {
+                return true;
+            }
+            skipped();
+            return false;
+        }
+
+        private void skipped() {
+            if (reported.compareAndSet(false, true)) {
+                sampler.onShadowCallSkipped();
+            }
+        }
+
+        private void completed(final long startNanos) {
+            if (reported.compareAndSet(false, true)) {
+                sampler.onShadowCallCompleted(System.nanoTime() - startNanos);
+            }
+        }
+
+        private boolean releasePermit() {
+            if (subscriptionPermits != null && released.compareAndSet(false, true)) {
+                subscriptionPermits.release();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param <T> The model that the current and new flow should be mapped to for comparison.
+     */
+    public static class ShadowFlowBuilder<T> {
+
+        private final Logger logger = LoggerFactory.getLogger(ShadowFlowBuilder.class);
+        private static final IllegalStateException ENCRYPTION_SERVICE_ALREADY_CONFIGURED = new IllegalStateException("An encryption service has already been configured");
+
+        private final double percentage;
+
+        private Executor executor;
+
+        private EncryptionService encryptionService;
+
+        private String instanceName;
+
+        private DiffEngine diffEngine;
+
+        private Consumer<JaversBuilder> javersConfiguration;
+
+        private Class<T> domainType;
+
+        private List<String> includedPaths = List.of();
+
+        private List<String> excludedPaths = List.of();
+
+        private PropertyProjection projection;
+
+        private final Map<String, Tolerance<?>> tolerancesByPath = new HashMap<>();
+
+        private final Map<Class<?>, Tolerance<?>> tolerancesByType = new LinkedHashMap<>();
+
+        private boolean equalityFastPath;
+
+        private boolean currentResultSnapshots;
+
+        private ToLongFunction<? super T> structuralHash;
+
+        private Function<? super T, ?> collectionKeyExtractor;
+
+        private DifferenceReporter differenceReporter;
+
+        private int asyncBufferCapacity;
+
+        private int asyncBatchSize;
+
+        private Duration aggregationWindow;
+
+        private int samplesPerFingerprint;
+
+        private int streamWindowSize = DEFAULT_STREAM_WINDOW_SIZE;
+
+        private Sampler sampler;
+
+        private ShadowFlowMetrics metrics = ShadowFlowMetrics.NOOP;
+
+        private Duration samplingSummaryInterval = DEFAULT_SAMPLING_SUMMARY_INTERVAL;
+
+        private Duration timeout;
+
+        private int maxConcurrentSubscriptions;
+
+        private int circuitBreakerFailureThreshold;
+
+        private Duration circuitBreakerCoolDown;
+
+        private int diffCacheSize;
+
+        private Duration diffCacheTimeToLive;
+
+        /**
+         * Creates a new instance of a {@link ShadowFlowBuilder} which is used to configure and create a {@link ShadowFlow} instance.
+         *
+         * @param percentage Percentage of how many calls should be compared in the shadow flow.
+         *                   This should be in the range of 0-100.
+         *                   Zero effectively disables the shadow flow (but the main flow will always run).
+         */
+        public ShadowFlowBuilder(final int percentage) {
+            this.percentage = validatePercentage(percentage);
+        }
+
+        /**
+         * Creates a new instance of a {@link ShadowFlowBuilder} which is used to configure and create a {@link ShadowFlow} instance.
+         * Use this constructor for high-traffic applications, where even 1% of the calls is too much.
+         *
+         * @param percentage Percentage of how many calls should be compared in the shadow flow, for example 0.05 for one in 2000 calls.
+         *                   This should be in the range of 0-100.
+         *                   Zero effectively disables the shadow flow (but the main flow will always run).
+         */
+        public ShadowFlowBuilder(final double percentage) {
+            this.percentage = validatePercentage(percentage);
+        }
+
+        /**
+         * This allows you to configure your own {@link Executor}. This could also be used to configure a Virtual Thread Executor.
+         *
+         * @param executor The {@link Executor} which will be used to ensure that the second service call and the
+         *                        comparing mechanism is executed on a different thread. This ensures that the main flow
+         *                        will not be impacted by the new flow.
+         *                        By default, {@link Executors#newCachedThreadPool()} will be used.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withExecutor(final Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * This configures a {@link BoundedShadowExecutor}, which caps the number of shadow comparisons that run
+         * and wait at the same time. When it is saturated, new comparisons are dropped and counted,
+         * the current flow is never blocked or rejected.
+         * <p>
+         * Mutually exclusive with {@link #withExecutor(Executor executor) withExecutor}, the last one configured wins.
+         *
+         * @param maxConcurrency The maximum number of shadow comparisons running at the same time.
+         * @param queueCapacity  The maximum number of shadow comparisons waiting for a thread.
+         * @return This builder
+         * @see ShadowFlow#getDroppedComparisons()
+         */
+        public ShadowFlowBuilder<T> withBoundedExecutor(final int maxConcurrency, final int queueCapacity) {
+            this.executor = new BoundedShadowExecutor(maxConcurrency, queueCapacity);
+            return this;
+        }
+
+        /**
+         * This configures a {@link VirtualThreadShadowExecutor}, which runs every shadow comparison on a new virtual
+         * thread and caps the number of comparisons running at the same time. When the cap is reached, new comparisons
+         * are dropped and counted, the current flow is never blocked or rejected. This suits many concurrent shadow calls
+         * to a slow new flow, since a waiting virtual thread costs kilobytes instead of the megabyte of a platform thread.
+         * Virtual threads require Java 21, on older versions platform threads are used with the same cap.
+         * <p>
+         * Mutually exclusive with {@link #withExecutor(Executor executor) withExecutor} and
+         * {@link #withBoundedExecutor(int maxConcurrency, int queueCapacity) withBoundedExecutor}, the last one configured wins.
+         *
+         * @param maxConcurrency The maximum number of shadow comparisons running at the same time.
+         * @return This builder
+         * @see ShadowFlow#getDroppedComparisons()
+         */
+        public ShadowFlowBuilder<T> withVirtualThreads(final int maxConcurrency) {
+            this.executor = new VirtualThreadShadowExecutor(maxConcurrency);
+            return this;
+        }
+
+        /**
+         * This configures the shadow flow to log the values of the differences found between the two flows.
+         * Since the data is potentially sensitive, encryption is required.
+         * This method will use a cipher with {@code RSA/ECB/OAEPWITHSHA-256ANDMGF1PADDING}.
+         * <p>
+         * Mutually exclusive with {@link #withCipher(Cipher cipher) withCipher} and
+         * {@link #withEncryptionService(EncryptionService encryptionService) withEncryptionService}.
+         *
+         * @param publicKey The public RSA key used for encryption, should be at least 2048 bits.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withEncryption(final PublicKey publicKey) {
+            requireNull();
+            withEncryptionService(new PublicKeyEncryptionService(publicKey));
+            return this;
+        }
+
+        /**
+         * This configures the shadow flow to log the values of the differences found between the two flows.
+         * Since the data is potentially sensitive, encryption is required.
+         * Unlike {@link #withEncryption(PublicKey publicKey) withEncryption}, the values are encrypted with an
+         * {@code AES/GCM} data key which is wrapped with the public key, so differences of any size can be encrypted
+         * at the speed of a symmetric cipher.
+         * <p>
+         * Mutually exclusive with {@link #withEncryption(PublicKey publicKey) withEncryption},
+         * {@link #withCipher(Cipher cipher) withCipher} and
+         * {@link #withEncryptionService(EncryptionService encryptionService) withEncryptionService}.
+         *
+         * @param publicKey The public RSA key used to wrap the data keys, should be at least 2048 bits.
+         * @return This builder
+         * @see HybridEncryptionService
+         */
+        public ShadowFlowBuilder<T> withHybridEncryption(final PublicKey publicKey) {
+            requireNull();
+            withEncryptionService(new HybridEncryptionService(publicKey));
+            return this;
+        }
+
+        /**
+         * This configures the shadow flow to log the values of the differences found between the two flows.
+         * Since the data is potentially sensitive, encryption is required. Provide your cryptographic cipher
+         * for this encryption.
+         * <p>
+         * Mutually exclusive with {@link #withEncryption(PublicKey publicKey) withEncryption} and
+         * {@link #withEncryptionService(EncryptionService encryptionService) withEncryptionService}.
+         *
+         * @param cipher The cipher that will do the encryption.
+         * @return This builder
+         * @deprecated All encryptions are serialized on the single cipher. Use
+         * {@link #withCipherFactory(CipherFactory cipherFactory) withCipherFactory} instead, which pools the ciphers.
+         */
+        @Deprecated(since = "1.11.2")
+        public ShadowFlowBuilder<T> withCipher(final Cipher cipher) {
+            requireNull();
+            withEncryptionService(new DefaultEncryptionService(cipher));
+            return this;
+        }
+
+        /**
+         * This configures the shadow flow to log the values of the differences found between the two flows.
+         * Since the data is potentially sensitive, encryption is required. Unlike {@link #withCipher(Cipher cipher) withCipher},
+         * the ciphers are created by the given factory and pooled, so concurrent shadow flows do not contend on a single cipher.
+         * <p>
+         * Mutually exclusive with {@link #withEncryption(PublicKey publicKey) withEncryption},
+         * {@link #withCipher(Cipher cipher) withCipher} and
+         * {@link #withEncryptionService(EncryptionService encryptionService) withEncryptionService}.
+         *
+         * @param cipherFactory The factory that creates initialized ciphers for the encryption.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withCipherFactory(final CipherFactory cipherFactory) {
+            requireNull();
+            withEncryptionService(new DefaultEncryptionService(cipherFactory));
+            return this;
+        }
+
+        /**
+         * This configures the shadow flow to log the values of the differences found between the two flows using
+         * the supplied {@link EncryptionService} implementation. Since the data is potentially sensitive,
+         * encryption is required.
+         * <p>
+         * Mutually exclusive with {@link #withCipher(Cipher cipher) withCipher} and
+         * {@link #withEncryption(PublicKey publicKey) withEncryption}.
+         *
+         * @param encryptionService {@link EncryptionService} to be used for encryption
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withEncryptionService(final EncryptionService encryptionService) {
+            requireNull();
+            try {
+                this.encryptionService = encryptionService;
+            } catch (final Exception e) {
+                logger.error("Invalid encryption setup. Encryption and logging of values is disabled", e);
+            }
+            return this;
+        }
+
+        private void requireNull() {
+            if (encryptionService != null) {
+                throw ENCRYPTION_SERVICE_ALREADY_CONFIGURED;
+            }
+        }
+
+        /**
+         * If the shadow tool is used for two separate use-cases in one application, this allows you to distinguish them.
+         *
+         * @param instanceName The name of the instance which will end up in the logs.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withInstanceName(final String instanceName) {
+            this.instanceName = instanceName;
+            return this;
+        }
+
+        /**
+         * This replaces the default {@link JaversDiffEngine} with another way of comparing the results of both flows.
+         * For example, the {@link FastDiffEngine} avoids building an object graph when both results are equal,
+         * which is the common case, and the {@link MerkleDiffEngine} compares the properties of classes that do not
+         * implement {@code equals()}, or only compare an id in it, without building an object graph.
+         *
+         * @param diffEngine The {@link DiffEngine} that compares the results of both flows.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withDiffEngine(final DiffEngine diffEngine) {
+            this.diffEngine = diffEngine;
+            return this;
+        }
+
+        /**
+         * By default, all shadow flows share a single {@link org.javers.core.Javers Javers} instance, which compares
+         * lists with the Levenshtein distance and caches the mapping of every type it has seen. This gives the shadow
+         * flow its own Javers instance instead, starting from the same configuration. For example:
+         * <pre>{@code
+         * builder.withJavers(javers -> javers
+         *         .withListCompareAlgorithm(ListCompareAlgorithm.AS_SET)
+         *         .registerValueObject(new ValueObjectDefinition(Dummy.class, List.of("lastModified"))));
+         * }</pre>
+         * Has no effect when {@link #withDiffEngine(DiffEngine diffEngine) withDiffEngine} is configured.
+         *
+         * @param javersConfiguration Changes the configuration of the Javers instance, for example the algorithm to
+         *                            compare lists, the properties to ignore and the mapping of value objects.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withJavers(final Consumer<JaversBuilder> javersConfiguration) {
+            this.javersConfiguration = javersConfiguration;
+            return this;
+        }
+
+        /**
+         * This prepares the comparison of the given type when the shadow flow is built, for example the type mapping
+         * of Javers, so the first sampled requests do not pay for introspecting it.
+         *
+         * @param domainType The model that the current and new flow are mapped to, or the type of the elements when
+         *                   collections are compared.
+         * @return This builder
+         * @see DiffEngine#warmUp(Class)
+         */
+        public ShadowFlowBuilder<T> withDomainType(final Class<T> domainType) {
+            this.domainType = domainType;
+            return this;
+        }
+
+        /**
+         * This limits the comparison to the given properties of the results, and the properties leading to them.
+         * A path is a dot-separated list of property names, like {@code address.street}, which also includes all
+         * properties below it. A segment can be {@code *} to match any property, and collection elements are left out
+         * of the path, so {@code accounts.balance} matches the balance of every account. The paths are relative to
+         * the elements when collections are compared.
+         * <p>
+         * The {@link FastDiffEngine} and {@link MerkleDiffEngine} never read the properties that are left out. Javers
+         * only skips them when {@link #withDomainType(Class domainType) withDomainType} is configured, for the classes
+         * it can find from the declared types of the fields, except for entities. Otherwise, Javers and other engines
+         * still compare them, so leaving them out does not make the comparison faster, their differences are only not
+         * reported.
+         *
+         * @param includedPaths The paths of the properties to compare.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withIncludedPaths(final String... includedPaths) {
+            this.includedPaths = List.of(includedPaths);
+            this.projection = new PropertyProjection(this.includedPaths, excludedPaths);
+            return this;
+        }
+
+        /**
+         * This leaves the given properties of the results out of the comparison, for example metadata or timestamps
+         * that differ by design. The paths are written like in
+         * {@link #withIncludedPaths(String... includedPaths) withIncludedPaths}, and win over the included paths.
+         * Without {@link #withDomainType(Class domainType) withDomainType}, Javers still compares the excluded
+         * properties, so excluding them does not speed it up.
+         *
+         * @param excludedPaths The paths of the properties not to compare.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withExcludedPaths(final String... excludedPaths) {
+            this.excludedPaths = List.of(excludedPaths);
+            this.projection = new PropertyProjection(includedPaths, this.excludedPaths);
+            return this;
+        }
+
+        /**
+         * This tolerates small differences between the values of a property, for example
+         * {@code withTolerance("balance", Tolerance.numeric(new BigDecimal("0.01")))}. Tolerated differences are
+         * discarded before they are rendered or encrypted. The path is written like in
+         * {@link #withIncludedPaths(String... includedPaths) withIncludedPaths}, without wildcards, and wins over a
+         * tolerance for the type of the values.
+         *
+         * @param path      The path of the property.
+         * @param tolerance The {@link Tolerance} for the values of the property. The tolerances of the factories in
+         *                  {@link Tolerance} do not apply to values of another type, other tolerances are asked about
+         *                  values of any type, use {@link #withTolerance(String, Class, Tolerance)} for those.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withTolerance(final String path, final Tolerance<?> tolerance) {
+            final var normalizedPath = PropertyProjection.normalize(path);
+            if (normalizedPath.isEmpty()) {
+                throw new IllegalArgumentException("The path must not be empty. Got " + path);
+            }
+            tolerancesByPath.put(normalizedPath, tolerance);
+            return this;
+        }
+
+        /**
+         * This tolerates small differences between the values of a property, like
+         * {@link #withTolerance(String, Tolerance)}, but only when both values are an instance of the given type.
+         *
+         * @param path      The path of the property.
+         * @param type      The type of the values, both values must be an instance of it.
+         * @param tolerance The {@link Tolerance} for the values of the property.
+         * @param <V>       The type of the values
+         * @return This builder
+         */
+        public <V> ShadowFlowBuilder<T> withTolerance(final String path, final Class<V> type, final Tolerance<? super V> tolerance) {
+            return withTolerance(path, new TolerantDiffEngine.TypedTolerance<>(type, tolerance));
+        }
+
+        /**
+         * This tolerates small differences between values of the given type in any property, for example
+         * {@code withTolerance(Instant.class, Tolerance.truncatedTo(ChronoUnit.MILLIS))}. When the values match
+         * several types, the tolerance that was configured first applies.
+         *
+         * @param type      The type of the values, both values must be an instance of it.
+         * @param tolerance The {@link Tolerance} for the values.
+         * @param <V>       The type of the values
+         * @return This builder
+         */
+        public <V> ShadowFlowBuilder<T> withTolerance(final Class<V> type, final Tolerance<? super V> tolerance) {
+            tolerancesByType.put(type, tolerance);
+            return this;
+        }
+
+        /**
+         * This adds a fast path to the comparison, which uses {@link Object#equals(Object)} to decide whether both
+         * results are equal. Only when they are not, the configured {@link DiffEngine} is invoked to find the
+         * differences. This is useful when your model implements {@code equals}, for example when it is a record.
+         *
+         * @return This builder
+         * @see ShadowFlow#getShortCircuitedComparisons()
+         */
+        public ShadowFlowBuilder<T> withEqualityFastPath() {
+            return withEqualityFastPath(null);
+        }
+
+        /**
+         * This adds a fast path to the comparison, which uses the given structural hash to decide whether both
+         * results are equal. Only when the hashes differ, the configured {@link DiffEngine} is invoked to find the
+         * differences. Be aware that a hash collision hides the differences of that comparison.
+         *
+         * @param structuralHash Computes a hash over the properties of the model that should be compared.
+         * @return This builder
+         * @see ShadowFlow#getShortCircuitedComparisons()
+         */
+        public ShadowFlowBuilder<T> withEqualityFastPath(final ToLongFunction<? super T> structuralHash) {
+            this.equalityFastPath = true;
+            this.structuralHash = structuralHash;
+            return this;
+        }
+
+        /**
+         * This replaces the result of the current flow by a compact snapshot before the new flow is called, so the
+         * result can be garbage collected as soon as the caller is done with it, instead of being retained until the
+         * new flow responds. This lowers the memory pressure of large results and slow new flows.
+         * <p>
+         * The snapshot keeps the values of the compared properties and leaves out the objects that contain them.
+         * Strings and byte arrays longer than 1024 are kept as a hash of their content, so their differences are
+         * reported with the length and hash of the current value. Sets, maps and arrays of objects are kept as a hash
+         * of the values in those objects, so a difference in one of their elements is reported as a difference of the
+         * whole set, map or array, without the element or property that differs. The snapshot is compared like the
+         * {@link FastDiffEngine} does, with the included and excluded paths and the tolerances.
+         * <p>
+         * Since the snapshot brings its own comparison, no diff engine needs to be configured. A diff engine other than
+         * the {@link FastDiffEngine} or a Javers configuration would be ignored, so those are rejected by
+         * {@link #build()}, just like combining snapshots with {@link #withKeyedCollectionComparison(Function)} or
+         * {@link #withEqualityFastPath()}.
+         * <p>
+         * This applies to {@link ShadowFlow#compare(Supplier, Supplier) compare} and
+         * {@link ShadowFlow#compareCollections(Supplier, Supplier, Class) compareCollections}. The snapshot is taken on
+         * the calling thread, for the sampled calls only.
+         *
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withCurrentResultSnapshots() {
+            this.currentResultSnapshots = true;
+            return this;
+        }
+
+        /**
+         * This configures {@link ShadowFlow#compareCollections(Supplier, Supplier, Class) compareCollections} to match
+         * the elements of both collections on an identity key, instead of on their position. The comparison then takes
+         * linear time and memory, which makes it suitable for large collections, and ignores the order of the elements.
+         * Matched elements are compared with the configured {@link DiffEngine}.
+         *
+         * @param keyExtractor Extracts the identity key of an element, for example an account number.
+         * @return This builder
+         * @see KeyedCollectionDiffEngine
+         */
+        public ShadowFlowBuilder<T> withKeyedCollectionComparison(final Function<? super T, ?> keyExtractor) {
+            this.collectionKeyExtractor = keyExtractor;
+            return this;
+        }
+
+        /**
+         * This replaces the default {@link LoggingDifferenceReporter} with your own way of reporting the differences
+         * found between the two flows. The configured encryption is only used by the default reporter.
+         *
+         * @param differenceReporter The {@link DifferenceReporter} to report the differences to.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withDifferenceReporter(final DifferenceReporter differenceReporter) {
+            this.differenceReporter = differenceReporter;
+            return this;
+        }
+
+        /**
+         * This moves the reporting of differences off the comparison threads. Differences are handed to a bounded,
+         * lock-free buffer and reported in batches by a single background thread. With a {@link HybridEncryptionService}
+         * the values of a batch are encrypted at once, other encryption services encrypt the values of every
+         * comparison on their own. When the buffer is full, differences are dropped.
+         * <p>
+         * The background thread runs until {@link ShadowFlow#close()} is called, which reports the differences that
+         * are still in the buffer.
+         *
+         * @param bufferCapacity The maximum number of comparisons waiting to be reported, at most 2<sup>30</sup>.
+         * @param batchSize      The maximum number of comparisons reported at once.
+         * @return This builder
+         * @see AsyncDifferenceReporter
+         */
+        public ShadowFlowBuilder<T> withAsyncReporting(final int bufferCapacity, final int batchSize) {
+            if (bufferCapacity < 1 || batchSize < 1) {
+                throw new IllegalArgumentException("The buffer capacity and batch size must be at least 1");
+            }
+            if (bufferCapacity > MpscRingBuffer.MAX_CAPACITY) {
+                throw new IllegalArgumentException("The buffer capacity must be at most " + MpscRingBuffer.MAX_CAPACITY + ". Got " + bufferCapacity);
+            }
+            this.asyncBufferCapacity = bufferCapacity;
+            this.asyncBatchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * This replaces the log line per comparison with a periodic summary per distinct set of differences.
+         * Comparisons that differ in the same properties are counted, and only the values of the first few of them
+         * are encrypted and logged as samples. This is useful when a systematic difference is found in many
+         * comparisons, since the log volume and encryption costs no longer grow with the traffic.
+         * <p>
+         * Has no effect when {@link #withDifferenceReporter(DifferenceReporter differenceReporter) withDifferenceReporter}
+         * is configured.
+         *
+         * @param window                How often the summaries are logged.
+         * @param samplesPerFingerprint The maximum number of comparisons per summary of which the values are logged.
+         * @return This builder
+         * @see AggregatingDifferenceReporter
+         */
+        public ShadowFlowBuilder<T> withAggregatedReporting(final Duration window, final int samplesPerFingerprint) {
+            if (window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException("The window must be positive. Got " + window);
+            }
+            if (samplesPerFingerprint < 0) {
+                throw new IllegalArgumentException("The samples per fingerprint must not be negative. Got " + samplesPerFingerprint);
+            }
+            this.aggregationWindow = window;
+            this.samplesPerFingerprint = samplesPerFingerprint;
+            return this;
+        }
+
+        /**
+         * This configures how far the new flow may fall behind the current flow when comparing streams with
+         * {@link ShadowFlow#compare(Flux, Flux)}. The shadow flow never buffers more than this number of elements
+         * of the current flow, when the new flow falls further behind the comparison is cancelled.
+         * By default, the window is 256 elements.
+         *
+         * @param windowSize The maximum number of elements buffered for the comparison.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withStreamWindow(final int windowSize) {
+            if (windowSize < 1) {
+                throw new IllegalArgumentException("The stream window must be at least 1. Got " + windowSize);
+            }
+            this.streamWindowSize = windowSize;
+            return this;
+        }
+
+        /**
+         * This replaces the fixed percentage with an {@link AdaptiveSampler}, which adjusts the sampling rate at
+         * runtime to send the target number of shadow calls per second to the new flow. The rate is decreased when
+         * the shadow calls exceed the latency budget or the executor is saturated.
+         * The percentage of this builder is used as the maximum rate.
+         * <p>
+         * Mutually exclusive with {@link #withSampler(Sampler sampler) withSampler}, the last one configured wins.
+         *
+         * @param targetCallsPerSecond The number of shadow calls per second the new flow should receive.
+         * @param latencyBudget        The average duration of a shadow call above which the rate is decreased.
+         * @return This builder
+         * @see ShadowFlow#getSamplingRate()
+         */
+        public ShadowFlowBuilder<T> withAdaptiveSampling(final double targetCallsPerSecond, final Duration latencyBudget) {
+            this.sampler = new AdaptiveSampler(targetCallsPerSecond, latencyBudget, percentage / (double) HUNDRED);
+            return this;
+        }
+
+        /**
+         * This replaces the fixed percentage with your own way of deciding which requests are sent to the new flow.
+         *
+         * @param sampler The {@link Sampler} that decides which requests are sampled.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withSampler(final Sampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * This configures where the shadow flow records its metrics, like the number of sampled requests, the results
+         * of the comparisons and the duration of calling the new flow, comparing, encrypting and reporting.
+         * The metrics are recorded with the instance name, see {@link #withInstanceName(String instanceName) withInstanceName}.
+         *
+         * @param metrics The {@link ShadowFlowMetrics} to record the metrics to.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withMetrics(final ShadowFlowMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * This configures how often the shadow flow logs how many requests called the new flow.
+         * The requests are counted in between, so nothing is logged for a single request.
+         * By default, the summary is logged every minute.
+         *
+         * @param interval The time between two sampling summaries.
+         * @return This builder
+         */
+        public ShadowFlowBuilder<T> withSamplingSummaryInterval(final Duration interval) {
+            if (interval.isNegative() || interval.isZero()) {
+                throw new IllegalArgumentException("The sampling summary interval must be positive. Got " + interval);
+            }
+            this.samplingSummaryInterval = interval;
+            return this;
+        }
+
+        /**
+         * This configures how long the new flow may take to respond. When it takes longer, the shadow call is
+         * cancelled: the thread calling a {@link Supplier} is interrupted, and the subscription to a {@link Mono} is
+         * cancelled. For a {@link Flux}, the timeout applies to every element, so the stream is cancelled when the new
+         * flow does not emit an element within the timeout. Cancelled calls are not compared, and are counted instead.
+         * By default, the new flow may take as long as it needs.
+         *
+         * @param timeout The maximum time the new flow may take to respond.
+         * @return This builder
+         * @see ShadowFlow#getTimedOutComparisons()
+         */
+        public ShadowFlowBuilder<T> withTimeout(final Duration timeout) {
+            if (timeout.isNegative() || timeout.isZero()) {
+                throw new IllegalArgumentException("The timeout must be positive. Got " + timeout);
+            }
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * This caps the number of shadow comparisons of the reactive API that run at the same time. Every sampled
+         * call to {@link ShadowFlow#compare(Mono, Mono)}, {@link ShadowFlow#compareCollections(Mono, Mono, Class)} or
+         * {@link ShadowFlow#compare(Flux, Flux)} subscribes to the new flow, and holds on to that subscription until
+         * the comparison is done. When the cap is reached, the comparison is dropped and counted instead of queued,
+         * the current flow is never delayed. By default, the number of shadow subscriptions is not capped.
+         * <p>
+         * The comparisons of the blocking API are capped by the executor instead, see
+         * {@link #withBoundedExecutor(int maxConcurrency, int queueCapacity) withBoundedExecutor}.
+         *
+         * @param maxConcurrentSubscriptions The maximum number of reactive shadow comparisons running at the same time.
+         * @return This builder
+         * @see ShadowFlow#getDroppedComparisons()
+         */
+        public ShadowFlowBuilder<T> withMaxConcurrentSubscriptions(final int maxConcurrentSubscriptions) {
+            if (maxConcurrentSubscriptions < 1) {
+                throw new IllegalArgumentException("The maximum concurrent subscriptions must be at least 1. Got " + maxConcurrentSubscriptions);
+            }
+            this.maxConcurrentSubscriptions = maxConcurrentSubscriptions;
+            return this;
+        }
+
+        /**
+         * This configures a circuit breaker, which stops calling the new flow when it keeps failing. After the given
+         * number of consecutive failures or timeouts of the new flow, requests are not sampled for the cool-down.
+         * After the cool-down, a single request probes the new flow, and sampling resumes when it succeeds.
+         *
+         * @param failureThreshold The number of consecutive failures of the new flow that opens the circuit breaker.
+         * @param coolDown         How long the new flow is not called once the circuit breaker opened.
+         * @return This builder
+         * @see ShadowFlow#getCircuitBreakerState()
+         */
+        public ShadowFlowBuilder<T> withCircuitBreaker(final int failureThreshold, final Duration coolDown) {
+            if (failureThreshold < 1) {
+                throw new IllegalArgumentException("The failure threshold must be at least 1. Got " + failureThreshold);
+            }
+            if (coolDown.isNegative() || coolDown.isZero()) {
+                throw new IllegalArgumentException("The cool-down must be positive. Got " + coolDown);
+            }
+            this.circuitBreakerFailureThreshold = failureThreshold;
+            this.circuitBreakerCoolDown = coolDown;
+            return this;
+        }
+
+        /**
+         * This configures a cache of the requests that were verified recently. When the results of a sampled request
+         * were already found equal within the time to live, the new flow is not called and the results are not
+         * compared again. A request of which the results differ is compared again the next time it is sampled.
+         * This is useful when the same reference data is requested over and over.
+         * <p>
+         * Requests are identified by the request key when one is passed, for example to
+         * {@link ShadowFlow#compare(Object, Supplier, Supplier)}, and otherwise by a 64-bit hash of the values in the
+         * result of the current flow, so the cache does not retain the results. That hash is computed on the calling
+         * thread for every sampled request, and does not use {@code equals} of your classes, except for objects of
+         * which no properties can be read: those are hashed on their {@code hashCode}, so when they do not override
+         * {@code equals} and {@code hashCode} their results are never found in the cache. Pass a request key to avoid
+         * both. Streams compared with {@link ShadowFlow#compare(Flux, Flux)} are not cached.
+         *
+         * @param maximumSize The maximum number of requests remembered, the oldest one is evicted first.
+         * @param timeToLive  How long a compared request is not compared again.
+         * @return This builder
+         * @see ShadowFlow#getCachedComparisons()
+         */
+        public ShadowFlowBuilder<T> withDiffCache(final int maximumSize, final Duration timeToLive) {
+            if (maximumSize < 1) {
+                throw new IllegalArgumentException("The maximum size of the diff cache must be at least 1. Got " + maximumSize);
+            }
+            if (timeToLive.isNegative() || timeToLive.isZero()) {
+                throw new IllegalArgumentException("The time to live of the diff cache must be positive. Got " + timeToLive);
+            }
+            this.diffCacheSize = maximumSize;
+            this.diffCacheTimeToLive = timeToLive;
+            return this;
+        }
+
+        /**
+         * Build a new ShadowFlow instance.
+         *
+         * @return New instance of ShadowFlow
+         * @throws IllegalArgumentException when current result snapshots are combined with a configuration that
+         *                                  compares the results in another way
+         */
+        public ShadowFlow<T> build() {
+            if (currentResultSnapshots) {
+                validateSnapshotConfiguration();
+            }
+            return new ShadowFlow<>(this);
+        }
+
+        /**
+         * The snapshots are compared like the {@link FastDiffEngine} does, so a configuration that compares the
+         * results in another way is rejected, instead of being ignored.
+         */
+        private void validateSnapshotConfiguration() {
+            if (diffEngine != null ? diffEngine.getClass() != FastDiffEngine.class : javersConfiguration != null) {
+                throw new IllegalArgumentException("Current result snapshots are compared like the FastDiffEngine does, "
+                                                   + "the configured diff engine would be ignored. Got "
+                                                   + (diffEngine != null ? diffEngine.getClass().getSimpleName() : "a Javers configuration"));
+            }
+            if (collectionKeyExtractor != null) {
+                throw new IllegalArgumentException("Current result snapshots cannot be combined with the keyed collection comparison");
+            }
+            if (equalityFastPath) {
+                throw new IllegalArgumentException("Current result snapshots cannot be combined with the equality fast path");
+            }
+        }
+
+        private double validatePercentage(final Number percentage) {
+            final var value = percentage.doubleValue();
+            if (!(value >= ZERO && value <= HUNDRED)) {
+                logger.error("Invalid percentage! Must be within the range of 0 and 100. Got {}. " +
+                             "The shadow flow will be effectively disabled by setting it to 0%.", percentage);
+                return ZERO;
+            }
+
+            return value;
+        }
+    }
+}
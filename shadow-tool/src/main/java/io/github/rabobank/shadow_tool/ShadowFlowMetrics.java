@@ -0,0 +1,87 @@
+package io.github.rabobank.shadow_tool;
+
+/**
+ * Instrumentation of the shadow flow, for example to size the shadow traffic against its cost.
+ * All methods are called with the name of the {@link ShadowFlow} instance, so one implementation can be shared by
+ * multiple instances. They are called on the hot path of the shadow flow, so they should be cheap and should not block.
+ * By default, nothing is recorded.
+ * <p>
+ * A binding for Micrometer is available in the {@code shadow-tool-micrometer} module.
+ */
+public interface ShadowFlowMetrics {
+    /**
+     * Records nothing.
+     */
+    ShadowFlowMetrics NOOP = new ShadowFlowMetrics() {
+    };
+
+    /**
+     * The stages of a shadow comparison that are timed.
+     */
+    enum Stage {
+        /**
+         * Calling the new flow, until its result is available.
+         */
+        NEW_FLOW_CALL,
+        /**
+         * Comparing the results of the current and the new flow.
+         */
+        DIFF,
+        /**
+         * Encrypting the values of the differences, which is part of reporting them.
+         */
+        ENCRYPT,
+        /**
+         * Reporting the differences, including encryption when the reporter does that.
+         */
+        REPORT
+    }
+
+    /**
+     * Called for every request of which the current flow produced a result, after deciding whether the new flow is
+     * called.
+     *
+     * @param instanceName The name of the shadow flow instance.
+     * @param sampled      Whether the new flow is called for this request.
+     */
+    default void recordSampling(final String instanceName, final boolean sampled) {
+    }
+
+    /**
+     * Called when a stage of a shadow comparison has finished.
+     *
+     * @param instanceName  The name of the shadow flow instance.
+     * @param stage         The stage that finished.
+     * @param durationNanos How long the stage took.
+     * @param success       Whether the stage completed without an error.
+     */
+    default void recordStage(final String instanceName, final Stage stage, final long durationNanos, final boolean success) {
+    }
+
+    /**
+     * Called when the results of the current and the new flow have been compared.
+     *
+     * @param instanceName     The name of the shadow flow instance.
+     * @param differencesFound Whether the results differ.
+     */
+    default void recordComparison(final String instanceName, final boolean differencesFound) {
+    }
+
+    /**
+     * Called when a shadow call is cancelled, because the new flow did not respond within the timeout.
+     * The results are then not compared.
+     *
+     * @param instanceName The name of the shadow flow instance.
+     */
+    default void recordTimeout(final String instanceName) {
+    }
+
+    /**
+     * Called when the circuit breaker of the shadow flow changes its state.
+     *
+     * @param instanceName The name of the shadow flow instance.
+     * @param state        The new state of the circuit breaker.
+     */
+    default void recordCircuitBreakerState(final String instanceName, final CircuitBreaker.State state) {
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.rabobank.shadow_tool;
+
+import java.time.Duration;
+
+/**
+ * Signals that the new flow did not respond within the timeout of the shadow flow.
+ */
+final class ShadowFlowTimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    ShadowFlowTimeoutException(final Duration timeout) {
+        super("The new flow did not respond within " + timeout, null, false, false);
+    }
+}
@@ -0,0 +1,122 @@
+package io.github.rabobank.shadow_tool;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.Temporal;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether two different values of a property are close enough to not be reported as a difference, for
+ * example numbers with another scale or timestamps with another precision.
+ * <p>
+ * Tolerances are applied to the differences found by the {@link DiffEngine}, before they are rendered or encrypted.
+ * They only see the values of properties that are compared as a whole, like numbers, strings and dates. A tolerance
+ * is never asked about a value that is null in one of both results.
+ *
+ * @param <V> The type of the values
+ * @see ShadowFlow.ShadowFlowBuilder#withTolerance(String, Tolerance)
+ * @see ShadowFlow.ShadowFlowBuilder#withTolerance(Class, Tolerance)
+ */
+@FunctionalInterface
+public interface Tolerance<V> {
+    /**
+     * @param currentValue The value in the result of the current flow, never null
+     * @param newValue     The value in the result of the new flow, never null
+     * @return true when the difference between both values is tolerated
+     */
+    boolean tolerates(V currentValue, V newValue);
+
+    /**
+     * Tolerates numbers that differ by at most the given amount, regardless of their type or scale. With an epsilon of
+     * zero, for example {@code 1.0} and {@code 1.00} are tolerated. Floating point numbers that are not finite are only
+     * tolerated when they are equal.
+     *
+     * @param epsilon The largest tolerated difference, must not be negative.
+     * @return The tolerance
+     */
+    static Tolerance<Number> numeric(final BigDecimal epsilon) {
+        if (epsilon.signum() < 0) {
+            throw new IllegalArgumentException("The epsilon must not be negative. Got " + epsilon);
+        }
+        return new TolerantDiffEngine.TypedTolerance<>(Number.class, (currentValue, newValue) -> {
+            final var current = toBigDecimal(currentValue);
+            final var next = toBigDecimal(newValue);
+            if (current == null || next == null) {
+                return currentValue.equals(newValue);
+            }
+            return current.subtract(next).abs().compareTo(epsilon) <= 0;
+        });
+    }
+
+    /**
+     * Tolerates dates and times that are equal after truncating both to the given unit, for example timestamps that
+     * were stored with microsecond precision by one back-end and millisecond precision by the other. Dates and times
+     * with an offset or zone are compared on the time line. Supports {@link Instant}, {@link LocalDateTime},
+     * {@link LocalTime}, {@link OffsetDateTime}, {@link OffsetTime} and {@link ZonedDateTime}.
+     *
+     * @param unit The unit to truncate to, at most {@link ChronoUnit#DAYS}.
+     * @return The tolerance
+     */
+    static Tolerance<Temporal> truncatedTo(final ChronoUnit unit) {
+        if (unit.compareTo(ChronoUnit.DAYS) > 0) {
+            throw new IllegalArgumentException("The unit must be at most days. Got " + unit);
+        }
+        return new TolerantDiffEngine.TypedTolerance<>(Temporal.class, (currentValue, newValue) -> {
+            final var current = truncate(currentValue, unit);
+            return current != null && current.equals(truncate(newValue, unit));
+        });
+    }
+
+    /**
+     * @return A tolerance for strings that only differ in case
+     */
+    static Tolerance<String> ignoringCase() {
+        return new TolerantDiffEngine.TypedTolerance<>(String.class, String::equalsIgnoreCase);
+    }
+
+    /**
+     * @return A tolerance for strings that only differ in leading, trailing or repeated whitespace
+     */
+    static Tolerance<String> ignoringWhitespace() {
+        final var whitespace = Pattern.compile("\\s+");
+        return new TolerantDiffEngine.TypedTolerance<>(String.class, (currentValue, newValue) ->
+                whitespace.matcher(currentValue.strip()).replaceAll(" ").equals(whitespace.matcher(newValue.strip()).replaceAll(" ")));
+    }
+
+    private static BigDecimal toBigDecimal(final Number number) {
+        if (number instanceof BigDecimal bigDecimal) {
+            return bigDecimal;
+        } else if (number instanceof BigInteger bigInteger) {
+            return new BigDecimal(bigInteger);
+        } else if (number instanceof Double || number instanceof Float) {
+            final var value = number.doubleValue();
+            return Double.isFinite(value) ? BigDecimal.valueOf(value) : null;
+        }
+        return BigDecimal.valueOf(number.longValue());
+    }
+
+    private static Temporal truncate(final Temporal temporal, final ChronoUnit unit) {
+        if (temporal instanceof Instant instant) {
+            return instant.truncatedTo(unit);
+        } else if (temporal instanceof OffsetDateTime offsetDateTime) {
+            return offsetDateTime.toInstant().truncatedTo(unit);
+        } else if (temporal instanceof ZonedDateTime zonedDateTime) {
+            return zonedDateTime.toInstant().truncatedTo(unit);
+        } else if (temporal instanceof LocalDateTime localDateTime) {
+            return localDateTime.truncatedTo(unit);
+        } else if (temporal instanceof LocalTime localTime) {
+            return localTime.truncatedTo(unit);
+        } else if (temporal instanceof OffsetTime offsetTime) {
+            return offsetTime.withOffsetSameInstant(ZoneOffset.UTC).truncatedTo(unit);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.rabobank.shadow_tool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link DiffEngine} stage that discards the differences between values that are tolerated, before they are
+ * rendered or encrypted. A tolerance for the path of the property wins over a tolerance for the type of the values,
+ * and the tolerances for types are tried in the order they were configured.
+ * <p>
+ * Only the differences found by the engines of the shadow tool carry their values, the differences of other engines
+ * are always kept.
+ *
+ * @see Tolerance
+ */
+final class TolerantDiffEngine implements DiffEngine {
+    private final DiffEngine delegate;
+    private final Map<String, TypedTolerance<?>> tolerancesByPath;
+    private final Map<Class<?>, Tolerance<?>> tolerancesByType;
+
+    /**
+     * @param tolerancesByPath The tolerances by normalized path, see {@link PropertyProjection#normalize(String)}. They
+     *                         only apply to values of their type when they are a {@link TypedTolerance}, otherwise to
+     *                         any values.
+     * @param tolerancesByType The tolerances by type of the values, in the order they are tried
+     */
+    TolerantDiffEngine(final DiffEngine delegate,
+                       final Map<String, Tolerance<?>> tolerancesByPath,
+                       final Map<Class<?>, Tolerance<?>> tolerancesByType) {
+        this.delegate = delegate;
+        this.tolerancesByPath = new HashMap<>();
+        tolerancesByPath.forEach((path, tolerance) -> this.tolerancesByPath.put(path, TypedTolerance.of(tolerance)));
+        this.tolerancesByType = new LinkedHashMap<>(tolerancesByType);
+    }
+
+    @Override
+    public List<Difference> compare(final Object currentFlowResult, final Object newFlowResult) {
+        return withoutTolerated(delegate.compare(currentFlowResult, newFlowResult), false);
+    }
+
+    @Override
+    public <T> List<Difference> compareCollections(final Collection<T> currentFlowResult, final Collection<T> newFlowResult, final Class<T> clazz) {
+        return withoutTolerated(delegate.compareCollections(currentFlowResult, newFlowResult, clazz), true);
+    }
+
+    @Override
+    public void warmUp(final Class<?> type) {
+        delegate.warmUp(type);
+    }
+
+    private List<Difference> withoutTolerated(final List<Difference> differences, final boolean elements) {
+        if (differences.isEmpty()) {
+            return differences;
+        }
+        final List<Difference> notTolerated = new ArrayList<>(differences.size());
+        for (final var difference : differences) {
+            if (!isTolerated(difference, elements)) {
+                notTolerated.add(difference);
+            }
+        }
+        return notTolerated;
+    }
+
+    private boolean isTolerated(final Difference difference, final boolean elements) {
+        var valueDifference = difference;
+        while (valueDifference instanceof ElementDifference elementDifference) {
+            valueDifference = elementDifference.difference();
+        }
+
+        final Object currentValue;
+        final Object newValue;
+        if (valueDifference instanceof ValueDifference value) {
+            currentValue = value.currentValue();
+            newValue = value.newValue();
+        } else if (valueDifference instanceof JaversDifference javersDifference) {
+            currentValue = javersDifference.getCurrentValue();
+            newValue = javersDifference.getNewValue();
+        } else {
+            return false;
+        }
+        if (currentValue == null || newValue == null) {
+            return false;
+        }
+
+        if (!tolerancesByPath.isEmpty()) {
+            final var tolerance = tolerancesByPath.get(PropertyProjection.normalize(PropertyProjection.pathOf(difference, elements)));
+            if (tolerance != null) {
+                return tolerance.type().isInstance(currentValue) && tolerance.type().isInstance(newValue)
+                       && tolerates(tolerance, currentValue, newValue);
+            }
+        }
+        for (final var entry : tolerancesByType.entrySet()) {
+            if (entry.getKey().isInstance(currentValue) && entry.getKey().isInstance(newValue)) {
+                return tolerates(entry.getValue(), currentValue, newValue);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Only called with values of the type of the tolerance.
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean tolerates(final Tolerance<?> tolerance, final Object currentValue, final Object newValue) {
+        return ((Tolerance<Object>) tolerance).tolerates(currentValue, newValue);
+    }
+
+    /**
+     * A tolerance together with the type of the values it applies to, so it is never asked about values of another
+     * type. The tolerances of the factories in {@link Tolerance} are typed.
+     *
+     * @param <V> The type of the values
+     */
+    record TypedTolerance<V>(Class<V> type, Tolerance<? super V> tolerance) implements Tolerance<V> {
+
+        /**
+         * @return The tolerance when it is typed, otherwise the tolerance for values of any type
+         */
+        @SuppressWarnings("unchecked")
+        static TypedTolerance<?> of(final Tolerance<?> tolerance) {
+            return tolerance instanceof TypedTolerance<?> typed ? typed : new TypedTolerance<>(Object.class, (Tolerance<Object>) tolerance);
+        }
+
+        @Override
+        public boolean tolerates(final V currentValue, final V newValue) {
+            return tolerance.tolerates(currentValue, newValue);
+        }
+    }
+}
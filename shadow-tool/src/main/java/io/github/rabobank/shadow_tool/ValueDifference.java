@@ -0,0 +1,60 @@
+package io.github.rabobank.shadow_tool;
+
+/**
+ * A {@link Difference} between two values of the same property.
+ *
+ * @param propertyName The path of the property that differs
+ * @param currentValue The value in the result of the current flow, null when the new flow added it
+ * @param newValue     The value in the result of the new flow, null when the new flow removed it
+ */
+record ValueDifference(String propertyName, Object currentValue, Object newValue) implements Difference {
+
+    @Override
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    @Override
+    public String prettyPrint() {
+        final var buffer = new StringBuilder();
+        prettyPrint(buffer);
+        return buffer.toString();
+    }
+
+    @Override
+    public void prettyPrint(final StringBuilder buffer) {
+        prettyPrint(buffer, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int prettyPrint(final StringBuilder buffer, final int maxLength) {
+        return prettyPrint(buffer, maxLength, propertyName, currentValue, newValue);
+    }
+
+    /**
+     * Writes {@code 'name' changed: 'current' -> 'new'} to the buffer, cut off after {@code maxLength} characters.
+     *
+     * @return The length of the complete difference
+     */
+    static int prettyPrint(final StringBuilder buffer, final int maxLength, final String propertyName,
+                           final Object currentValue, final Object newValue) {
+        final var end = (int) Math.min(Integer.MAX_VALUE, (long) buffer.length() + maxLength);
+        return append(buffer, "'", end) + append(buffer, propertyName, end) + append(buffer, "' changed: '", end)
+                + append(buffer, currentValue, end) + append(buffer, "' -> '", end) + append(buffer, newValue, end)
+                + append(buffer, "'", end);
+    }
+
+    /**
+     * Appends the value as far as it fits before {@code end}. A value that is text is only copied as far as it fits.
+     *
+     * @return The length of the complete value
+     */
+    private static int append(final StringBuilder buffer, final Object value, final int end) {
+        final var text = value instanceof CharSequence charSequence ? charSequence : String.valueOf(value);
+        final var room = end - buffer.length();
+        if (room > 0) {
+            buffer.append(text, 0, Math.min(room, text.length()));
+        }
+        return text.length();
+    }
+}
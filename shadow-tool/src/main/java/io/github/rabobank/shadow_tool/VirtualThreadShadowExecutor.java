@@ -0,0 +1,176 @@
+package io.github.rabobank.shadow_tool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * An {@link Executor} which runs every shadow comparison on a new virtual thread, with an upper bound on the number of
+ * comparisons running at the same time. A virtual thread only takes a few kilobytes of memory while it waits on a
+ * slow new flow, so the bound can be much higher than the number of platform threads an application can afford.
+ * When the bound is reached, the comparison is dropped and counted instead of blocking or rejecting the caller.
+ * <p>
+ * Virtual threads are available from Java 21. Since the shadow tool is built for Java 17, they are looked up at
+ * runtime. On older versions of Java, the comparisons run on a pool of platform threads with the same bound instead,
+ * see {@link #isVirtual()}.
+ */
+public class VirtualThreadShadowExecutor implements Executor {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadShadowExecutor.class);
+    private static final long KEEP_ALIVE_SECONDS = 60L;
+    private static final String VIRTUAL_THREAD_NAME_PREFIX = "shadow-flow-virtual-";
+    private static final String PLATFORM_THREAD_NAME_PREFIX = "shadow-flow-platform-";
+    private static final AtomicInteger EXECUTOR_COUNTER = new AtomicInteger();
+    private static final AtomicBoolean FALLBACK_LOGGED = new AtomicBoolean();
+    private static final MethodHandle IS_VIRTUAL = isVirtualMethod();
+
+    private final int maxConcurrency;
+    private final Semaphore permits;
+    private final Executor threadStarter;
+    private final boolean virtual;
+    private final LongAdder droppedTasks = new LongAdder();
+
+    /**
+     * @param maxConcurrency The maximum number of shadow comparisons running at the same time. Must be at least 1.
+     */
+    public VirtualThreadShadowExecutor(final int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The maximum concurrency must be at least 1. Got " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.permits = new Semaphore(maxConcurrency);
+
+        final var executorNumber = EXECUTOR_COUNTER.incrementAndGet() + "-";
+        final var virtualThreadFactory = virtualThreadFactory(VIRTUAL_THREAD_NAME_PREFIX + executorNumber);
+        virtual = virtualThreadFactory != null;
+        if (virtual) {
+            threadStarter = command -> virtualThreadFactory.newThread(command).start();
+        } else {
+            if (FALLBACK_LOGGED.compareAndSet(false, true)) {
+                logger.info("Virtual threads are not available in this JVM, the shadow flow uses platform threads instead");
+            }
+            threadStarter = platformThreadPool(PLATFORM_THREAD_NAME_PREFIX + executorNumber);
+        }
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        tryExecute(command);
+    }
+
+    /**
+     * @return Whether the task was accepted, or false when it was dropped.
+     */
+    boolean tryExecute(final Runnable command) {
+        if (!permits.tryAcquire()) {
+            droppedTasks.increment();
+            return false;
+        }
+
+        try {
+            threadStarter.execute(() -> {
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+            return true;
+        } catch (final RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Whether the comparisons run on virtual threads, which requires Java 21 or higher.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @return The number of shadow comparisons that were dropped because the maximum concurrency was reached.
+     */
+    public long getDroppedTasks() {
+        return droppedTasks.sum();
+    }
+
+    /**
+     * @return The approximate number of shadow comparisons that are currently running.
+     */
+    public int getActiveCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * Every comparison runs on a new virtual thread, so a value that is kept in a {@link ThreadLocal} to be reused by
+     * the next comparison on the same thread is never reused on a virtual thread.
+     *
+     * @return Whether the current thread is a virtual thread, or false when virtual threads are not available.
+     */
+    static boolean isCurrentThreadVirtual() {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (final Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * Looks up {@code Thread.isVirtual()}, which does not exist when compiling for Java 17.
+     *
+     * @return The method, or null when it is not available.
+     */
+    private static MethodHandle isVirtualMethod() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (final NoSuchMethodException | IllegalAccessException e) { // Not available before Java 19
+            return null;
+        }
+    }
+
+    /**
+     * Looks up {@code Thread.ofVirtual().name(prefix, 1).factory()}, which does not exist when compiling for Java 17.
+     *
+     * @return The factory of virtual threads, or null when they are not available.
+     */
+    private static ThreadFactory virtualThreadFactory(final String threadNamePrefix) {
+        try {
+            final var lookup = MethodHandles.publicLookup();
+            final var builderClass = Class.forName("java.lang.Thread$Builder");
+            final var ofVirtual = lookup.findStatic(Thread.class, "ofVirtual",
+                    MethodType.methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+            final var name = lookup.findVirtual(builderClass, "name", MethodType.methodType(builderClass, String.class, long.class));
+            final var factory = lookup.findVirtual(builderClass, "factory", MethodType.methodType(ThreadFactory.class));
+            return (ThreadFactory) factory.invoke(name.invoke(ofVirtual.invoke(), threadNamePrefix, 1L));
+        } catch (final Throwable e) { // Not available before Java 21, or a preview feature on Java 19 and 20
+            return null;
+        }
+    }
+
+    private static Executor platformThreadPool(final String threadNamePrefix) {
+        final var threadCounter = new AtomicInteger();
+        // Unbounded, since the permits already bound the number of threads
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, SECONDS, new SynchronousQueue<>(), runnable -> {
+            final var thread = new Thread(runnable, threadNamePrefix + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
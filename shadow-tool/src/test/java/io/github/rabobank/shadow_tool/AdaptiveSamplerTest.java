@@ -0,0 +1,165 @@
+package io.github.rabobank.shadow_tool;
+
+import io.github.rabobank.shadow_tool.ShadowFlow.ShadowFlowBuilder;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveSamplerTest {
+    private static final Duration ADJUSTMENT_INTERVAL = Duration.ofMillis(5);
+    private static final Duration RUN_TIME = Duration.ofMillis(200);
+    private static final DummyObject DUMMY_OBJECT = new DummyObject("Bob", "Utrecht", List.of("Mirabel", "Bruno"));
+
+    @Test
+    void shouldIncreaseRateUpToMaximumWhenBelowTarget() {
+        final var sampler = new AdaptiveSampler(1_000_000_000, Duration.ofSeconds(1), 0.5, ADJUSTMENT_INTERVAL);
+        assertEquals(0.01, sampler.getSamplingRate(), 0.0);
+
+        run(sampler, 0);
+
+        assertEquals(0.5, sampler.getSamplingRate(), 0.0);
+    }
+
+    @Test
+    void shouldDecreaseRateWhenAboveTarget() {
+        final var sampler = new AdaptiveSampler(1, Duration.ofSeconds(1), 1, ADJUSTMENT_INTERVAL);
+
+        run(sampler, 0);
+
+        assertTrue(sampler.getSamplingRate() < 0.001, "Rate was " + sampler.getSamplingRate());
+    }
+
+    @Test
+    void shouldDecreaseRateWhenLatencyBudgetIsExceeded() {
+        final var sampler = new AdaptiveSampler(1_000_000_000, Duration.ofMillis(1), 1, ADJUSTMENT_INTERVAL);
+
+        run(sampler, Duration.ofMillis(10).toNanos());
+
+        assertTrue(sampler.getSamplingRate() < 0.001, "Rate was " + sampler.getSamplingRate());
+    }
+
+    @Test
+    void shouldDecreaseRateWhenExecutorIsSaturated() {
+        final var sampler = new AdaptiveSampler(1_000_000_000, Duration.ofSeconds(1), 1, ADJUSTMENT_INTERVAL);
+
+        final var deadline = System.nanoTime() + RUN_TIME.toNanos();
+        while (System.nanoTime() < deadline) {
+            sampler.shouldSample(); // Sampled calls never complete
+        }
+
+        assertTrue(sampler.getSamplingRate() < 0.001, "Rate was " + sampler.getSamplingRate());
+    }
+
+    @Test
+    void shouldNotDecreaseRateWhenCallsTakeLongerThanAnInterval() {
+        final var sampler = new AdaptiveSampler(1_000_000_000, Duration.ofSeconds(1), 0.5, ADJUSTMENT_INTERVAL);
+        final var shadowCallNanos = ADJUSTMENT_INTERVAL.multipliedBy(4).toNanos();
+        final Queue<Long> callsInProgress = new ArrayDeque<>();
+
+        final var deadline = System.nanoTime() + RUN_TIME.toNanos();
+        while (System.nanoTime() < deadline) {
+            final var now = System.nanoTime();
+            while (!callsInProgress.isEmpty() && now - callsInProgress.peek() >= shadowCallNanos) {
+                sampler.onShadowCallCompleted(now - callsInProgress.remove());
+            }
+            if (sampler.shouldSample()) {
+                callsInProgress.add(now);
+            }
+        }
+
+        assertTrue(sampler.getSamplingRate() >= 0.01, "Rate was " + sampler.getSamplingRate());
+    }
+
+    @Test
+    void shouldDecreaseRateWhenCallsAreDropped() {
+        final var sampler = new AdaptiveSampler(1_000_000_000, Duration.ofSeconds(1), 1, ADJUSTMENT_INTERVAL);
+
+        final var deadline = System.nanoTime() + RUN_TIME.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (sampler.shouldSample()) {
+                sampler.onShadowCallDropped();
+            }
+        }
+
+        assertTrue(sampler.getSamplingRate() < 0.001, "Rate was " + sampler.getSamplingRate());
+    }
+
+    @Test
+    void shouldIgnoreSkippedCalls() {
+        final var sampler = new AdaptiveSampler(1_000_000_000, Duration.ofSeconds(1), 0.5, ADJUSTMENT_INTERVAL);
+
+        final var deadline = System.nanoTime() + RUN_TIME.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (sampler.shouldSample()) {
+                sampler.onShadowCallSkipped();
+            }
+        }
+
+        assertEquals(0.5, sampler.getSamplingRate(), 0.0);
+    }
+
+    @Test
+    void shouldNotDecreaseRateWhenCurrentFlowThrows() {
+        final var sampler = new AdaptiveSampler(1_000_000_000, Duration.ofSeconds(1), 0.5, ADJUSTMENT_INTERVAL);
+        final var shadowFlow = createShadowFlow(sampler);
+        final Supplier<DummyObject> failingFlow = () -> {
+            throw new IllegalStateException("Something happened in the current flow!");
+        };
+
+        final var deadline = System.nanoTime() + RUN_TIME.toNanos();
+        while (System.nanoTime() < deadline) {
+            assertThrows(IllegalStateException.class, () -> shadowFlow.compare(failingFlow, () -> DUMMY_OBJECT));
+            shadowFlow.compare(() -> DUMMY_OBJECT, () -> DUMMY_OBJECT);
+        }
+
+        assertEquals(0.5, sampler.getSamplingRate(), 0.0);
+    }
+
+    @Test
+    void shouldNotDecreaseRateWhenCurrentFlowIsEmpty() {
+        final var sampler = new AdaptiveSampler(1_000_000_000, Duration.ofSeconds(1), 0.5, ADJUSTMENT_INTERVAL);
+        final var shadowFlow = createShadowFlow(sampler);
+
+        final var deadline = System.nanoTime() + RUN_TIME.toNanos();
+        while (System.nanoTime() < deadline) {
+            shadowFlow.compare(Mono.empty(), Mono.just(DUMMY_OBJECT)).block();
+            shadowFlow.compare(Mono.just(DUMMY_OBJECT), Mono.just(DUMMY_OBJECT)).block();
+        }
+
+        assertEquals(0.5, sampler.getSamplingRate(), 0.0);
+    }
+
+    @Test
+    void shouldRejectInvalidConfiguration() {
+        final var latencyBudget = Duration.ofSeconds(1);
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveSampler(0, latencyBudget, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveSampler(10, latencyBudget, 1.5));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveSampler(10, Duration.ZERO, 1));
+    }
+
+    private static ShadowFlow<DummyObject> createShadowFlow(final Sampler sampler) {
+        return new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withDiffEngine(new FastDiffEngine())
+                .withSampler(sampler)
+                .build();
+    }
+
+    private static void run(final Sampler sampler, final long shadowCallNanos) {
+        final var deadline = System.nanoTime() + RUN_TIME.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (sampler.shouldSample()) {
+                sampler.onShadowCallCompleted(shadowCallNanos);
+            }
+        }
+    }
+}
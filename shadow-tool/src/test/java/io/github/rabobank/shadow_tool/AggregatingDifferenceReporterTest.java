@@ -0,0 +1,151 @@
+package io.github.rabobank.shadow_tool;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AggregatingDifferenceReporterTest {
+    private static final Logger logger = (Logger) LoggerFactory.getLogger(AggregatingDifferenceReporter.class);
+
+    private final ListAppender<ILoggingEvent> listAppender = new ListAppender<>();
+
+    @BeforeEach
+    void beforeEach() {
+        logger.addAppender(listAppender);
+        listAppender.start();
+    }
+
+    @AfterEach
+    void afterEach() {
+        logger.detachAppender(listAppender);
+    }
+
+    @Test
+    void shouldLogOneSummaryPerFingerprint() {
+        final var encryptions = new AtomicInteger();
+        final var reporter = new AggregatingDifferenceReporter(value -> "encrypted-" + encryptions.incrementAndGet(), Duration.ofMinutes(1), 2);
+
+        for (int i = 0; i < 100; i++) {
+            reporter.report(report("default", difference("[" + i + "].place"), difference("name")));
+        }
+        reporter.report(report("other", difference("place")));
+        reporter.flush();
+
+        assertEquals(3, encryptions.get());
+        assertEquals(List.of(
+                        "[instance=default] The following differences were found in 100 comparisons: [].place, name. Encrypted values of 2 samples: encrypted-1, encrypted-2",
+                        "[instance=other] The following differences were found in 1 comparisons: place. Encrypted values of 1 samples: encrypted-3"),
+                messages().stream().sorted().toList());
+    }
+
+    @Test
+    void shouldStartNewWindowAfterSummary() {
+        final var reporter = new AggregatingDifferenceReporter(null, Duration.ofMinutes(1), 2);
+
+        reporter.report(report("default", difference("place")));
+        reporter.flush();
+        reporter.flush();
+        reporter.report(report("default", difference("place")));
+        reporter.report(report("default", difference("place")));
+        reporter.close();
+
+        assertEquals(List.of(
+                "[instance=default] The following differences were found in 1 comparisons: place",
+                "[instance=default] The following differences were found in 2 comparisons: place"), messages());
+    }
+
+    @Test
+    void shouldLogSummaryPeriodically() {
+        final var reporter = new AggregatingDifferenceReporter(null, Duration.ofMillis(100), 0);
+
+        reporter.report(report("periodic", difference("place")));
+
+        await().atMost(5, SECONDS).until(() -> messages().contains("[instance=periodic] The following differences were found in 1 comparisons: place"));
+    }
+
+    @Test
+    void shouldStopLoggingSummariesWhenClosed() {
+        final var reporter = new AggregatingDifferenceReporter(null, Duration.ofMillis(50), 0);
+
+        reporter.close();
+        reporter.report(report("closed", difference("place")));
+
+        await().during(200, MILLISECONDS).atMost(1, SECONDS).until(() -> messages().isEmpty());
+    }
+
+    @Test
+    void shouldLogEveryComparisonWhenFlushedWhileReporting() throws InterruptedException {
+        final var reporter = new AggregatingDifferenceReporter(null, Duration.ofMinutes(1), 0);
+        final var threads = 4;
+        final var reportsPerThread = 10_000;
+        final var start = new CountDownLatch(1);
+        final var done = new CountDownLatch(threads);
+        final List<Thread> reporters = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final var thread = new Thread(() -> {
+                awaitStart(start);
+                for (int j = 0; j < reportsPerThread; j++) {
+                    reporter.report(report("default", difference("place")));
+                }
+                done.countDown();
+            });
+            thread.start();
+            reporters.add(thread);
+        }
+
+        start.countDown();
+        while (done.getCount() > 0) {
+            reporter.flush();
+        }
+        for (final var thread : reporters) {
+            thread.join();
+        }
+        reporter.close();
+
+        final var logged = listAppender.list.stream().mapToLong(event -> (Long) event.getArgumentArray()[1]).sum();
+        assertEquals((long) threads * reportsPerThread, logged);
+    }
+
+    @Test
+    void shouldRejectInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new AggregatingDifferenceReporter(null, Duration.ZERO, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AggregatingDifferenceReporter(null, Duration.ofMinutes(1), -1));
+    }
+
+    private List<String> messages() {
+        return listAppender.list.stream().map(ILoggingEvent::getFormattedMessage).toList();
+    }
+
+    private static void awaitStart(final CountDownLatch start) {
+        try {
+            start.await(5, SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static DifferenceReport report(final String instanceName, final Difference... differences) {
+        return new DifferenceReport(instanceName, List.of(differences), Map.of());
+    }
+
+    private static Difference difference(final String propertyName) {
+        return new ValueDifference(propertyName, "Utrecht", "Amsterdam");
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncDifferenceReporterTest {
+    private static final DifferenceReport REPORT = new DifferenceReport("default", List.of(new TestDifference()), Map.of());
+
+    @Test
+    void shouldReportOnDrainerThreadInBatches() {
+        final var batches = new CopyOnWriteArrayList<List<DifferenceReport>>();
+        final var threads = new CopyOnWriteArrayList<String>();
+        final var reporter = new AsyncDifferenceReporter(new DifferenceReporter() {
+            @Override
+            public void report(final DifferenceReport report) {
+            }
+
+            @Override
+            public void reportBatch(final List<DifferenceReport> reports) {
+                batches.add(List.copyOf(reports));
+                threads.add(Thread.currentThread().getName());
+            }
+        }, 16, 4);
+
+        for (int i = 0; i < 10; i++) {
+            reporter.report(REPORT);
+        }
+
+        await().atMost(5, SECONDS).until(() -> batches.stream().mapToInt(List::size).sum() == 10);
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 4));
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("shadow-flow-reporter-")));
+        reporter.close();
+    }
+
+    @Test
+    void shouldDropWhenBufferIsFull() {
+        final var release = new CountDownLatch(1);
+        final var reporter = new AsyncDifferenceReporter(report -> {
+            try {
+                release.await(5, SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 2, 1);
+
+        reporter.report(REPORT);
+        await().atMost(5, SECONDS).until(() -> {
+            // Wait until the drainer picked up the first report and is blocked on it
+            reporter.report(REPORT);
+            reporter.report(REPORT);
+            return reporter.getDroppedReports() > 0;
+        });
+
+        release.countDown();
+        reporter.close();
+        assertTrue(reporter.getDroppedReports() > 0);
+    }
+
+    @Test
+    void shouldFlushRemainingReportsOnClose() {
+        final var reported = new CopyOnWriteArrayList<DifferenceReport>();
+        final var reporter = new AsyncDifferenceReporter(reported::add, 16, 16);
+
+        reporter.report(REPORT);
+        reporter.report(REPORT);
+        reporter.close();
+        reporter.report(REPORT);
+
+        assertEquals(2, reported.size());
+        assertEquals(1, reporter.getDroppedReports());
+    }
+
+    @Test
+    void shouldReportOrCountEveryReportWhenClosedWhileReporting() throws Exception {
+        final var reported = new CopyOnWriteArrayList<DifferenceReport>();
+        final var reporter = new AsyncDifferenceReporter(reported::add, 1 << 16, 16);
+        final var threads = 4;
+        final var reportsPerThread = 10_000;
+        final var start = new CountDownLatch(1);
+        final List<Thread> reporters = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final var thread = new Thread(() -> {
+                awaitStart(start);
+                for (int j = 0; j < reportsPerThread; j++) {
+                    reporter.report(REPORT);
+                }
+            });
+            thread.start();
+            reporters.add(thread);
+        }
+
+        start.countDown();
+        reporter.close();
+        for (final var thread : reporters) {
+            thread.join();
+        }
+
+        assertEquals(threads * reportsPerThread, reported.size() + reporter.getDroppedReports());
+    }
+
+    private static void awaitStart(final CountDownLatch start) {
+        try {
+            start.await(5, SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class TestDifference implements Difference {
+        @Override
+        public String getPropertyName() {
+            return "place";
+        }
+
+        @Override
+        public String prettyPrint() {
+            return "'place' changed: 'Utrecht' -> 'Amsterdam'";
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.rabobank.shadow_tool;
+
+import io.github.rabobank.shadow_tool.ShadowFlow.ShadowFlowBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BoundedShadowExecutorTest {
+
+    @Test
+    void shouldDropTasksWhenSaturated() {
+        final var executor = new BoundedShadowExecutor(1, 1);
+        final var release = new CountDownLatch(1);
+        final var executed = new AtomicInteger();
+        final Runnable blockingTask = () -> {
+            awaitRelease(release);
+            executed.incrementAndGet();
+        };
+
+        executor.execute(blockingTask);
+        executor.execute(blockingTask);
+        executor.execute(blockingTask);
+        executor.execute(blockingTask);
+
+        assertEquals(2, executor.getDroppedTasks());
+        release.countDown();
+        await().atMost(5, SECONDS).until(() -> executed.get() == 2);
+        assertEquals(2, executor.getDroppedTasks());
+    }
+
+    @Test
+    void shouldNotQueueWithZeroCapacity() {
+        final var executor = new BoundedShadowExecutor(1, 0);
+        final var release = new CountDownLatch(1);
+
+        executor.execute(() -> awaitRelease(release));
+        executor.execute(() -> awaitRelease(release));
+
+        assertEquals(1, executor.getDroppedTasks());
+        assertEquals(0, executor.getQueueSize());
+        release.countDown();
+    }
+
+    @Test
+    void shouldRejectInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedShadowExecutor(0, 10));
+        assertThrows(IllegalArgumentException.class, () -> new BoundedShadowExecutor(1, -1));
+    }
+
+    @Test
+    void shouldAlwaysReturnCurrentFlowWhenSaturated() {
+        final var release = new CountDownLatch(1);
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withBoundedExecutor(1, 0)
+                .build();
+        final var current = new DummyObject("Bob", "Utrecht", List.of());
+        final var other = new DummyObject("Bob", "Amsterdam", List.of());
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(current, shadowFlow.compare(() -> current, () -> {
+                awaitRelease(release);
+                return other;
+            }));
+        }
+
+        assertEquals(4, shadowFlow.getDroppedComparisons());
+        release.countDown();
+    }
+
+    private static void awaitRelease(final CountDownLatch latch) {
+        try {
+            latch.await(5, SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
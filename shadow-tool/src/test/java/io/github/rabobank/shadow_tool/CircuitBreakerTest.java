@@ -0,0 +1,123 @@
+package io.github.rabobank.shadow_tool;
+
+import io.github.rabobank.shadow_tool.CircuitBreaker.State;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class CircuitBreakerTest {
+    private static final Duration COOL_DOWN = Duration.ofMillis(50);
+
+    private final ShadowFlowMetrics metrics = mock(ShadowFlowMetrics.class);
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(3, COOL_DOWN, "default", metrics);
+
+    @Test
+    void shouldOpenAfterConsecutiveFailures() {
+        record(false);
+        record(false);
+        record(true);
+        record(false);
+        record(false);
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquire());
+
+        record(false);
+
+        assertEquals(State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+        verify(metrics).recordCircuitBreakerState("default", State.OPEN);
+    }
+
+    @Test
+    void shouldCloseWhenProbeSucceeds() {
+        open();
+
+        await().until(circuitBreaker::tryAcquire);
+        assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+
+        record(true);
+
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquire());
+        verify(metrics).recordCircuitBreakerState("default", State.CLOSED);
+    }
+
+    @Test
+    void shouldOnlyBecomeHalfOpenWhenProbeIsAcquired() {
+        open();
+        assertFalse(circuitBreaker.allowsCalls());
+
+        await().until(circuitBreaker::allowsCalls);
+        assertEquals(State.OPEN, circuitBreaker.getState());
+
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void shouldOpenAgainWhenProbeFails() {
+        open();
+        await().until(circuitBreaker::tryAcquire);
+
+        record(false);
+
+        assertEquals(State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void shouldProbeAgainWhenProbeDoesNotFinish() {
+        open();
+        await().until(circuitBreaker::tryAcquire);
+
+        await().until(circuitBreaker::tryAcquire);
+
+        assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void shouldOnlyRecordTheProbeWhenHalfOpen() {
+        final var inFlightCallStart = System.nanoTime();
+        open();
+        await().until(circuitBreaker::tryAcquire);
+
+        circuitBreaker.record(true, inFlightCallStart);
+        assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+
+        record(false);
+        assertEquals(State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    void shouldIgnoreTheProbeThatDidNotFinishInTime() {
+        open();
+        await().until(circuitBreaker::tryAcquire);
+        final var firstProbeStart = System.nanoTime();
+        await().until(circuitBreaker::tryAcquire);
+
+        circuitBreaker.record(false, firstProbeStart);
+        assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+
+        record(true);
+        assertEquals(State.CLOSED, circuitBreaker.getState());
+    }
+
+    private void record(final boolean success) {
+        circuitBreaker.record(success, System.nanoTime());
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            record(false);
+        }
+        assertEquals(State.OPEN, circuitBreaker.getState());
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiffResultCacheTest {
+
+    @Test
+    void shouldRememberVerifiedKeys() {
+        final var cache = new DiffResultCache(10, Duration.ofMinutes(1));
+
+        assertFalse(cache.isRecentlyVerified("customer-1"));
+        cache.markVerified("customer-1");
+
+        assertTrue(cache.isRecentlyVerified("customer-1"));
+        assertFalse(cache.isRecentlyVerified("customer-2"));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void shouldEvictOldestKeyWhenFull() {
+        final var cache = new DiffResultCache(2, Duration.ofMinutes(1));
+
+        cache.markVerified("customer-1");
+        cache.markVerified("customer-2");
+        cache.markVerified("customer-1");
+        cache.markVerified("customer-3");
+
+        assertEquals(2, cache.size());
+        assertFalse(cache.isRecentlyVerified("customer-2"));
+        assertTrue(cache.isRecentlyVerified("customer-1"));
+        assertTrue(cache.isRecentlyVerified("customer-3"));
+    }
+
+    @Test
+    void shouldExpireKeysAfterTimeToLive() {
+        final var cache = new DiffResultCache(10, Duration.ofMillis(50));
+
+        cache.markVerified("customer-1");
+
+        await().until(() -> !cache.isRecentlyVerified("customer-1"));
+        cache.markVerified("customer-2");
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DifferenceRendererTest {
+
+    @Test
+    void shouldRenderPropertyNamesAndValuesInOnePass() {
+        final List<Difference> differences = List.of(
+                new ValueDifference("place", "Utrecht", "Amsterdam"),
+                new ElementDifference(2, new ValueDifference("name", "Bob", "Alice")));
+
+        final var rendered = DifferenceRenderer.render(differences, true);
+
+        assertEquals("place, [2].name", rendered.propertyNames());
+        assertEquals("'place' changed: 'Utrecht' -> 'Amsterdam'\n[2] 'name' changed: 'Bob' -> 'Alice'", rendered.values());
+    }
+
+    @Test
+    void shouldNotRenderValuesWhenNotNeeded() {
+        final List<Difference> differences = List.of(new ValueDifference("place", "Utrecht", "Amsterdam"));
+
+        final var rendered = DifferenceRenderer.render(differences, false);
+
+        assertEquals("place", rendered.propertyNames());
+        assertNull(rendered.values());
+    }
+
+    @Test
+    void shouldTruncateLongDifference() {
+        final var longValue = "x".repeat(DifferenceRenderer.MAX_DIFFERENCE_LENGTH);
+        final List<Difference> differences = List.of(new ValueDifference("place", longValue, "Amsterdam"));
+
+        final var values = DifferenceRenderer.render(differences, true).values();
+
+        assertEquals(DifferenceRenderer.MAX_DIFFERENCE_LENGTH, values.indexOf("... (truncated "));
+        assertTrue(values.endsWith("... (truncated 34 characters)"), values);
+    }
+
+    @Test
+    void shouldOnlyCopyWhatFitsOfLongValue() {
+        final var longValue = new LongText(1_000_000);
+        final List<Difference> differences = List.of(new ElementDifference(1, new ValueDifference("place", longValue, "Amsterdam")));
+
+        final var values = DifferenceRenderer.render(differences, true).values();
+
+        assertTrue(longValue.highestIndexRead < DifferenceRenderer.MAX_DIFFERENCE_LENGTH, "read up to " + longValue.highestIndexRead);
+        assertTrue(values.endsWith("... (truncated " + (4 + 18 + 1_000_000 + 16 - DifferenceRenderer.MAX_DIFFERENCE_LENGTH) + " characters)"), values);
+    }
+
+    @Test
+    void shouldCountDifferencesThatDoNotFit() {
+        final var differences = new ArrayList<Difference>();
+        for (int i = 0; i < 10_000; i++) {
+            differences.add(new ElementDifference(i, new ValueDifference("place", "Utrecht", "Amsterdam")));
+        }
+
+        final var rendered = DifferenceRenderer.render(differences, true);
+
+        assertTrue(rendered.propertyNames().length() < DifferenceRenderer.MAX_PROPERTY_NAMES_LENGTH + 100);
+        assertTrue(rendered.propertyNames().endsWith(" more)"), rendered.propertyNames());
+        assertTrue(rendered.values().length() < DifferenceRenderer.MAX_VALUES_LENGTH + DifferenceRenderer.MAX_DIFFERENCE_LENGTH);
+        assertTrue(rendered.values().endsWith(" more differences)"), rendered.values());
+    }
+
+    @Test
+    void shouldReuseBufferForNextReport() {
+        DifferenceRenderer.render(List.of(new ValueDifference("place", "Utrecht", "Amsterdam")), true);
+
+        final var rendered = DifferenceRenderer.render(List.of(new ValueDifference("name", "Bob", "Alice")), true);
+
+        assertEquals("name", rendered.propertyNames());
+        assertEquals("'name' changed: 'Bob' -> 'Alice'", rendered.values());
+    }
+
+    private static final class LongText implements CharSequence {
+        private final int length;
+        private int highestIndexRead = -1;
+
+        private LongText(final int length) {
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            highestIndexRead = Math.max(highestIndexRead, index);
+            return 'x';
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            throw new UnsupportedOperationException("the whole value should not be rendered");
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package io.github.rabobank.shadow_tool;
+
+import org.bouncycastle.util.encoders.Base64;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.crypto.Cipher.DECRYPT_MODE;
+import static javax.crypto.Cipher.ENCRYPT_MODE;
+import static javax.crypto.Cipher.SECRET_KEY;
+import static javax.crypto.Cipher.UNWRAP_MODE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EncryptionServiceTest {
+    private static final PrivateKey PRIVATE_KEY;
+    private static final PublicKey PUBLIC_KEY;
+    private static final SecretKeySpec AES_KEY = new SecretKeySpec(new byte[32], "AES");
+    private static final IvParameterSpec AES_IV = new IvParameterSpec(new byte[16]);
+    private static final String AES_ALGORITHM_MODE_PADDING = "AES/CBC/PKCS5Padding";
+
+    static {
+        try {
+            final var keyPairGen = KeyPairGenerator.getInstance("RSA");
+            keyPairGen.initialize(2048);
+            final var pair = keyPairGen.generateKeyPair();
+            PRIVATE_KEY = pair.getPrivate();
+            PUBLIC_KEY = pair.getPublic();
+        } catch (final GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void encryptAndDecrypt() throws Exception {
+        final var encryptionService = new PublicKeyEncryptionService(PUBLIC_KEY);
+        final var plainDifferences = """
+                'place' changed: 'Dintelooord' -> 'Dinteloord'
+                'madrigals' collection changes :
+                   1. 'Bruno' changed to 'Mirabel'
+                   0. 'Bruno' added""";
+        final var encryptedDifferences = encryptionService.encrypt(plainDifferences);
+        //Decrypt and verify
+        final var decryptCipher = Cipher.getInstance("RSA/ECB/OAEPWITHSHA-256ANDMGF1PADDING");
+        decryptCipher.init(DECRYPT_MODE, PRIVATE_KEY);
+        final var cipherText = decryptCipher.doFinal(Base64.decode(encryptedDifferences));
+        final var result = new String(cipherText, UTF_8);
+
+        assertEquals(plainDifferences, result);
+    }
+
+    @Test
+    void encryptAndForgotToInitCipher() throws Exception {
+        final var encryptionService = new DefaultEncryptionService(() -> Cipher.getInstance("RSA/ECB/OAEPWITHSHA-256ANDMGF1PADDING"));
+        final var plainDifferences = """
+                'place' changed: 'Dintelooord' -> 'Dinteloord'
+                'madrigals' collection changes :
+                   1. 'Bruno' changed to 'Mirabel'
+                   0. 'Bruno' added""";
+        final var exception = assertThrows(IllegalStateException.class, () -> encryptionService.encrypt(plainDifferences));
+        assertEquals("Cipher not initialized", exception.getMessage());
+    }
+
+    @Test
+    void encryptConcurrentlyWithCipherFactory() throws Exception {
+        final var encryptionService = new DefaultEncryptionService(() -> {
+            final var cipher = Cipher.getInstance(AES_ALGORITHM_MODE_PADDING);
+            cipher.init(ENCRYPT_MODE, AES_KEY, AES_IV);
+            return cipher;
+        });
+        final var executor = Executors.newFixedThreadPool(8);
+        try {
+            final var results = IntStream.range(0, 1000)
+                    .mapToObj(i -> executor.submit(() -> encryptionService.encrypt("'place' changed: 'Utrecht' -> 'Amsterdam " + i + "'")))
+                    .toList();
+
+            final var decryptCipher = Cipher.getInstance(AES_ALGORITHM_MODE_PADDING);
+            decryptCipher.init(DECRYPT_MODE, AES_KEY, AES_IV);
+            for (int i = 0; i < results.size(); i++) {
+                final Future<String> encrypted = results.get(i);
+                final var result = new String(decryptCipher.doFinal(Base64.decode(encrypted.get())), UTF_8);
+                assertEquals("'place' changed: 'Utrecht' -> 'Amsterdam " + i + "'", result);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void discardPooledCipherWhenEncryptionFails() {
+        final var createdCiphers = new AtomicInteger();
+        final var encryptionService = new DefaultEncryptionService(() -> {
+            createdCiphers.incrementAndGet();
+            final var cipher = Cipher.getInstance("RSA/ECB/OAEPWITHSHA-256ANDMGF1PADDING");
+            cipher.init(ENCRYPT_MODE, PUBLIC_KEY);
+            return cipher;
+        });
+
+        assertThrows(SecurityException.class, () -> encryptionService.encrypt("a".repeat(1024)));
+        encryptionService.encrypt("'place' changed: 'Utrecht' -> 'Amsterdam'");
+        encryptionService.encrypt("'place' changed: 'Utrecht' -> 'Amsterdam'");
+
+        assertEquals(2, createdCiphers.get());
+    }
+
+    @Test
+    void failFastWhenCipherFactoryFails() {
+        final var exception = assertThrows(IllegalArgumentException.class,
+                () -> new DefaultEncryptionService(() -> Cipher.getInstance("Unknown/Cipher/Algorithm")));
+        assertEquals(NoSuchAlgorithmException.class, exception.getCause().getClass());
+    }
+
+    @Test
+    void encryptAndDecryptLargeValueWithHybridEncryption() throws Exception {
+        final var encryptionService = new HybridEncryptionService(PUBLIC_KEY);
+        final var plainDifferences = "'madrigals' collection changes :\n".repeat(1000);
+
+        final var encryptedDifferences = encryptionService.encrypt(plainDifferences);
+
+        assertEquals(plainDifferences, decryptHybrid(encryptedDifferences));
+    }
+
+    @Test
+    void reuseWrappedDataKeyUntilLimitIsReached() throws Exception {
+        final var encryptionService = new HybridEncryptionService(PUBLIC_KEY, Duration.ofHours(1), 2);
+
+        final var first = encryptionService.encrypt("first").split(":");
+        final var second = encryptionService.encrypt("second").split(":");
+        final var third = encryptionService.encrypt("third").split(":");
+
+        assertEquals(first[0], second[0]);
+        assertNotEquals(first[1], second[1]);
+        assertNotEquals(second[0], third[0]);
+        assertEquals("third", decryptHybrid(third[0] + ":" + third[1]));
+    }
+
+    private static String decryptHybrid(final String encryptedValue) throws GeneralSecurityException {
+        final var parts = encryptedValue.split(":");
+        final var unwrapCipher = Cipher.getInstance("RSA/ECB/OAEPWITHSHA-256ANDMGF1PADDING");
+        unwrapCipher.init(UNWRAP_MODE, PRIVATE_KEY);
+        final var dataKey = (SecretKey) unwrapCipher.unwrap(Base64.decode(parts[0]), "AES", SECRET_KEY);
+
+        final var payload = Base64.decode(parts[1]);
+        final var decryptCipher = Cipher.getInstance("AES/GCM/NoPadding");
+        decryptCipher.init(DECRYPT_MODE, dataKey, new GCMParameterSpec(128, payload, 0, 12));
+        return new String(decryptCipher.doFinal(Arrays.copyOfRange(payload, 12, payload.length)), UTF_8);
+    }
+}
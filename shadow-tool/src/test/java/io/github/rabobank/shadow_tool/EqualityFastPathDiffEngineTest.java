@@ -0,0 +1,60 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class EqualityFastPathDiffEngineTest {
+    private static final DummyObject dummyObjectA = new DummyObject("Bob", "Utrecht", List.of("Mirabel", "Bruno"));
+    private static final DummyObject dummyObjectB = new DummyObject("Bob", "Amsterdam", List.of("Bruno", "Mirabel", "Mirabel"));
+
+    private final DiffEngine delegate = mock(DiffEngine.class);
+
+    @Test
+    void shouldShortCircuitEqualResults() {
+        final var diffEngine = new EqualityFastPathDiffEngine<DummyObject>(delegate);
+
+        final var differences = diffEngine.compare(dummyObjectA, new DummyObject("Bob", "Utrecht", List.of("Mirabel", "Bruno")));
+
+        assertTrue(differences.isEmpty());
+        assertEquals(1, diffEngine.getShortCircuitedComparisons());
+        verifyNoInteractions(delegate);
+    }
+
+    @Test
+    void shouldInvokeDelegateOnMismatch() {
+        final var diffEngine = new EqualityFastPathDiffEngine<DummyObject>(delegate);
+        final List<Difference> expected = List.of(new ValueDifference("place", "Utrecht", "Amsterdam"));
+        when(delegate.compare(dummyObjectA, dummyObjectB)).thenReturn(expected);
+
+        assertEquals(expected, diffEngine.compare(dummyObjectA, dummyObjectB));
+        assertEquals(0, diffEngine.getShortCircuitedComparisons());
+    }
+
+    @Test
+    void shouldUseStructuralHashForCollections() {
+        final var diffEngine = new EqualityFastPathDiffEngine<DummyObject>(delegate, dummy -> dummy.name().hashCode());
+
+        final var differences = diffEngine.compareCollections(List.of(dummyObjectA), List.of(dummyObjectB), DummyObject.class);
+
+        assertTrue(differences.isEmpty());
+        assertEquals(1, diffEngine.getShortCircuitedComparisons());
+        verifyNoInteractions(delegate);
+    }
+
+    @Test
+    void shouldInvokeDelegateWhenCollectionSizesDiffer() {
+        final var diffEngine = new EqualityFastPathDiffEngine<DummyObject>(delegate, dummy -> dummy.name().hashCode());
+
+        diffEngine.compareCollections(List.of(dummyObjectA), List.of(dummyObjectA, dummyObjectB), DummyObject.class);
+
+        verify(delegate).compareCollections(List.of(dummyObjectA), List.of(dummyObjectA, dummyObjectB), DummyObject.class);
+    }
+}
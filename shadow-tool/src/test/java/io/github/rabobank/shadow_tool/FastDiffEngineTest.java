@@ -0,0 +1,102 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FastDiffEngineTest {
+    private final FastDiffEngine diffEngine = new FastDiffEngine();
+
+    @Test
+    void shouldFindNoDifferencesForEqualObjects() {
+        final var current = new DummyObject("Bob", "Utrecht", List.of("Mirabel", "Bruno"));
+        final var next = new DummyObject("Bob", "Utrecht", List.of("Mirabel", "Bruno"));
+
+        assertTrue(diffEngine.compare(current, next).isEmpty());
+        assertTrue(diffEngine.compareCollections(List.of(current), List.of(next), DummyObject.class).isEmpty());
+    }
+
+    @Test
+    void shouldFindDifferencesPerProperty() {
+        final var current = new DummyObject("Bob", "Utrecht", List.of("Mirabel", "Bruno"));
+        final var next = new DummyObject("Bob", "Amsterdam", List.of("Bruno", "Mirabel", "Mirabel"));
+
+        final var differences = diffEngine.compare(current, next);
+
+        assertEquals(List.of("place", "madrigals"), propertyNames(differences));
+        assertEquals("'place' changed: 'Utrecht' -> 'Amsterdam'", differences.get(0).prettyPrint());
+    }
+
+    @Test
+    void shouldWalkFieldsOfClassesWithoutEquals() {
+        final var current = new Customer("Bob", new Address("Croeselaan", 18));
+        final var next = new Customer("Bob", new Address("Croeselaan", 20));
+
+        assertEquals(List.of("address.number"), propertyNames(diffEngine.compare(current, next)));
+        assertTrue(diffEngine.compare(current, new Customer("Bob", new Address("Croeselaan", 18))).isEmpty());
+    }
+
+    @Test
+    void shouldCompareListsOfObjectsElementByElement() {
+        final var current = List.of(new Address("Croeselaan", 18), new Address("Dam", 1));
+        final var next = List.of(new Address("Croeselaan", 18), new Address("Damrak", 1));
+
+        assertEquals(List.of("[1].street"), propertyNames(diffEngine.compareCollections(current, next, Address.class)));
+    }
+
+    @Test
+    void shouldReportNullAndTypeMismatchesAsWhole() {
+        final var current = new Customer("Bob", null);
+        final var next = new Customer("Bob", new Address("Dam", 1));
+
+        assertEquals(List.of("address"), propertyNames(diffEngine.compare(current, next)));
+        assertEquals(List.of("root"), propertyNames(diffEngine.compare("Bob", 1)));
+    }
+
+    @Test
+    void shouldCompareArraysByContent() {
+        assertTrue(diffEngine.compare(new int[]{1, 2}, new int[]{1, 2}).isEmpty());
+        assertEquals(List.of("root"), propertyNames(diffEngine.compare(new int[]{1, 2}, new int[]{2, 1})));
+    }
+
+    @Test
+    void shouldOnlyCompareProjectedProperties() {
+        final var current = List.of(new Customer("Bob", new Address("Croeselaan", 18)), new Customer("Alice", new Address("Dam", 1)));
+        final var next = List.of(new Customer("Bob", new Address("Croeselaan", 20)), new Customer("Eve", new Address("Damrak", 1)));
+
+        final var excluded = new FastDiffEngine(new PropertyProjection(List.of(), List.of("address.number", "name")));
+        final var included = new FastDiffEngine(new PropertyProjection(List.of("address.number"), List.of()));
+
+        assertEquals(List.of("[1].address.street"), propertyNames(excluded.compareCollections(current, next, Customer.class)));
+        assertEquals(List.of("[0].address.number"), propertyNames(included.compareCollections(current, next, Customer.class)));
+    }
+
+    private static List<String> propertyNames(final List<Difference> differences) {
+        return differences.stream().map(Difference::getPropertyName).toList();
+    }
+
+    @SuppressWarnings("unused")
+    private static class Customer {
+        private final String name;
+        private final Address address;
+
+        Customer(final String name, final Address address) {
+            this.name = name;
+            this.address = address;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static class Address {
+        private final String street;
+        private final int number;
+
+        Address(final String street, final int number) {
+            this.street = street;
+            this.number = number;
+        }
+    }
+}
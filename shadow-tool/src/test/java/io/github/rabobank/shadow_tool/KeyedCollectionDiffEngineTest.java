@@ -0,0 +1,46 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyedCollectionDiffEngineTest {
+    private final KeyedCollectionDiffEngine<DummyObject> diffEngine = new KeyedCollectionDiffEngine<>(new FastDiffEngine(), DummyObject::name);
+
+    @Test
+    void shouldIgnoreOrderOfElements() {
+        final var current = List.of(dummy("Bob", "Utrecht"), dummy("Alice", "Amsterdam"));
+        final var next = List.of(dummy("Alice", "Amsterdam"), dummy("Bob", "Utrecht"));
+
+        assertTrue(diffEngine.compareCollections(current, next, DummyObject.class).isEmpty());
+    }
+
+    @Test
+    void shouldReportChangedAddedAndRemovedElements() {
+        final var current = List.of(dummy("Bob", "Utrecht"), dummy("Alice", "Amsterdam"), dummy("Carol", "Rotterdam"));
+        final var next = List.of(dummy("Dave", "Eindhoven"), dummy("Alice", "Den Haag"), dummy("Bob", "Utrecht"));
+
+        final var differences = diffEngine.compareCollections(current, next, DummyObject.class);
+
+        assertEquals(List.of("added[0]", "[1].place", "removed[2]"), differences.stream().map(Difference::getPropertyName).toList());
+        assertEquals("[1] 'place' changed: 'Amsterdam' -> 'Den Haag'", differences.get(1).prettyPrint());
+    }
+
+    @Test
+    void shouldMatchDuplicateKeysInOrder() {
+        final var current = List.of(dummy("Bob", "Utrecht"), dummy("Bob", "Amsterdam"));
+        final var next = Set.of(dummy("Bob", "Utrecht"));
+
+        final var differences = diffEngine.compareCollections(current, next, DummyObject.class);
+
+        assertEquals(List.of("removed[1]"), differences.stream().map(Difference::getPropertyName).toList());
+    }
+
+    private static DummyObject dummy(final String name, final String place) {
+        return new DummyObject(name, place, List.of());
+    }
+}
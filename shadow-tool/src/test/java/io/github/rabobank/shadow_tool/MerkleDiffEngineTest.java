@@ -0,0 +1,165 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MerkleDiffEngineTest {
+    private final MerkleDiffEngine diffEngine = new MerkleDiffEngine();
+
+    @Test
+    void shouldFindNoDifferencesForEqualObjects() {
+        final var current = new DummyObject("Bob", "Utrecht", List.of("Mirabel", "Bruno"));
+        final var next = new DummyObject("Bob", "Utrecht", List.of("Mirabel", "Bruno"));
+
+        assertTrue(diffEngine.compare(current, next).isEmpty());
+        assertTrue(diffEngine.compareCollections(List.of(current), List.of(next), DummyObject.class).isEmpty());
+        assertTrue(diffEngine.compare(new Customer("Bob", new Address("Dam", 1)), new Customer("Bob", new Address("Dam", 1))).isEmpty());
+    }
+
+    @Test
+    void shouldFindDifferencesPerProperty() {
+        final var current = new DummyObject("Bob", "Utrecht", List.of("Mirabel", "Bruno"));
+        final var next = new DummyObject("Bob", "Amsterdam", List.of("Bruno", "Mirabel", "Mirabel"));
+
+        final var differences = diffEngine.compare(current, next);
+
+        assertEquals(List.of("place", "madrigals"), propertyNames(differences));
+        assertEquals("'place' changed: 'Utrecht' -> 'Amsterdam'", differences.get(0).prettyPrint());
+    }
+
+    @Test
+    void shouldOnlyDescendIntoSubtreesThatDiffer() {
+        var current = new Node(0, null);
+        var next = new Node(0, null);
+        for (int i = 1; i < 20; i++) {
+            current = new Node(i, current);
+            next = new Node(i == 3 ? -3 : i, next);
+        }
+
+        assertEquals(List.of("child.child.child.child.child.child.child.child.child.child.child.child.child.child.child.child.value"),
+                propertyNames(diffEngine.compare(current, next)));
+    }
+
+    @Test
+    void shouldNotRelyOnEquals() {
+        final var current = new Account("NL01", 100);
+        final var next = new Account("NL01", 200);
+
+        assertTrue(new FastDiffEngine().compare(current, next).isEmpty());
+        assertEquals(List.of("balance"), propertyNames(diffEngine.compare(current, next)));
+    }
+
+    @Test
+    void shouldCompareListsOfObjectsElementByElement() {
+        final var current = List.of(new Address("Croeselaan", 18), new Address("Dam", 1));
+        final var next = List.of(new Address("Croeselaan", 18), new Address("Damrak", 1));
+
+        assertEquals(List.of("[1].street"), propertyNames(diffEngine.compareCollections(current, next, Address.class)));
+        assertEquals(List.of("root"), propertyNames(diffEngine.compareCollections(current, List.of(new Address("Dam", 1)), Address.class)));
+    }
+
+    @Test
+    void shouldReportNullAndTypeMismatchesAsWhole() {
+        final var current = new Customer("Bob", null);
+        final var next = new Customer("Bob", new Address("Dam", 1));
+
+        assertEquals(List.of("address"), propertyNames(diffEngine.compare(current, next)));
+        assertEquals(List.of("root"), propertyNames(diffEngine.compare("Bob", 1)));
+        assertEquals(List.of("root"), propertyNames(diffEngine.compare(1, 1L)));
+    }
+
+    @Test
+    void shouldCompareArraysByContent() {
+        assertTrue(diffEngine.compare(new int[]{1, 2}, new int[]{1, 2}).isEmpty());
+        assertEquals(List.of("root"), propertyNames(diffEngine.compare(new int[]{1, 2}, new int[]{2, 1})));
+    }
+
+    @Test
+    void shouldCompareSetsOfObjectsWithoutEqualsByTheirProperties() {
+        final var current = new LinkedHashSet<>(List.of(new Address("Croeselaan", 18), new Address("Dam", 1)));
+        final var next = new LinkedHashSet<>(List.of(new Address("Dam", 1), new Address("Croeselaan", 18)));
+
+        assertTrue(diffEngine.compare(current, next).isEmpty());
+        assertTrue(diffEngine.compare(List.of(current), List.of(next)).isEmpty());
+        assertEquals(List.of("root"), propertyNames(diffEngine.compare(current, Set.of(new Address("Dam", 1), new Address("Croeselaan", 20)))));
+    }
+
+    @Test
+    void shouldCompareContainersOfObjectsWithoutEqualsByTheirProperties() {
+        assertTrue(diffEngine.compare(new Address[]{new Address("Dam", 1)}, new Address[]{new Address("Dam", 1)}).isEmpty());
+        assertTrue(diffEngine.compare(Map.of("home", new Address("Dam", 1)), Map.of("home", new Address("Dam", 1))).isEmpty());
+        assertTrue(diffEngine.compare(Optional.of(new Address("Dam", 1)), Optional.of(new Address("Dam", 1))).isEmpty());
+        assertEquals(List.of("root"), propertyNames(diffEngine.compare(new Address[]{new Address("Dam", 1)}, new Address[]{new Address("Dam", 2)})));
+        assertEquals(List.of("root"), propertyNames(diffEngine.compare(Map.of("home", new Address("Dam", 1)), Map.of("home", new Address("Dam", 2)))));
+    }
+
+    @Test
+    void shouldOnlyCompareProjectedProperties() {
+        final var current = List.of(new Customer("Bob", new Address("Croeselaan", 18)), new Customer("Alice", new Address("Dam", 1)));
+        final var next = List.of(new Customer("Bob", new Address("Croeselaan", 20)), new Customer("Eve", new Address("Damrak", 1)));
+
+        final var excluded = new MerkleDiffEngine(new PropertyProjection(List.of(), List.of("address.number", "name")));
+        final var included = new MerkleDiffEngine(new PropertyProjection(List.of("address.number"), List.of()));
+
+        assertEquals(List.of("[1].address.street"), propertyNames(excluded.compareCollections(current, next, Customer.class)));
+        assertEquals(List.of("[0].address.number"), propertyNames(included.compareCollections(current, next, Customer.class)));
+    }
+
+    private static List<String> propertyNames(final List<Difference> differences) {
+        return differences.stream().map(Difference::getPropertyName).toList();
+    }
+
+    @SuppressWarnings("unused")
+    private static class Customer {
+        private final String name;
+        private final Address address;
+
+        Customer(final String name, final Address address) {
+            this.name = name;
+            this.address = address;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static class Address {
+        private final String street;
+        private final int number;
+
+        Address(final String street, final int number) {
+            this.street = street;
+            this.number = number;
+        }
+    }
+
+    private record Node(int value, Node child) {
+    }
+
+    @SuppressWarnings("unused")
+    private static class Account {
+        private final String number;
+        private final int balance;
+
+        Account(final String number, final int balance) {
+            this.number = number;
+            this.balance = balance;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof Account account && number.equals(account.number);
+        }
+
+        @Override
+        public int hashCode() {
+            return number.hashCode();
+        }
+    }
+}
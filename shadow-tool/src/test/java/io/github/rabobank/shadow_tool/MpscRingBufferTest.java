@@ -0,0 +1,71 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MpscRingBufferTest {
+
+    @Test
+    void shouldRoundCapacityUpToPowerOfTwo() {
+        assertEquals(1, new MpscRingBuffer<>(1).capacity());
+        assertEquals(8, new MpscRingBuffer<>(5).capacity());
+        assertEquals(8, new MpscRingBuffer<>(8).capacity());
+    }
+
+    @Test
+    void shouldRejectCapacityOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>(0));
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>(MpscRingBuffer.MAX_CAPACITY + 1));
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void shouldRejectWhenFullAndAcceptAgainAfterPoll() {
+        final var buffer = new MpscRingBuffer<String>(2);
+
+        assertTrue(buffer.offer("a"));
+        assertTrue(buffer.offer("b"));
+        assertFalse(buffer.offer("c"));
+
+        assertEquals("a", buffer.poll());
+        assertTrue(buffer.offer("c"));
+        assertEquals("b", buffer.poll());
+        assertEquals("c", buffer.poll());
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void shouldNotLoseElementsWithConcurrentProducers() throws InterruptedException {
+        final var buffer = new MpscRingBuffer<Integer>(1 << 16);
+        final var executor = Executors.newFixedThreadPool(4);
+        for (int producer = 0; producer < 4; producer++) {
+            final var offset = producer * 10_000;
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    buffer.offer(offset + i);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        final Set<Integer> polled = new HashSet<>();
+        Integer element;
+        while ((element = buffer.poll()) != null) {
+            polled.add(element);
+        }
+
+        assertEquals(40_000, polled.size());
+    }
+}
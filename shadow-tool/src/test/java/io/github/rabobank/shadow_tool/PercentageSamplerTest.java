@@ -0,0 +1,53 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PercentageSamplerTest {
+
+    @Test
+    void shouldSampleFractionsOfAPercent() {
+        final var sampler = new PercentageSampler(0.05);
+
+        final var sampled = IntStream.range(0, 1_000_000).filter(ignored -> sampler.shouldSample()).count();
+
+        assertEquals(0.0005, sampler.getSamplingRate(), 0.0);
+        assertTrue(sampled >= 350 && sampled <= 650, "Sampled " + sampled);
+    }
+
+    @Test
+    void shouldConsistentlySampleTheSameKeys() {
+        final var sampler = new PercentageSampler(50);
+
+        LongStream.range(0, 1000).forEach(key -> {
+            final var sampled = sampler.shouldSample(key);
+            IntStream.range(0, 10).forEach(ignored -> assertEquals(sampled, sampler.shouldSample(key)));
+            assertEquals(sampled, new PercentageSampler(50).shouldSample(Long.valueOf(key)));
+        });
+    }
+
+    @Test
+    void shouldSampleTheRateOfSequentialKeys() {
+        final var sampler = new PercentageSampler(10);
+
+        final var sampled = LongStream.range(0, 100_000).filter(sampler::shouldSample).count();
+
+        assertTrue(sampled >= 9_000 && sampled <= 11_000, "Sampled " + sampled);
+    }
+
+    @Test
+    void shouldKeepSamplingKeysWhenTheRateIncreases() {
+        final var lowRate = new PercentageSampler(5);
+        final var highRate = new PercentageSampler(10);
+
+        IntStream.range(0, 10_000)
+                .mapToObj(i -> "customer-" + i)
+                .filter(lowRate::shouldSample)
+                .forEach(key -> assertTrue(highRate.shouldSample(key)));
+    }
+}
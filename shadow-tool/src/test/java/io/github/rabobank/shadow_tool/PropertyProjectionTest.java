@@ -0,0 +1,86 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PropertyProjectionTest {
+
+    @Test
+    void shouldCompareEverythingByDefault() {
+        assertTrue(PropertyProjection.ALL.isCompared("address.street"));
+        assertTrue(PropertyProjection.ALL.isCompared("accounts[2].balance"));
+    }
+
+    @Test
+    void shouldLeaveOutExcludedPathsAndEverythingBelow() {
+        final var projection = new PropertyProjection(List.of(), List.of("audit", "accounts.balance"));
+
+        assertFalse(projection.isCompared("audit"));
+        assertFalse(projection.isCompared("audit.createdAt"));
+        assertFalse(projection.isCompared("accounts[2].balance"));
+        assertFalse(projection.isCompared("accounts/2/balance"));
+        assertTrue(projection.isCompared("accounts[2].number"));
+        assertTrue(projection.isCompared("name"));
+    }
+
+    @Test
+    void shouldOnlyCompareIncludedPathsAndTheirParents() {
+        final var projection = new PropertyProjection(List.of("address.street", "accounts"), List.of("accounts.*.createdAt"));
+
+        assertTrue(projection.isCompared("address"));
+        assertTrue(projection.isCompared("address.street"));
+        assertFalse(projection.isCompared("address.number"));
+        assertFalse(projection.isCompared("name"));
+        assertTrue(projection.isCompared("accounts[1].balance.amount"));
+        assertFalse(projection.isCompared("accounts[1].balance.createdAt"));
+    }
+
+    @Test
+    void shouldApplyWildcardsToNamedSiblings() {
+        final var projection = new PropertyProjection(List.of(), List.of("*.createdAt", "address.number"));
+
+        assertFalse(projection.isCompared("address.createdAt"));
+        assertFalse(projection.isCompared("address.number"));
+        assertFalse(projection.isCompared("audit.createdAt"));
+        assertTrue(projection.isCompared("address.street"));
+        assertTrue(projection.isCompared("createdAt"));
+    }
+
+    @Test
+    void shouldFindPropertiesThatAreNeverCompared() {
+        final var projection = new PropertyProjection(List.of(), List.of("address.number", "accounts.balance", "accounts.address"));
+
+        assertEquals(Map.of(Address.class, Set.of("number"), Account.class, Set.of("address", "balance")), projection.uncomparedProperties(Customer.class));
+    }
+
+    @Test
+    void shouldFindPropertiesOutsideOfIncludedPaths() {
+        final var projection = new PropertyProjection(List.of("address.street"), List.of());
+
+        assertEquals(Map.of(Customer.class, Set.of("name", "accounts"), Address.class, Set.of("number")), projection.uncomparedProperties(Customer.class));
+    }
+
+    @Test
+    void shouldRejectEmptyPaths() {
+        assertThrows(IllegalArgumentException.class, () -> new PropertyProjection(List.of(""), List.of()));
+        assertThrows(IllegalArgumentException.class, () -> new PropertyProjection(List.of(), List.of("address..street")));
+    }
+
+    private record Customer(String name, Address address, List<Account> accounts) {
+    }
+
+    private record Account(String number, Address address, BigDecimal balance) {
+    }
+
+    private record Address(String street, String number) {
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultSnapshotTest {
+
+    @Test
+    void shouldFindNoDifferencesForEqualObjects() {
+        final var snapshot = snapshotOf(new Customer("Bob", new Address("Croeselaan", 18)));
+
+        assertTrue(snapshot.compareWith(new Customer("Bob", new Address("Croeselaan", 18))).isEmpty());
+        assertTrue(snapshotOf(List.of("Mirabel", "Bruno")).compareWith(List.of("Mirabel", "Bruno")).isEmpty());
+    }
+
+    @Test
+    void shouldFindDifferencesLikeTheFastDiffEngine() {
+        final var current = new DummyObject("Bob", "Utrecht", List.of("Mirabel", "Bruno"));
+        final var next = new DummyObject("Bob", "Amsterdam", List.of("Bruno", "Mirabel", "Mirabel"));
+
+        final var differences = snapshotOf(current).compareWith(next);
+
+        assertEquals(propertyNames(new FastDiffEngine().compare(current, next)), propertyNames(differences));
+        assertEquals("'place' changed: 'Utrecht' -> 'Amsterdam'", differences.get(0).prettyPrint());
+    }
+
+    @Test
+    void shouldCompareListsOfObjectsElementByElement() {
+        final var snapshot = snapshotOf(List.of(new Address("Croeselaan", 18), new Address("Dam", 1)));
+
+        assertEquals(List.of("[1].street"), propertyNames(snapshot.compareWith(List.of(new Address("Croeselaan", 18), new Address("Damrak", 1)))));
+        assertEquals(List.of("root"), propertyNames(snapshot.compareWith(List.of(new Address("Croeselaan", 18)))));
+    }
+
+    @Test
+    void shouldDescribeObjectsThatDifferAsWhole() {
+        final var differences = snapshotOf(new Customer("Bob", new Address("Dam", 1))).compareWith(new Customer("Bob", null));
+
+        assertEquals(List.of("address"), propertyNames(differences));
+        assertEquals("'address' changed: 'Address' -> 'null'", differences.get(0).prettyPrint());
+    }
+
+    @Test
+    void shouldKeepLargeStringsAsDigest() {
+        final var payload = "a".repeat(ResultSnapshot.MAX_VALUE_LENGTH + 1);
+        final var snapshot = snapshotOf(new Customer(payload, null));
+
+        assertTrue(snapshot.compareWith(new Customer("a".repeat(ResultSnapshot.MAX_VALUE_LENGTH + 1), null)).isEmpty());
+        final var differences = snapshot.compareWith(new Customer(payload + "b", null));
+        assertEquals(List.of("name"), propertyNames(differences));
+        assertTrue(differences.get(0).prettyPrint().startsWith("'name' changed: '<1025 characters with hash "));
+    }
+
+    @Test
+    void shouldOnlyKeepProjectedProperties() {
+        final var projection = new PropertyProjection(List.of(), List.of("address.number", "name"));
+        final var snapshot = ResultSnapshot.of(new Customer("Bob", new Address("Croeselaan", 18)), projection);
+
+        assertTrue(snapshot.compareWith(new Customer("Eve", new Address("Croeselaan", 20))).isEmpty());
+        assertEquals(List.of("address.street"), propertyNames(snapshot.compareWith(new Customer("Eve", new Address("Dam", 20)))));
+    }
+
+    @Test
+    void shouldKeepSetsOfObjectsAsDigest() {
+        final var snapshot = snapshotOf(new LinkedHashSet<>(List.of(new Address("Croeselaan", 18), new Address("Dam", 1))));
+
+        assertTrue(snapshot.compareWith(new LinkedHashSet<>(List.of(new Address("Dam", 1), new Address("Croeselaan", 18)))).isEmpty());
+        final var differences = snapshot.compareWith(new LinkedHashSet<>(List.of(new Address("Croeselaan", 18), new Address("Dam", 2))));
+        assertEquals(List.of("root"), propertyNames(differences));
+        assertTrue(differences.get(0).prettyPrint().startsWith("'root' changed: '<LinkedHashSet of 2 elements with hash "));
+    }
+
+    @Test
+    void shouldKeepMapsAndArraysOfObjectsAsDigest() {
+        final var addresses = new Address[]{new Address("Croeselaan", 18), new Address("Dam", 1)};
+        final var snapshot = snapshotOf(new Customer("Bob", null, Map.of("home", new Address("Dam", 1)), addresses));
+
+        assertTrue(snapshot.compareWith(new Customer("Bob", null, Map.of("home", new Address("Dam", 1)),
+                new Address[]{new Address("Croeselaan", 18), new Address("Dam", 1)})).isEmpty());
+        assertEquals(List.of("addressesByType", "previousAddresses"), propertyNames(snapshot.compareWith(new Customer("Bob", null,
+                Map.of("home", new Address("Dam", 2)), new Address[]{new Address("Dam", 1), new Address("Croeselaan", 18)}))));
+    }
+
+    private static ResultSnapshot snapshotOf(final Object result) {
+        return ResultSnapshot.of(result, PropertyProjection.ALL);
+    }
+
+    private static List<String> propertyNames(final List<Difference> differences) {
+        return differences.stream().map(Difference::getPropertyName).toList();
+    }
+
+    @SuppressWarnings("unused")
+    private static class Customer {
+        private final String name;
+        private final Address address;
+        private final Map<String, Address> addressesByType;
+        private final Address[] previousAddresses;
+
+        Customer(final String name, final Address address) {
+            this(name, address, null, null);
+        }
+
+        Customer(final String name, final Address address, final Map<String, Address> addressesByType, final Address[] previousAddresses) {
+            this.name = name;
+            this.address = address;
+            this.addressesByType = addressesByType;
+            this.previousAddresses = previousAddresses;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static class Address {
+        private final String street;
+        private final int number;
+
+        Address(final String street, final int number) {
+            this.street = street;
+            this.number = number;
+        }
+    }
+}
@@ -0,0 +1,1159 @@
+package io.github.rabobank.shadow_tool;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.github.rabobank.shadow_tool.ShadowFlow.ShadowFlowBuilder;
+import org.javers.core.metamodel.clazz.ValueObjectDefinition;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ShadowFlowTest {
+
+    // The shadow flow, its reporters and its circuit breaker all log with their own logger
+    private static final Logger logger = (Logger) LoggerFactory.getLogger(ShadowFlow.class.getPackageName());
+    private static ListAppender<ILoggingEvent> listAppender;
+
+    private static final DummyObject dummyObjectA = new DummyObject("Bob", "Utrecht", List.of("Mirabel", "Bruno"));
+    private static final DummyObject dummyObjectB = new DummyObject("Bob", "Amsterdam", List.of("Bruno", "Mirabel", "Mirabel"));
+
+    @BeforeAll
+    static void init() {
+        listAppender = new ListAppender<>();
+        logger.addAppender(listAppender);
+        listAppender.start();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        listAppender.list.clear();
+    }
+
+    @ParameterizedTest
+    @MethodSource("executorArguments")
+    void shouldAlwaysReturnCurrentFlow(final ExecutorService executorService) {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(executorService).build();
+
+        final var result = shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertEquals(dummyObjectA, result);
+    }
+
+    @ParameterizedTest
+    @MethodSource("executorArguments")
+    void shouldAlwaysReturnCurrentFlowReactive(final ExecutorService executorService) {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(executorService).build();
+
+        final var result = shadowFlow.compare(
+                Mono.just(dummyObjectA),
+                Mono.just(dummyObjectB)
+        );
+
+        assertEquals(dummyObjectA, result.block());
+    }
+
+    @ParameterizedTest
+    @MethodSource("executorArguments")
+    void shouldCallCurrentFlowOnlyOnce(final ExecutorService executorService) {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(executorService).build();
+
+        final var callCounter = new AtomicInteger(0);
+        shadowFlow.compare(
+                Mono.fromCallable(() -> {
+                    callCounter.incrementAndGet();
+                    return dummyObjectA;
+                }),
+                Mono.just(dummyObjectB)
+        ).block();
+
+        assertEquals(1, callCounter.get());
+    }
+
+    @Test
+    void shouldAlwaysReturnCurrentFlowReactiveWithErrorInShadowFlow() {
+        final List<Throwable> exceptions = new ArrayList<>();
+
+        final var result = createBlockingShadowFlow(100).compare(
+                Mono.just(dummyObjectA),
+                Mono.<DummyObject>error(new Exception("Something happened in the shadow flow!")).doOnError(exceptions::add)
+        );
+
+        assertEquals(dummyObjectA, result.block());
+        assertEquals(1, exceptions.size());
+        assertEquals("Something happened in the shadow flow!", exceptions.get(0).getMessage());
+    }
+
+    @SuppressWarnings("ReactiveStreamsUnusedPublisher")
+    @ParameterizedTest
+    @MethodSource("executorArguments")
+    void shouldAlwaysReturnCurrentFlowReactiveWithErrorInCurrentFlow(final ExecutorService executorService) {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(executorService).build();
+
+        final var result = shadowFlow.compare(
+                Mono.error(new IllegalArgumentException("Something happened in the current flow!")),
+                Mono.just(dummyObjectB)
+        );
+
+        assertThrows(IllegalArgumentException.class, result::block, "Something happened in the current flow!");
+    }
+
+    @Test
+    void verifyDifferencesAreLoggedReactive() {
+        createBlockingShadowFlow(100).compare(
+                Mono.just(dummyObjectA),
+                Mono.just(dummyObjectB)
+        ).block();
+
+        assertThatLogContains("The following differences were found: place, madrigals");
+    }
+
+    @Test
+    void shouldRunShadowFlowAsynchronouslyByDefaultReactive() {
+        final Executable shadowCall = () -> new ShadowFlowBuilder<DummyObject>(100).build().compare(
+                Mono.just(dummyObjectA),
+                Mono.just(dummyObjectB).delayElement(Duration.ofSeconds(5))
+        ).block(Duration.ofMillis(100));
+
+        assertDoesNotThrow(shadowCall);
+    }
+
+    @Test
+    void shouldRunShadowFlowMonoCollections() {
+        createBlockingShadowFlow(100).compareCollections(
+                Mono.just(List.of(dummyObjectA)),
+                Mono.just(List.of(dummyObjectB)),
+                DummyObject.class
+        ).block();
+
+        assertThatLogContains("The following differences were found: place, madrigals");
+    }
+
+    @Test
+    void shouldRunShadowFlowMonoCollectionsWithVariables() {
+        final var asyncCallA = List.of(dummyObjectA);
+        final var asyncCallB = List.of(dummyObjectB);
+
+        createBlockingShadowFlow(100).compareCollections(
+                Mono.just(asyncCallA),
+                Mono.just(asyncCallB),
+                DummyObject.class
+        ).block();
+
+        assertThatLogContains("The following differences were found: place, madrigals");
+    }
+
+    // Same test, slightly different input type to validate "? extends Collection<T>"
+    @Test
+    void shouldRunShadowFlowMonoWithCollectionExtendWithVariables() {
+        final var asyncCallA = Mono.just(List.of(dummyObjectA));
+        final var asyncCallB = Mono.just(List.of(dummyObjectB));
+
+        createBlockingShadowFlow(100).compareCollections(
+                asyncCallA,
+                asyncCallB,
+                DummyObject.class
+        ).block();
+
+        assertThatLogContains("The following differences were found: place, madrigals");
+    }
+
+    @Test
+    void shouldPassCurrentFluxThroughUntouched() {
+        final var result = createBlockingShadowFlow(100).compare(
+                Flux.just(dummyObjectA, dummyObjectB),
+                Flux.just(dummyObjectB)
+        ).collectList().block();
+
+        assertEquals(List.of(dummyObjectA, dummyObjectB), result);
+    }
+
+    @Test
+    void verifyDifferencesAreLoggedForFlux() {
+        createBlockingShadowFlow(100).compare(
+                Flux.just(dummyObjectA, dummyObjectA, dummyObjectA),
+                Flux.just(dummyObjectA, dummyObjectB)
+        ).blockLast();
+
+        await().atMost(5, SECONDS).untilAsserted(() ->
+                assertThatLogContains("The following differences were found: [1].place, [1].madrigals, removed[2]"));
+    }
+
+    @Test
+    void verifyEverySurplusElementIsLoggedForFlux() {
+        createBlockingShadowFlow(100).compare(
+                Flux.just(dummyObjectA),
+                Flux.just(dummyObjectA, dummyObjectB, dummyObjectB)
+        ).blockLast();
+        createBlockingShadowFlow(100).compare(
+                Flux.just(dummyObjectA, dummyObjectA, dummyObjectA),
+                Flux.just(dummyObjectA)
+        ).blockLast();
+
+        await().atMost(5, SECONDS).untilAsserted(() -> {
+            assertThatLogContains("The following differences were found: added[1], added[2]");
+            assertThatLogContains("The following differences were found: removed[1], removed[2]");
+        });
+    }
+
+    @Test
+    void shouldCancelFluxComparisonWhenNewFlowFallsBehindWindow() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withStreamWindow(2)
+                .build();
+
+        final var result = shadowFlow.compare(
+                Flux.range(0, 10).map(ignored -> dummyObjectA),
+                Flux.range(0, 10).map(ignored -> dummyObjectB).delayElements(Duration.ofSeconds(1))
+        ).collectList().block(Duration.ofSeconds(1));
+
+        assertEquals(10, result.size());
+        assertEquals(1, listAppender.list.stream()
+                .filter(event -> event.getFormattedMessage().contains("The new flow fell more than 2 elements behind, the comparison is cancelled"))
+                .count());
+    }
+
+    @Test
+    void verifyDifferencesFoundBeforeFluxComparisonIsCancelledAreLogged() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withStreamWindow(2)
+                .build();
+
+        shadowFlow.compare(
+                Flux.range(0, 10).map(ignored -> dummyObjectA).delayElements(Duration.ofMillis(20)),
+                Flux.concat(Flux.just(dummyObjectB), Flux.never())
+        ).blockLast(Duration.ofSeconds(5));
+
+        await().atMost(5, SECONDS).untilAsserted(() ->
+                assertThatLogContains("The following differences were found: [0].place, [0].madrigals"));
+        assertThatLogContains("The new flow fell more than 2 elements behind, the comparison is cancelled");
+    }
+
+    @Test
+    void shouldRunShadowFlowAsynchronouslyByDefault() {
+        final var isShadowFlowDone = new AtomicBoolean(false);
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100).build();
+        final var result = shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> {
+                    await().atMost(1, SECONDS);
+                    isShadowFlowDone.set(true);
+                    return dummyObjectB;
+                }
+        );
+        assertEquals(dummyObjectA, result);
+        assertFalse(isShadowFlowDone.get());
+    }
+
+    @ParameterizedTest
+    @MethodSource("verifyLogMessageArguments")
+    void verifyLogs(final int percentage, final String message) {
+        final var shadowFlow = createBlockingShadowFlow(percentage);
+        shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertThatLogContains(message);
+    }
+
+    @Test
+    void verifyEncryptedValueDifferencesAreLogged() {
+        final var mockedEncryptionService = mock(EncryptionService.class);
+        final var shadowFlow = new ShadowFlow<>(100, new SameThreadExecutorService(), mockedEncryptionService, null);
+        when(mockedEncryptionService.encrypt(anyString())).thenReturn("<encrypted-data>");
+
+        shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertThatLogContains("The following differences were found: place, madrigals. Encrypted values: <encrypted-data>");
+    }
+
+    @Test
+    void verifyAddedObjectsAreLogged() {
+        record Line(String product) {
+        }
+        record Order(List<Line> lines) {
+        }
+        final var shadowFlow = new ShadowFlowBuilder<Order>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withEncryptionService(NoopEncryptionService.INSTANCE)
+                .build();
+
+        shadowFlow.compare(
+                () -> new Order(List.of(new Line("bike"))),
+                () -> new Order(List.of(new Line("bike"), new Line("helmet")))
+        );
+
+        assertThatLogContains("The following differences were found: ");
+        assertTrue(listAppender.list.stream().noneMatch(event -> event.getFormattedMessage().contains("Failed to run the shadow flow")));
+    }
+
+    @Test
+    void verifyJaversCanBeConfiguredPerInstance() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withJavers(javers -> javers.registerValueObject(new ValueObjectDefinition(DummyObject.class, List.of("place"))))
+                .build();
+
+        shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertThatLogContains("The following differences were found: madrigals");
+    }
+
+    @Test
+    void verifyExcludedPathsAreNotReported() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withExcludedPaths("place")
+                .build();
+
+        shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertThatLogContains("The following differences were found: madrigals");
+    }
+
+    @Test
+    void verifyExcludedPathsAreIgnoredByJaversWithDomainType() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withDomainType(DummyObject.class)
+                .withExcludedPaths("place")
+                .build();
+
+        shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertThatLogContains("The following differences were found: madrigals");
+    }
+
+    @Test
+    void verifyDifferencesAreLoggedWithMerkleDiffEngine() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withDiffEngine(new MerkleDiffEngine())
+                .withExcludedPaths("madrigals")
+                .build();
+
+        shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertThatLogContains("The following differences were found: place");
+    }
+
+    @Test
+    void verifyDifferencesAreLoggedWithCurrentResultSnapshots() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withDiffEngine(new FastDiffEngine())
+                .withCurrentResultSnapshots()
+                .build();
+
+        shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertThatLogContains("The following differences were found: place, madrigals");
+    }
+
+    @Test
+    void verifyDifferencesInSetsAreLoggedWithCurrentResultSnapshots() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withCurrentResultSnapshots()
+                .build();
+
+        shadowFlow.compareCollections(() -> Set.of(dummyObjectA, dummyObjectB), () -> Set.of(dummyObjectB, dummyObjectA), DummyObject.class);
+        assertTrue(listAppender.list.stream().noneMatch(event -> event.getFormattedMessage().contains("The following differences were found")));
+
+        shadowFlow.compareCollections(() -> Set.of(dummyObjectA, dummyObjectB), () -> Set.of(dummyObjectA), DummyObject.class);
+        assertThatLogContains("The following differences were found: root");
+    }
+
+    @Test
+    void verifyCurrentResultSnapshotsThatFailAreReportedAsDropped() {
+        final var sampler = mock(Sampler.class);
+        when(sampler.shouldSample()).thenReturn(true);
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(0)
+                .withExecutor(new SameThreadExecutorService())
+                .withDiffEngine(new FastDiffEngine())
+                .withCurrentResultSnapshots()
+                .withSampler(sampler)
+                .build();
+        final List<DummyObject> unreadableResult = new AbstractList<>() {
+            @Override
+            public DummyObject get(final int index) {
+                throw new IllegalStateException("The result can not be read");
+            }
+
+            @Override
+            public int size() {
+                return 1;
+            }
+        };
+
+        shadowFlow.compareCollections(() -> unreadableResult, () -> List.of(dummyObjectA), DummyObject.class);
+
+        verify(sampler).onShadowCallDropped();
+        verify(sampler, never()).onShadowCallCompleted(anyLong());
+    }
+
+    @Test
+    void verifyCurrentResultSnapshotsRejectOtherComparisons() {
+        assertThrows(IllegalArgumentException.class, () -> new ShadowFlowBuilder<DummyObject>(100)
+                .withJavers(javers -> javers.registerValueObject(DummyObject.class))
+                .withCurrentResultSnapshots()
+                .build());
+        assertThrows(IllegalArgumentException.class, () -> new ShadowFlowBuilder<DummyObject>(100)
+                .withDiffEngine(new MerkleDiffEngine())
+                .withCurrentResultSnapshots()
+                .build());
+        assertThrows(IllegalArgumentException.class, () -> new ShadowFlowBuilder<DummyObject>(100)
+                .withDiffEngine(new FastDiffEngine())
+                .withKeyedCollectionComparison(DummyObject::name)
+                .withCurrentResultSnapshots()
+                .build());
+        assertThrows(IllegalArgumentException.class, () -> new ShadowFlowBuilder<DummyObject>(100)
+                .withDiffEngine(new FastDiffEngine())
+                .withEqualityFastPath()
+                .withCurrentResultSnapshots()
+                .build());
+    }
+
+    @Test
+    void verifyDomainTypeIsWarmedUpWhenBuilt() {
+        final var diffEngine = mock(DiffEngine.class);
+
+        new ShadowFlowBuilder<DummyObject>(100)
+                .withDiffEngine(diffEngine)
+                .withEqualityFastPath()
+                .withDomainType(DummyObject.class)
+                .build();
+
+        verify(diffEngine).warmUp(DummyObject.class);
+    }
+
+    @Test
+    void verifyDifferencesAreLoggedWithFastDiffEngine() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withDiffEngine(new FastDiffEngine())
+                .build();
+
+        shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertThatLogContains("The following differences were found: place, madrigals");
+    }
+
+    @Test
+    void verifyEqualResultsAreShortCircuited() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withEqualityFastPath()
+                .build();
+
+        shadowFlow.compare(() -> dummyObjectA, () -> dummyObjectA);
+        shadowFlow.compare(() -> dummyObjectA, () -> dummyObjectB);
+
+        assertEquals(1, shadowFlow.getShortCircuitedComparisons());
+        assertThatLogContains("The following differences were found: place, madrigals");
+    }
+
+    @Test
+    void verifyDifferencesAreReportedToCustomReporter() {
+        final List<DifferenceReport> reports = new ArrayList<>();
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withDifferenceReporter(reports::add)
+                .build();
+
+        shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertEquals(1, reports.size());
+        assertEquals(List.of("place", "madrigals"), reports.get(0).differences().stream().map(Difference::getPropertyName).toList());
+    }
+
+    @Test
+    void verifyDifferencesAreLoggedAsynchronouslyInBatches() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withEncryptionService(NoopEncryptionService.INSTANCE)
+                .withAsyncReporting(16, 16)
+                .build();
+
+        await().atMost(5, SECONDS).until(() -> {
+            // The drainer may take out the first comparison on its own, then the next two are tried in a batch
+            shadowFlow.compare(() -> dummyObjectA, () -> dummyObjectB);
+            shadowFlow.compare(() -> dummyObjectA, () -> dummyObjectB);
+            return listAppender.list.stream().anyMatch(event -> event.getFormattedMessage().contains("Encrypted values of batch"));
+        });
+        assertThatLogContains("The following differences were found: place, madrigals. Encrypted values: batch ");
+    }
+
+    @Test
+    void verifyBufferedDifferencesAreReportedWhenClosed() {
+        final List<DifferenceReport> reports = new CopyOnWriteArrayList<>();
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withDifferenceReporter(reports::add)
+                .withAsyncReporting(16, 16)
+                .build();
+
+        shadowFlow.compare(() -> dummyObjectA, () -> dummyObjectB);
+        shadowFlow.close();
+
+        assertEquals(1, reports.size());
+        shadowFlow.compare(() -> dummyObjectA, () -> dummyObjectB);
+        assertEquals(1, shadowFlow.getDroppedReports());
+    }
+
+    @Test
+    void verifyBatchedDifferencesAreEncryptedPerComparisonWithPublicKeyEncryption() throws Exception {
+        final var keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        final var reporter = new LoggingDifferenceReporter(new PublicKeyEncryptionService(keyPairGenerator.generateKeyPair().getPublic()));
+        final List<DifferenceReport> reports = new ArrayList<>();
+        new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withDifferenceReporter(reports::add)
+                .build()
+                .compare(() -> dummyObjectA, () -> dummyObjectB);
+        final var differences = reports.get(0).differences();
+
+        reporter.reportBatch(List.of(
+                new DifferenceReport("default", differences, Map.of("requestId", "1")),
+                new DifferenceReport("default", differences, Map.of("requestId", "2"))));
+
+        assertEquals(2, listAppender.list.size());
+        for (int i = 0; i < 2; i++) {
+            final var event = listAppender.list.get(i);
+            assertEquals(String.valueOf(i + 1), event.getMDCPropertyMap().get("requestId"));
+            assertTrue(event.getFormattedMessage().contains("The following differences were found: place, madrigals. Encrypted values: "));
+            assertFalse(event.getFormattedMessage().contains("batch"));
+        }
+    }
+
+    @Test
+    void verifyDifferencesAreAggregated() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withEncryptionService(NoopEncryptionService.INSTANCE)
+                .withAggregatedReporting(Duration.ofMillis(100), 1)
+                .build();
+
+        IntStream.range(0, 3).forEach(ignored -> shadowFlow.compare(() -> dummyObjectA, () -> dummyObjectB));
+
+        await().atMost(5, SECONDS).untilAsserted(() ->
+                assertThatLogContains("comparisons: madrigals, place. Encrypted values of 1 samples: "));
+        assertTrue(listAppender.list.stream()
+                .noneMatch(event -> event.getFormattedMessage().contains("The following differences were found: ")));
+    }
+
+    @Test
+    void verifyMetricsAreRecordedForEveryStage() {
+        final var metrics = mock(ShadowFlowMetrics.class);
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withEncryptionService(value -> "<encrypted-data>")
+                .withInstanceName("metered")
+                .withMetrics(metrics)
+                .build();
+
+        shadowFlow.compare(() -> dummyObjectA, () -> dummyObjectB);
+
+        verify(metrics).recordSampling("metered", true);
+        verify(metrics).recordStage(eq("metered"), eq(ShadowFlowMetrics.Stage.NEW_FLOW_CALL), anyLong(), eq(true));
+        verify(metrics).recordStage(eq("metered"), eq(ShadowFlowMetrics.Stage.DIFF), anyLong(), eq(true));
+        verify(metrics).recordStage(eq("metered"), eq(ShadowFlowMetrics.Stage.ENCRYPT), anyLong(), eq(true));
+        verify(metrics).recordStage(eq("metered"), eq(ShadowFlowMetrics.Stage.REPORT), anyLong(), eq(true));
+        verify(metrics).recordComparison("metered", true);
+    }
+
+    @Test
+    void verifyFailedNewFlowIsRecordedReactive() {
+        final var metrics = mock(ShadowFlowMetrics.class);
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withMetrics(metrics)
+                .build();
+
+        shadowFlow.compare(
+                Mono.just(dummyObjectA),
+                Mono.<DummyObject>error(new IllegalStateException("Something happened in the shadow flow!"))
+        ).block();
+
+        verify(metrics).recordStage(eq("default"), eq(ShadowFlowMetrics.Stage.NEW_FLOW_CALL), anyLong(), eq(false));
+        verify(metrics, never()).recordComparison(anyString(), anyBoolean());
+    }
+
+    @Test
+    void verifyInstanceNameCanBeOverridden() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withInstanceName("custom-identity")
+                .build();
+
+        shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertThatLogContains("[instance=custom-identity] The following differences were found: place, madrigals");
+    }
+
+    @Test
+    void verifyPercentageWorks() {
+        final var counter = new AtomicInteger();
+        final var shadowFlow = createBlockingShadowFlow(50);
+
+        IntStream.range(0, 1000).forEach(ignored -> shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> {
+                    counter.incrementAndGet();
+                    return dummyObjectB;
+                }
+        ));
+
+        assertTrue(() -> counter.get() >= 400 && counter.get() <= 600);
+    }
+
+    @Test
+    void verifyFractionalPercentageWorks() {
+        final var counter = new AtomicInteger();
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(0.5)
+                .withExecutor(new SameThreadExecutorService())
+                .withDiffEngine(new FastDiffEngine())
+                .build();
+
+        IntStream.range(0, 100_000).forEach(ignored -> shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> {
+                    counter.incrementAndGet();
+                    return dummyObjectA;
+                }
+        ));
+
+        assertEquals(0.005, shadowFlow.getSamplingRate(), 0.0);
+        assertTrue(() -> counter.get() >= 350 && counter.get() <= 650);
+    }
+
+    @Test
+    void verifySameRequestKeyIsConsistentlySampled() {
+        final var shadowFlow = createBlockingShadowFlow(50);
+
+        IntStream.range(0, 100).forEach(key -> {
+            final var counter = new AtomicInteger();
+            IntStream.range(0, 10).forEach(ignored -> shadowFlow.compare(
+                    "customer-" + key,
+                    () -> dummyObjectA,
+                    () -> {
+                        counter.incrementAndGet();
+                        return dummyObjectA;
+                    }
+            ));
+            assertTrue(() -> counter.get() == 0 || counter.get() == 10);
+        });
+    }
+
+    @Test
+    void verifyDifferencesAreLoggedForRequestKeyReactive() {
+        createBlockingShadowFlow(100).compare(
+                "customer-1",
+                Mono.just(dummyObjectA),
+                Mono.just(dummyObjectB)
+        ).block();
+
+        assertThatLogContains("The following differences were found: place, madrigals");
+    }
+
+    @Test
+    void verifySamplingIsSummarizedWhenClosed() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(0)
+                .withInstanceName("closed")
+                .withSamplingSummaryInterval(Duration.ofMillis(100))
+                .build();
+
+        IntStream.range(0, 10).forEach(ignored -> shadowFlow.compare(() -> dummyObjectA, () -> dummyObjectB));
+        shadowFlow.close();
+        assertThatLogContains("[instance=closed] Sampling summary: 0 of 10 requests called the new flow");
+
+        shadowFlow.compare(() -> dummyObjectA, () -> dummyObjectB);
+        await().during(300, MILLISECONDS).atMost(1, SECONDS).until(() -> listAppender.list.stream()
+                .filter(event -> event.getFormattedMessage().contains("[instance=closed]"))
+                .count() == 1);
+    }
+
+    @Test
+    void verifySamplingIsSummarizedPeriodically() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(0)
+                .withInstanceName("summary")
+                .withSamplingSummaryInterval(Duration.ofMillis(100))
+                .build();
+
+        IntStream.range(0, 10).forEach(ignored -> shadowFlow.compare(() -> dummyObjectA, () -> dummyObjectB));
+
+        assertTrue(listAppender.list.stream().noneMatch(event -> event.getFormattedMessage().contains("[instance=summary]")));
+        await().atMost(5, SECONDS).untilAsserted(() ->
+                assertThatLogContains("[instance=summary] Sampling summary: 0 of 10 requests called the new flow"));
+    }
+
+    @Test
+    void verifyCustomSamplerIsUsed() {
+        final var sampler = mock(Sampler.class);
+        when(sampler.shouldSample()).thenReturn(true);
+        when(sampler.getSamplingRate()).thenReturn(0.25);
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(0)
+                .withExecutor(new SameThreadExecutorService())
+                .withSampler(sampler)
+                .build();
+
+        shadowFlow.compare(() -> dummyObjectA, () -> dummyObjectB);
+
+        assertEquals(0.25, shadowFlow.getSamplingRate(), 0.0);
+        verify(sampler).onShadowCallCompleted(anyLong());
+    }
+
+    @Test
+    void verifyCallsThatAreNotMadeAreNotReportedAsCompleted() {
+        final var sampler = mock(Sampler.class);
+        when(sampler.shouldSample(any())).thenReturn(true);
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(0)
+                .withExecutor(new SameThreadExecutorService())
+                .withSampler(sampler)
+                .withDiffCache(100, Duration.ofMinutes(1))
+                .build();
+
+        IntStream.range(0, 3).forEach(ignored -> shadowFlow.compare("customer-1", () -> dummyObjectA, () -> dummyObjectA));
+
+        verify(sampler).onShadowCallCompleted(anyLong());
+        verify(sampler, times(2)).onShadowCallSkipped();
+    }
+
+    @Test
+    void verifyAdaptiveSamplingIsCappedByPercentage() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(0)
+                .withAdaptiveSampling(100, Duration.ofSeconds(1))
+                .build();
+
+        assertEquals(0.0, shadowFlow.getSamplingRate(), 0.0);
+    }
+
+    @Test
+    void verifyRecentlyComparedRequestsAreNotComparedAgain() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withDiffCache(100, Duration.ofMinutes(1))
+                .build();
+        final var counter = new AtomicInteger();
+
+        IntStream.range(0, 10).forEach(ignored -> shadowFlow.compare("customer-1", () -> dummyObjectA, () -> {
+            counter.incrementAndGet();
+            return dummyObjectA;
+        }));
+        IntStream.range(0, 10).forEach(ignored -> shadowFlow.compare(() -> dummyObjectB, () -> {
+            counter.incrementAndGet();
+            return dummyObjectB;
+        }));
+
+        assertEquals(2, counter.get());
+        assertEquals(18, shadowFlow.getCachedComparisons());
+    }
+
+    @Test
+    void verifyRequestsWithDifferencesAreComparedAgain() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withDiffCache(100, Duration.ofMinutes(1))
+                .build();
+        final var counter = new AtomicInteger();
+
+        IntStream.range(0, 10).forEach(ignored -> shadowFlow.compare("customer-1", () -> dummyObjectA, () -> {
+            counter.incrementAndGet();
+            return dummyObjectB;
+        }));
+
+        assertEquals(10, counter.get());
+        assertEquals(0, shadowFlow.getCachedComparisons());
+        assertEquals(10, listAppender.list.stream()
+                .filter(event -> event.getFormattedMessage().contains("The following differences were found"))
+                .count());
+    }
+
+    @Test
+    void verifyResultsAreFoundInTheCacheByTheirValues() {
+        final class Account {
+            private final String iban;
+
+            Account(final String iban) {
+                this.iban = iban;
+            }
+        }
+        final var shadowFlow = new ShadowFlowBuilder<Account>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withDiffCache(100, Duration.ofMinutes(1))
+                .build();
+        final var counter = new AtomicInteger();
+
+        IntStream.range(0, 10).forEach(ignored -> shadowFlow.compare(() -> new Account("NL01"), () -> {
+            counter.incrementAndGet();
+            return new Account("NL01");
+        }));
+        shadowFlow.compare(() -> new Account("NL02"), () -> {
+            counter.incrementAndGet();
+            return new Account("NL02");
+        });
+
+        assertEquals(2, counter.get());
+        assertEquals(9, shadowFlow.getCachedComparisons());
+    }
+
+    @Test
+    void verifyRecentlyComparedRequestsAreNotComparedAgainReactive() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withDiffCache(100, Duration.ofMinutes(1))
+                .build();
+        final var counter = new AtomicInteger();
+        final var newFlow = Mono.fromSupplier(() -> {
+            counter.incrementAndGet();
+            return dummyObjectA;
+        });
+
+        IntStream.range(0, 10).forEach(ignored ->
+                assertEquals(dummyObjectA, shadowFlow.compare("customer-1", Mono.just(dummyObjectA), newFlow).block()));
+
+        assertEquals(1, counter.get());
+        assertEquals(9, shadowFlow.getCachedComparisons());
+    }
+
+    @Test
+    void verifyResultsAreDigestedOnTheShadowExecutor() {
+        final List<Thread> digestingThreads = new CopyOnWriteArrayList<>();
+        final class Reference {
+            @Override
+            public int hashCode() {
+                digestingThreads.add(Thread.currentThread());
+                return 1;
+            }
+        }
+        final var executor = Executors.newSingleThreadExecutor();
+        final var shadowFlow = new ShadowFlowBuilder<Reference>(100)
+                .withExecutor(executor)
+                .withDiffEngine(new FastDiffEngine())
+                .withDiffCache(100, Duration.ofMinutes(1))
+                .build();
+
+        shadowFlow.compare(Reference::new, Reference::new);
+        shadowFlow.compare(Mono.fromSupplier(Reference::new), Mono.fromSupplier(Reference::new)).block();
+
+        await().atMost(5, SECONDS).until(() -> digestingThreads.size() >= 2);
+        assertFalse(digestingThreads.contains(Thread.currentThread()));
+        executor.shutdown();
+    }
+
+    @Test
+    void verifyShadowCallIsInterruptedAfterTimeout() {
+        final var metrics = mock(ShadowFlowMetrics.class);
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withTimeout(Duration.ofMillis(50))
+                .withMetrics(metrics)
+                .build();
+        final var interrupted = new AtomicBoolean();
+
+        shadowFlow.compare(() -> dummyObjectA, () -> {
+            try {
+                Thread.sleep(5_000);
+            } catch (final InterruptedException e) {
+                interrupted.set(true);
+            }
+            return dummyObjectB;
+        });
+
+        await().atMost(5, SECONDS).until(() -> shadowFlow.getTimedOutComparisons() == 1);
+        assertTrue(interrupted.get());
+        verify(metrics).recordTimeout("default");
+        verify(metrics, never()).recordComparison(anyString(), anyBoolean());
+        assertThatLogContains("[instance=default] The new flow did not respond within PT0.05S, the shadow call is cancelled");
+    }
+
+    @Test
+    void verifyShadowCallIsCancelledAfterTimeoutReactive() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withTimeout(Duration.ofMillis(50))
+                .build();
+        final var cancelled = new AtomicBoolean();
+
+        final var result = shadowFlow.compare(
+                Mono.just(dummyObjectA),
+                Mono.<DummyObject>never().doOnCancel(() -> cancelled.set(true))
+        ).block();
+
+        assertEquals(dummyObjectA, result);
+        await().atMost(5, SECONDS).until(() -> shadowFlow.getTimedOutComparisons() == 1);
+        assertTrue(cancelled.get());
+    }
+
+    @Test
+    void verifyNewFlowIsNotCalledWhenCircuitBreakerIsOpen() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withCircuitBreaker(2, Duration.ofMinutes(1))
+                .build();
+        final var counter = new AtomicInteger();
+
+        IntStream.range(0, 10).forEach(ignored -> assertEquals(dummyObjectA, shadowFlow.compare(() -> dummyObjectA, () -> {
+            counter.incrementAndGet();
+            throw new IllegalStateException("The new flow is down");
+        })));
+
+        assertEquals(2, counter.get());
+        assertEquals(CircuitBreaker.State.OPEN, shadowFlow.getCircuitBreakerState());
+        assertThatLogContains("[instance=default] The circuit breaker opened, the new flow is not called for PT1M");
+    }
+
+    @Test
+    void verifyCircuitBreakerIsOnlyProbedByCallsThatAreMade() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(new SameThreadExecutorService())
+                .withCircuitBreaker(1, Duration.ofMillis(100))
+                .withDiffCache(100, Duration.ofMinutes(1))
+                .build();
+        shadowFlow.compare("customer-1", () -> dummyObjectA, () -> dummyObjectA);
+        shadowFlow.compare("customer-2", () -> dummyObjectA, () -> {
+            throw new IllegalStateException("The new flow is down");
+        });
+        assertEquals(CircuitBreaker.State.OPEN, shadowFlow.getCircuitBreakerState());
+
+        // The cached request skips the new flow, so it must not take the probe once the cool-down has passed
+        await().during(300, MILLISECONDS).atMost(1, SECONDS).until(() -> {
+            shadowFlow.compare("customer-1", () -> dummyObjectA, () -> dummyObjectA);
+            return shadowFlow.getCircuitBreakerState() == CircuitBreaker.State.OPEN;
+        });
+
+        shadowFlow.compare("customer-2", () -> dummyObjectA, () -> dummyObjectA);
+        assertEquals(CircuitBreaker.State.CLOSED, shadowFlow.getCircuitBreakerState());
+    }
+
+    @Test
+    void verifyReactiveComparisonsAreDroppedWhenMaxConcurrentSubscriptionsIsReached() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withMaxConcurrentSubscriptions(2)
+                .build();
+        final var newFlow = Sinks.<DummyObject>one();
+
+        IntStream.range(0, 5).forEach(ignored ->
+                assertEquals(dummyObjectA, shadowFlow.compare(Mono.just(dummyObjectA), newFlow.asMono()).block()));
+        assertEquals(3, shadowFlow.getDroppedComparisons());
+
+        newFlow.tryEmitValue(dummyObjectA);
+        // The permits are released once the running comparisons are done
+        await().atMost(5, SECONDS).until(() -> {
+            final var droppedComparisons = shadowFlow.getDroppedComparisons();
+            shadowFlow.compare(Mono.just(dummyObjectA), Mono.just(dummyObjectA)).block();
+            return shadowFlow.getDroppedComparisons() == droppedComparisons;
+        });
+    }
+
+    @Test
+    void verifyStreamComparisonsDroppedBySaturatedExecutorReleaseTheirPermitOnce() {
+        final var executor = new BoundedShadowExecutor(1, 1);
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(executor)
+                .withMaxConcurrentSubscriptions(1)
+                .build();
+        final var blocked = new CountDownLatch(1);
+        IntStream.range(0, 2).forEach(ignored -> executor.execute(() -> {
+            try {
+                blocked.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        // The executor drops the comparison, which is cancelled again when the caller cancels the current flow
+        assertEquals(dummyObjectA, shadowFlow.compare(Flux.just(dummyObjectA, dummyObjectB), Flux.just(dummyObjectA)).blockFirst());
+        assertEquals(1, shadowFlow.getDroppedComparisons());
+
+        blocked.countDown();
+        await().atMost(5, SECONDS).until(() -> executor.getActiveCount() == 0 && executor.getQueueSize() == 0);
+        shadowFlow.compare(Flux.just(dummyObjectA), Flux.<DummyObject>never()).blockLast();
+        shadowFlow.compare(Flux.just(dummyObjectA), Flux.<DummyObject>never()).blockLast();
+
+        // The second comparison is still running, so the third one exceeds the single permit
+        assertEquals(2, shadowFlow.getDroppedComparisons());
+    }
+
+    @Test
+    void shouldNotFailOnError() {
+        final var shadowFlow = createBlockingShadowFlow(100);
+        final var result = shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> {
+                    throw new RuntimeException("What is happening");
+                }
+        );
+
+        assertEquals(dummyObjectA, result);
+    }
+
+    @Test
+    void shouldNotFailOnErrorWhenSubmittingATaskUsingDeprecatedExecutorService() {
+        final var mockedExecutorService = mock(ExecutorService.class);
+        doThrow(RejectedExecutionException.class).when(mockedExecutorService).execute(any(Runnable.class));
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(mockedExecutorService)
+                .build();
+
+        final var result = shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertEquals(dummyObjectA, result);
+        assertThatLogContains("Failed to run the shadow flow");
+    }
+
+    @Test
+    void shouldNotFailOnErrorWhenSubmittingATask() {
+        final var mockedExecutor = mock(Executor.class);
+        doThrow(RejectedExecutionException.class).when(mockedExecutor).execute(any(Runnable.class));
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withExecutor(mockedExecutor)
+                .build();
+
+        final var result = shadowFlow.compare(
+                () -> dummyObjectA,
+                () -> dummyObjectB
+        );
+
+        assertEquals(dummyObjectA, result);
+        assertThatLogContains("Failed to run the shadow flow");
+    }
+
+    @Test
+    void shouldBeAbleToCompareCollectionOfObjects() {
+        final var shadowFlow = createBlockingShadowFlow(100);
+
+        shadowFlow.compareCollections(
+                () -> List.of(dummyObjectA),
+                () -> List.of(dummyObjectB),
+                DummyObject.class
+        );
+
+        assertThatLogContains("The following differences were found: place, madrigals");
+    }
+
+    @Test
+    void typeOfCollectionShouldBeTheResult() {
+        final var shadowFlow = createBlockingShadowFlow(100);
+
+        final List<DummyObject> result = shadowFlow.compareCollections(
+                () -> List.of(dummyObjectA),
+                () -> List.of(dummyObjectB),
+                DummyObject.class
+        );
+
+        assertEquals(result, List.of(dummyObjectA));
+    }
+
+    @Test
+    void typeOfCollectionShouldBeTheResultForMonos() {
+        final var shadowFlow = createBlockingShadowFlow(100);
+
+        final Set<DummyObject> result = shadowFlow.compareCollections(
+                Mono.just(Set.of(dummyObjectA)),
+                Mono.just(Set.of(dummyObjectB)),
+                DummyObject.class
+        ).block();
+
+        assertEquals(result, Set.of(dummyObjectA));
+    }
+
+    private ShadowFlow<DummyObject> createBlockingShadowFlow(final int percentage) {
+        return new ShadowFlowBuilder<DummyObject>(percentage)
+                .withExecutor(new SameThreadExecutorService())
+                .build();
+    }
+
+    private static void assertThatLogContains(final String expectedMessage) {
+        assertTrue(listAppender.list.stream().anyMatch(event -> event.getFormattedMessage().contains(expectedMessage)));
+    }
+
+    static Stream<Arguments> executorArguments() {
+        return Stream.of(
+                Arguments.of(Executors.newCachedThreadPool()),
+                Arguments.of(new SameThreadExecutorService())
+        );
+    }
+
+    static Stream<Arguments> verifyLogMessageArguments() {
+        return Stream.of(
+                Arguments.of(100, "The following differences were found: place, madrigals"),
+                Arguments.of(100, "[instance=default] The following differences were found: place, madrigals"),
+                Arguments.of(101, "Invalid percentage! Must be within the range of 0 and 100. Got 101. The shadow flow will be effectively disabled by setting it to 0%.")
+        );
+    }
+}
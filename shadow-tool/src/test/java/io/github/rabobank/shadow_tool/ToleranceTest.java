@@ -0,0 +1,52 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ToleranceTest {
+
+    @Test
+    void shouldTolerateNumbersWithinEpsilon() {
+        final var scale = Tolerance.numeric(BigDecimal.ZERO);
+        final var cent = Tolerance.numeric(new BigDecimal("0.01"));
+
+        assertTrue(scale.tolerates(new BigDecimal("1.0"), new BigDecimal("1.00")));
+        assertTrue(scale.tolerates(1, 1L));
+        assertFalse(scale.tolerates(new BigDecimal("1.0"), new BigDecimal("1.01")));
+        assertTrue(cent.tolerates(new BigDecimal("1.0"), 1.01d));
+        assertFalse(cent.tolerates(1.0d, 1.02d));
+        assertFalse(cent.tolerates(Double.NaN, 1.0d));
+        assertThrows(IllegalArgumentException.class, () -> Tolerance.numeric(new BigDecimal("-1")));
+    }
+
+    @Test
+    void shouldTolerateTimesEqualAfterTruncation() {
+        final var millis = Tolerance.truncatedTo(ChronoUnit.MILLIS);
+        final var instant = Instant.parse("2024-01-01T10:15:30.123456Z");
+
+        assertTrue(millis.tolerates(instant, Instant.parse("2024-01-01T10:15:30.123Z")));
+        assertFalse(millis.tolerates(instant, Instant.parse("2024-01-01T10:15:30.124Z")));
+        assertTrue(millis.tolerates(LocalDateTime.parse("2024-01-01T10:15:30.123456"), LocalDateTime.parse("2024-01-01T10:15:30.123")));
+        assertTrue(millis.tolerates(instant.atOffset(ZoneOffset.UTC), instant.atOffset(ZoneOffset.ofHours(2))));
+        assertFalse(millis.tolerates(instant, OffsetDateTime.ofInstant(instant, ZoneOffset.UTC).toLocalDateTime()));
+        assertThrows(IllegalArgumentException.class, () -> Tolerance.truncatedTo(ChronoUnit.MONTHS));
+    }
+
+    @Test
+    void shouldTolerateStringsIgnoringCaseOrWhitespace() {
+        assertTrue(Tolerance.ignoringCase().tolerates("Utrecht", "UTRECHT"));
+        assertFalse(Tolerance.ignoringCase().tolerates("Utrecht", "Amsterdam"));
+        assertTrue(Tolerance.ignoringWhitespace().tolerates(" Croeselaan  18", "Croeselaan 18 "));
+        assertFalse(Tolerance.ignoringWhitespace().tolerates("Croeselaan 18", "Croeselaan18"));
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.rabobank.shadow_tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TolerantDiffEngineTest {
+
+    @Test
+    void shouldDiscardToleratedDifferencesByType() {
+        final var diffEngine = new TolerantDiffEngine(new FastDiffEngine(), Map.of(), Map.of(BigDecimal.class, Tolerance.numeric(BigDecimal.ZERO)));
+
+        final var current = new Account("NL01", new BigDecimal("10.0"), "Bob");
+        final var next = new Account("NL01", new BigDecimal("10.00"), "BOB");
+
+        assertEquals(List.of("holder"), propertyNames(diffEngine.compare(current, next)));
+    }
+
+    @Test
+    void shouldPreferToleranceByPath() {
+        final var diffEngine = new TolerantDiffEngine(new FastDiffEngine(),
+                Map.of("holder", Tolerance.ignoringCase(), "balance", Tolerance.numeric(new BigDecimal("0.01"))),
+                Map.of(BigDecimal.class, Tolerance.numeric(BigDecimal.ZERO)));
+
+        final var current = List.of(new Account("NL01", new BigDecimal("10.00"), "Bob"), new Account("NL02", BigDecimal.ONE, "Eve"));
+        final var next = List.of(new Account("NL01", new BigDecimal("10.01"), "BOB"), new Account("NL02", BigDecimal.TEN, "Eve"));
+
+        assertEquals(List.of("[1].balance"), propertyNames(diffEngine.compareCollections(current, next, Account.class)));
+    }
+
+    @Test
+    void shouldOnlyApplyToleranceByPathToValuesOfItsType() {
+        final Tolerance<Object> anything = (currentValue, newValue) -> true;
+        final var diffEngine = new TolerantDiffEngine(new FastDiffEngine(),
+                Map.of("balance", Tolerance.ignoringCase(), "holder", new TolerantDiffEngine.TypedTolerance<>(BigDecimal.class, anything)),
+                Map.of());
+
+        final var differences = diffEngine.compare(new Account("NL01", BigDecimal.ONE, "Bob"), new Account("NL01", BigDecimal.TEN, "Eve"));
+
+        assertEquals(List.of("balance", "holder"), propertyNames(differences));
+    }
+
+    @Test
+    void shouldNotSwallowExceptionsOfTolerances() {
+        final Tolerance<Object> failing = (currentValue, newValue) -> {
+            throw new ClassCastException("A bug in the tolerance");
+        };
+        final var diffEngine = new TolerantDiffEngine(new FastDiffEngine(), Map.of("holder", failing), Map.of());
+
+        assertThrows(ClassCastException.class, () -> diffEngine.compare(new Account("NL01", BigDecimal.ONE, "Bob"), new Account("NL01", BigDecimal.ONE, "Eve")));
+    }
+
+    @Test
+    void shouldKeepDifferencesWithoutValues() {
+        final var diffEngine = new TolerantDiffEngine(new FastDiffEngine(), Map.of("holder", Tolerance.ignoringCase()), Map.of());
+
+        final var differences = diffEngine.compare(new Account("NL01", BigDecimal.ONE, null), new Account("NL01", BigDecimal.ONE, "Bob"));
+
+        assertEquals(List.of("holder"), propertyNames(differences));
+    }
+
+    private static List<String> propertyNames(final List<Difference> differences) {
+        return differences.stream().map(Difference::getPropertyName).toList();
+    }
+
+    private record Account(String number, BigDecimal balance, String holder) {
+    }
+}
@@ -0,0 +1,122 @@
+package io.github.rabobank.shadow_tool;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.github.rabobank.shadow_tool.ShadowFlow.ShadowFlowBuilder;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualThreadShadowExecutorTest {
+
+    @Test
+    void shouldUseVirtualThreadsWhenAvailable() {
+        final var executor = new VirtualThreadShadowExecutor(1);
+        final var threadName = new AtomicReference<String>();
+
+        executor.execute(() -> threadName.set(Thread.currentThread().getName()));
+
+        assertEquals(Runtime.version().feature() >= 21, executor.isVirtual());
+        await().atMost(5, SECONDS).until(() -> threadName.get() != null);
+        assertTrue(threadName.get().startsWith(executor.isVirtual() ? "shadow-flow-virtual-" : "shadow-flow-platform-"), threadName.get());
+    }
+
+    @Test
+    void shouldDropTasksWhenMaxConcurrencyIsReached() {
+        final var executor = new VirtualThreadShadowExecutor(2);
+        final var release = new CountDownLatch(1);
+        final var executed = new AtomicInteger();
+        final Runnable blockingTask = () -> {
+            awaitRelease(release);
+            executed.incrementAndGet();
+        };
+
+        for (int i = 0; i < 5; i++) {
+            executor.execute(blockingTask);
+        }
+
+        assertEquals(3, executor.getDroppedTasks());
+        assertEquals(2, executor.getActiveCount());
+        release.countDown();
+        await().atMost(5, SECONDS).until(() -> executed.get() == 2 && executor.getActiveCount() == 0);
+        executor.execute(blockingTask);
+        await().atMost(5, SECONDS).until(() -> executed.get() == 3);
+    }
+
+    @Test
+    void shouldPropagateMdcToShadowFlow() {
+        final var shadowFlow = new ShadowFlowBuilder<DummyObject>(100)
+                .withVirtualThreads(10)
+                .build();
+        final var dummyObject = new DummyObject("Bob", "Utrecht", List.of());
+        final var traceId = new AtomicReference<String>();
+
+        MDC.put("traceId", "virtual");
+        try {
+            shadowFlow.compare(() -> dummyObject, () -> {
+                traceId.set(MDC.get("traceId"));
+                return dummyObject;
+            });
+        } finally {
+            MDC.clear();
+        }
+
+        await().atMost(5, SECONDS).until(() -> "virtual".equals(traceId.get()));
+    }
+
+    @Test
+    void shouldLogTheFallbackToPlatformThreadsOnce() {
+        final var logger = (Logger) LoggerFactory.getLogger(VirtualThreadShadowExecutor.class);
+        final var listAppender = new ListAppender<ILoggingEvent>();
+        logger.addAppender(listAppender);
+        listAppender.start();
+        try {
+            new VirtualThreadShadowExecutor(1);
+            new VirtualThreadShadowExecutor(1);
+        } finally {
+            logger.detachAppender(listAppender);
+        }
+
+        assertTrue(listAppender.list.stream()
+                .filter(event -> event.getFormattedMessage().startsWith("Virtual threads are not available"))
+                .count() <= 1);
+    }
+
+    @Test
+    void shouldTellWhetherTheCurrentThreadIsVirtual() {
+        final var executor = new VirtualThreadShadowExecutor(1);
+        final var virtual = new AtomicReference<Boolean>();
+
+        executor.execute(() -> virtual.set(VirtualThreadShadowExecutor.isCurrentThreadVirtual()));
+
+        assertFalse(VirtualThreadShadowExecutor.isCurrentThreadVirtual());
+        await().atMost(5, SECONDS).until(() -> virtual.get() != null);
+        assertEquals(executor.isVirtual(), virtual.get());
+    }
+
+    @Test
+    void shouldRejectInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new VirtualThreadShadowExecutor(0));
+    }
+
+    private static void awaitRelease(final CountDownLatch latch) {
+        try {
+            latch.await(5, SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}